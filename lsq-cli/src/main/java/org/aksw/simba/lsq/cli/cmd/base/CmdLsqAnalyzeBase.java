@@ -40,7 +40,9 @@ public class CmdLsqAnalyzeBase {
         public List<String> getEffectiveList() {
             List<String> rawList = getRawList();
             boolean isWhitelist = isWhitelist();
-            List<String> result = MainCliLsq.effectiveList(rawList, isWhitelist, new ArrayList<>(LsqEnricherRegistry.get().getKeys()));
+            // Optional enrichers can be included but do not run by default
+            LsqEnricherRegistry registry = LsqEnricherRegistry.get();
+            List<String> result = MainCliLsq.effectiveList(rawList, isWhitelist, new ArrayList<>(isWhitelist ? registry.getKeys() : registry.getDefaultKeys()));
             return result;
         }
     }
@@ -53,6 +55,12 @@ public class CmdLsqAnalyzeBase {
         }
     }
 
+    @Option(names={"--parallel"}, description="Number of worker threads for rdfization and enrichment. Values <= 0 use all available processors. Default: ${DEFAULT-VALUE}")
+    public int parallel = -1;
+
+    @Option(names={"--deferred-skolemization"}, description="Enrich log records before skolemizing them, so that IRIs are computed in a single pass per record instead of once after rdfization and again after enrichment. Records of RDF input are enriched and then skolemized once more.")
+    public boolean deferredSkolemization = false;
+
     @Parameters(arity = "1..*", description = "file-list to probe")
     public List<String> nonOptionArgs = new ArrayList<>();
 }
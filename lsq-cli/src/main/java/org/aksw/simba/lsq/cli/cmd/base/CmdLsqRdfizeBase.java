@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.aksw.simba.lsq.core.LsqQueryCache;
 import org.aksw.simba.lsq.core.LsqRdfizeSpec;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps;
 
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Option;
@@ -67,16 +69,34 @@ public class CmdLsqRdfizeBase
      * Options for sorting operations
      */
 
-    @Option(names={"-S", "--buffer-size"})
-    public String bufferSize = "1G";
+    @Option(names={"--direct-quads"}, description="Skolemize log records while writing them into their output graph instead of renaming and copying them afterwards. Produces the same output with less overhead.")
+    public boolean directQuads = false;
 
-    @Option(names={"-T", "--temporary-directory"})
+    @Option(names={"--merge-strategy"}, description="How records of the same query are brought together for merging: 'sort' sorts all records by query, 'hash' partitions them into buckets by query hash. Default: ${DEFAULT-VALUE}")
+    public String mergeStrategy = "sort";
+
+    @Option(names={"--merge-buckets"}, description="Number of on-disk buckets written in the first pass of the 'hash' merge strategy. Buckets that exceed their share of --buffer-size are split further. Default: ${DEFAULT-VALUE}")
+    public int mergeBuckets = 64;
+
+    @Option(names={"--merge-max-records"}, description="Maximum number of log records merged into one output block per query. More frequent queries are emitted as several blocks of the same graph; only the first block carries the query itself and later blocks are marked with lsq:chunkIndex. LSQ readers recombine the blocks, other consumers need to take the union of all blocks of a graph. Values <= 0 merge all records of a query in memory. Default: ${DEFAULT-VALUE}")
+    public int mergeMaxRecords = LsqMergeOps.DEFAULT_MAX_RECORDS_PER_CHUNK;
+
+    @Option(names={"--remote-exec-summary"}, description="Replace the individual remote executions of each query with aggregates: execution count, distinct host count, first and last seen and an hourly histogram. Requires merging.")
+    public boolean remoteExecSummary = false;
+
+    @Option(names={"-S", "--buffer-size"}, description="Heap memory for sorting records before merging, e.g. 512M, 1G or 50% of the heap. Numbers without a unit are bytes. Values are capped at the maximum heap size. Default: ${DEFAULT-VALUE}")
+    public String bufferSize = "50%";
+
+    @Option(names={"-T", "--temporary-directory"}, description="Directory for sort spill files. Defaults to the system temporary directory")
     public String temporaryDirectory = null;
 
     // TODO Integrate oshi to get physical core count by default
-    @Option(names={"--parallel"})
+    @Option(names={"--parallel"}, description="Number of threads for parsing and rdfizing log records. Values <= 0 use all available processors. Default: ${DEFAULT-VALUE}")
     public int parallel = -1;
 
+    @Option(names={"--query-cache-size"}, description="Maximum total number of characters of distinct queries whose parse results are cached. 0 disables the cache. Default: ${DEFAULT-VALUE}")
+    public long queryCacheSize = LsqQueryCache.DEFAULT_MAX_WEIGHT;
+
 
     public boolean isHelp() {
         return help;
@@ -132,6 +152,31 @@ public class CmdLsqRdfizeBase
         return nonOptionArgs;
     }
 
+    @Override
+    public boolean isDirectQuads() {
+        return directQuads;
+    }
+
+    @Override
+    public String getMergeStrategy() {
+        return mergeStrategy;
+    }
+
+    @Override
+    public int getMergeBuckets() {
+        return mergeBuckets;
+    }
+
+    @Override
+    public int getMergeMaxRecords() {
+        return mergeMaxRecords;
+    }
+
+    @Override
+    public boolean isRemoteExecSummary() {
+        return remoteExecSummary;
+    }
+
     @Override
     public String getBufferSize() {
         return bufferSize;
@@ -146,4 +191,9 @@ public class CmdLsqRdfizeBase
     public int getParallel() {
         return parallel;
     }
+
+    @Override
+    public long getQueryCacheSize() {
+        return queryCacheSize;
+    }
 }
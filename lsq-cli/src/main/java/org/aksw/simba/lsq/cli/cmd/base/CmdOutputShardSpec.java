@@ -0,0 +1,21 @@
+package org.aksw.simba.lsq.cli.cmd.base;
+
+import picocli.CommandLine.Option;
+
+public class CmdOutputShardSpec {
+    @Option(names = { "--out-folder" }, description = "Write the output as shards into this folder instead of stdout. Records of the same query always go to the same shard.")
+    public String outFolder = null;
+
+    @Option(names = { "--shards" }, description = "Number of output shards; each shard is serialized and compressed by its own thread. Values <= 0 use all available processors. Default: ${DEFAULT-VALUE}", defaultValue = "-1")
+    public int shards = -1;
+
+    @Option(names = { "--compress" }, description = "Compression of shard files: none, gzip or zstd. Default: ${DEFAULT-VALUE}", defaultValue = "none")
+    public String compress = "none";
+
+    @Option(names = { "--shard-size" }, description = "Start a new file for a shard once its current file exceeds this size, e.g. 512M or 1G; a bare number denotes bytes. 0 disables rollover. Default: ${DEFAULT-VALUE}", defaultValue = "1G")
+    public String shardSize = "1G";
+
+    public boolean isSharded() {
+        return outFolder != null;
+    }
+}
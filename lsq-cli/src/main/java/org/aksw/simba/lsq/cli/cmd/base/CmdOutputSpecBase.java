@@ -3,7 +3,7 @@ package org.aksw.simba.lsq.cli.cmd.base;
 import picocli.CommandLine.Option;
 
 public class CmdOutputSpecBase {
-    @Option(names = { "-o", "--out-format" }, description = "Output format", defaultValue = "trig/blocks")
+    @Option(names = { "-o", "--out-format" }, description = "Output format, e.g. trig/blocks or lsq-binary for record-framed RDF Thrift which later stages read back without text parsing. Default: ${DEFAULT-VALUE}", defaultValue = "trig/blocks")
     public String outFormat = null;
 
     @Option(names = { "-f", "--out-file" }, description = "Output file")
@@ -3,9 +3,12 @@ package org.aksw.simba.lsq.cli.cmd.rx.api;
 import java.util.concurrent.Callable;
 
 import org.aksw.simba.lsq.cli.cmd.base.CmdLsqAnalyzeBase;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputShardSpec;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputSpecBase;
 import org.aksw.simba.lsq.cli.main.MainCliLsq;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 
 /**
  * Static analysis of queries
@@ -18,9 +21,15 @@ public class CmdLsqRxAnalyze
     extends CmdLsqAnalyzeBase
     implements Callable<Integer>
 {
+    @Mixin
+    public CmdOutputSpecBase outputSpec;
+
+    @Mixin
+    public CmdOutputShardSpec shardSpec;
+
     @Override
     public Integer call() throws Exception {
-        MainCliLsq.analyze(this);
+        MainCliLsq.analyze(this, outputSpec, shardSpec);
         return 0;
     }
 }
@@ -3,18 +3,27 @@ package org.aksw.simba.lsq.cli.cmd.rx.api;
 import java.util.concurrent.Callable;
 
 import org.aksw.simba.lsq.cli.cmd.base.CmdLsqRdfizeBase;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputShardSpec;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputSpecBase;
 import org.aksw.simba.lsq.cli.main.MainCliLsq;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 
 @Command(name = "rdfize", description = "RDFize query logs into query centric named graphs")
 public class CmdLsqRxRdfize
     extends CmdLsqRdfizeBase
     implements Callable<Integer>
 {
+    @Mixin
+    public CmdOutputSpecBase outputSpec;
+
+    @Mixin
+    public CmdOutputShardSpec shardSpec;
+
     @Override
     public Integer call() throws Exception {
-        MainCliLsq.rdfize(this);
+        MainCliLsq.rdfize(this, outputSpec, shardSpec);
         return 0;
     }
 }
@@ -27,7 +27,6 @@ import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import org.aksw.commons.io.syscall.sort.SysSort;
 import org.aksw.commons.io.util.StdIo;
 import org.aksw.commons.io.util.UriToPathUtils;
 import org.aksw.commons.util.exception.ExceptionUtilsAksw;
@@ -46,26 +45,36 @@ import org.aksw.jenax.reprogen.core.MapperProxyUtils;
 import org.aksw.jenax.reprogen.hashid.HashIdCxt;
 import org.aksw.jenax.sparql.query.rx.RDFDataMgrRx;
 import org.aksw.jenax.sparql.query.rx.SparqlRx;
-import org.aksw.jenax.sparql.relation.dataset.NodesInDataset;
 import org.aksw.jenax.sparql.rx.op.FlowOfRdfNodesInDatasetsOps;
 import org.aksw.jenax.stmt.core.SparqlStmt;
 import org.aksw.simba.lsq.cli.cmd.base.CmdLsqAnalyzeBase;
 import org.aksw.simba.lsq.cli.cmd.base.CmdLsqMain;
 import org.aksw.simba.lsq.cli.cmd.base.CmdLsqRdfizeBase;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputShardSpec;
+import org.aksw.simba.lsq.cli.cmd.base.CmdOutputSpecBase;
 import org.aksw.simba.lsq.cli.cmd.rx.api.CmdLsqRxBenchmarkCreate;
 import org.aksw.simba.lsq.cli.cmd.rx.api.CmdLsqRxBenchmarkPrepare;
 import org.aksw.simba.lsq.cli.cmd.rx.api.CmdLsqRxBenchmarkRun;
 import org.aksw.simba.lsq.cli.cmd.rx.api.CmdLsqRxProbe;
+import org.aksw.simba.lsq.core.LsqQueryCache;
 import org.aksw.simba.lsq.core.LsqRdfizer;
 import org.aksw.simba.lsq.core.ResourceParser;
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.aksw.simba.lsq.core.io.output.ShardedDatasetWriter;
 import org.aksw.simba.lsq.core.io.input.registry.LsqInputFormatRegistry;
+import org.aksw.simba.lsq.core.rx.LsqRxOps;
 import org.aksw.simba.lsq.core.rx.io.input.LsqLogRecordRdfizer;
+import org.aksw.simba.lsq.core.rx.io.input.LsqLogRecordRdfizerDirect;
 import org.aksw.simba.lsq.core.rx.io.input.LsqLogRecordRdfizerQueryOnly;
+import org.aksw.simba.lsq.core.rx.io.input.LsqParallelLogReader;
 import org.aksw.simba.lsq.core.rx.io.input.LsqProbeUtils;
 import org.aksw.simba.lsq.core.rx.io.input.LsqRxIo;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps;
+import org.aksw.simba.lsq.core.rx.sort.LsqSortOps;
 import org.aksw.simba.lsq.enricher.benchmark.core.LsqBenchmarkProcessor;
 import org.aksw.simba.lsq.enricher.core.LsqEnricherRegistry;
 import org.aksw.simba.lsq.enricher.core.LsqEnricherShell;
+import org.aksw.simba.lsq.enricher.core.LsqQueryContext;
 import org.aksw.simba.lsq.model.ExperimentConfig;
 import org.aksw.simba.lsq.model.ExperimentExec;
 import org.aksw.simba.lsq.model.ExperimentRun;
@@ -73,6 +82,7 @@ import org.aksw.simba.lsq.model.LsqQuery;
 import org.aksw.simba.lsq.vocab.LSQ;
 import org.aksw.simba.lsq.vocab.PROV;
 import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
@@ -83,6 +93,7 @@ import org.apache.jena.rdfconnection.RDFConnectionRemote;
 import org.apache.jena.rdfconnection.SparqlQueryConnection;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFWriterRegistry;
 import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.system.StreamRDFWriter;
@@ -182,6 +193,16 @@ public class MainCliLsq {
     }
 
     public static Flowable<ResourceInDataset> createLsqRdfFlow(CmdLsqRdfizeBase rdfizeCmd, String hostHashSalt) throws FileNotFoundException, IOException, ParseException {
+        return createLsqRdfFlow(rdfizeCmd, hostHashSalt, null);
+    }
+
+    /**
+     * @param enricher An optional enricher that is applied to each record before its (single) skolemization;
+     *        see {@link LsqLogRecordRdfizer}. Records of RDF input are enriched and skolemized again in a single pass;
+     *        see {@link LsqRdfizer#enrichAndSkolemize(Resource, String, Function)}.
+     *        Not supported with --query-only and --direct-quads.
+     */
+    public static Flowable<ResourceInDataset> createLsqRdfFlow(CmdLsqRdfizeBase rdfizeCmd, String hostHashSalt, Function<? super LsqQuery, Map<Node, Node>> enricher) throws FileNotFoundException, IOException, ParseException {
         String logFormat = rdfizeCmd.inputLogFormat;
         List<String> logSources = rdfizeCmd.nonOptionArgs;
         String baseIri = rdfizeCmd.baseIri;
@@ -206,20 +227,41 @@ public class MainCliLsq {
                 .hashString(str, StandardCharsets.UTF_8)
                 .asBytes());
 
+        // Logs are repetitive; parse and hash each distinct query only once
+        LsqQueryCache queryCache = new LsqQueryCache(sparqlStmtParser, rdfizeCmd.getQueryCacheSize());
+
+        if (enricher != null && (rdfizeCmd.isQueryOnly() || rdfizeCmd.isDirectQuads())) {
+            throw new IllegalArgumentException("Enrichment before skolemization is only supported by the regular rdfizer");
+        }
+
         Function<Resource, Resource> rdfizer;
         if (rdfizeCmd.isQueryOnly()) {
-            rdfizer = new LsqLogRecordRdfizerQueryOnly(sparqlStmtParser, baseIri, hostHashFn);
+            rdfizer = new LsqLogRecordRdfizerQueryOnly(queryCache, baseIri, hostHashFn);
 
+        } else if (rdfizeCmd.isDirectQuads()) {
+            rdfizer = new LsqLogRecordRdfizerDirect(
+                    queryCache,
+                    baseIri,
+                    hostHashSalt,
+                    endpointUrl,
+                    hostHashFn
+            );
         } else {
             rdfizer = new LsqLogRecordRdfizer(
-                    sparqlStmtParser,
+                    queryCache,
                     baseIri,
                     hostHashSalt,
                     endpointUrl,
-                    hostHashFn
+                    hostHashFn,
+                    enricher
             );
         }
 
+        // RDF input bypasses the rdfizer - so its records are enriched separately
+        Function<Resource, Resource> rdfRecordProcessor = enricher == null
+                ? null
+                : r -> LsqRdfizer.enrichAndSkolemize(r, baseIri, enricher);
+
         Flowable<Resource> logRdfEvents = Flowable
             .fromIterable(logSources)
             .flatMap(logSource -> {
@@ -227,12 +269,18 @@ public class MainCliLsq {
                         logSource,
                         logFormat,
                         logFmtRegistry,
-                        rdfizer);
+                        rdfizer,
+                        rdfRecordProcessor,
+                        rdfizeCmd.getParallel());
                 return st;
-            });
+            })
+            .doOnComplete(() -> queryCache.logStats(logger));
 
 
-        Flowable<ResourceInDataset> legacyLogRdfEvents = logRdfEvents.map(ResourceInDatasetImpl::createFromCopyIntoResourceGraph);
+        Flowable<ResourceInDataset> legacyLogRdfEvents = rdfizeCmd.isDirectQuads()
+                // Records of the direct rdfizer are already in the graph of their query
+                ? logRdfEvents.map(MainCliLsq::asResourceInOwnGraph)
+                : logRdfEvents.map(ResourceInDatasetImpl::createFromCopyIntoResourceGraph);
 
         if(rdfizeCmd.slimMode) {
 //            CmdNgsMap cmd = new CmdNgsMap();
@@ -265,26 +313,80 @@ public class MainCliLsq {
                     .compose(mapper);
         }
 
-        if(!rdfizeCmd.noMerge) {
-            SysSort sortCmd = new SysSort();
-            sortCmd.bufferSize = rdfizeCmd.bufferSize;
-            sortCmd.temporaryDirectory = rdfizeCmd.temporaryDirectory;
+        if(rdfizeCmd.noMerge && rdfizeCmd.isRemoteExecSummary()) {
+            logger.warn("Remote execution summaries require merging - ignoring --remote-exec-summary due to --no-merge");
+        }
 
-            FlowableTransformer<NodesInDataset, NodesInDataset> sorter = ResourceInDatasetFlowOps.createSystemSorter(sortCmd, null);
-            legacyLogRdfEvents = legacyLogRdfEvents
+        if(!rdfizeCmd.noMerge) {
+            int parallelism = LsqParallelLogReader.effectiveParallelism(rdfizeCmd.getParallel());
+
+            int mergeMaxRecords = rdfizeCmd.getMergeMaxRecords();
+            FlowableTransformer<ResourceInDataset, ResourceInDataset> merger;
+            if (rdfizeCmd.isRemoteExecSummary()) {
+                merger = LsqMergeOps.summarizeConsecutive();
+            } else if (mergeMaxRecords > 0) {
+                // Popular queries are emitted in chunks such that memory does not grow with their frequency
+                merger = LsqMergeOps.mergeConsecutiveBounded(mergeMaxRecords);
+            } else {
+                merger = upstream -> upstream
                     .compose(FlowOfRdfNodesInDatasetsOps.groupedResourceInDataset())
-                    .compose(sorter)
                     .compose(FlowOfRdfNodesInDatasetsOps::mergeConsecutiveResourceInDatasets)
                     .flatMap(FlowOfRdfNodesInDatasetsOps::ungrouperResourceInDataset);
+            }
+
+            String mergeStrategy = rdfizeCmd.getMergeStrategy();
+            switch (mergeStrategy) {
+            case "sort":
+                // Records are sorted in a compact binary form within the JVM; no re-parsing of text output
+                legacyLogRdfEvents = legacyLogRdfEvents
+                        .compose(LsqSortOps.sortByGraphName(
+                                rdfizeCmd.bufferSize,
+                                rdfizeCmd.temporaryDirectory,
+                                parallelism))
+                        .compose(merger);
+                break;
+            case "hash":
+                // Only grouping is needed for merging: partition by query and merge the buckets independently
+                legacyLogRdfEvents = legacyLogRdfEvents
+                        .compose(LsqSortOps.hashPartitionByGraphName(
+                                rdfizeCmd.bufferSize,
+                                rdfizeCmd.temporaryDirectory,
+                                rdfizeCmd.getMergeBuckets(),
+                                parallelism,
+                                merger));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown merge strategy: " + mergeStrategy + " - expected 'sort' or 'hash'");
+            }
         }
 
         return legacyLogRdfEvents;
     }
 
+    /** Return the resource as is if it is already in the named graph of its IRI; otherwise copy it into one */
+    protected static ResourceInDataset asResourceInOwnGraph(Resource r) {
+        ResourceInDataset result = r instanceof ResourceInDataset && r.isURIResource()
+                && r.getURI().equals(((ResourceInDataset)r).getGraphName())
+            ? (ResourceInDataset)r
+            : ResourceInDatasetImpl.createFromCopyIntoResourceGraph(r);
+        return result;
+    }
+
     public static void rdfize(CmdLsqRdfizeBase cmdRdfize) throws Exception {
+        rdfize(cmdRdfize, new CmdOutputSpecBase(), new CmdOutputShardSpec());
+    }
+
+    public static void rdfize(CmdLsqRdfizeBase cmdRdfize, CmdOutputSpecBase outputSpec, CmdOutputShardSpec shardSpec) throws Exception {
         Flowable<ResourceInDataset> logRdfEvents = createLsqRdfFlow(cmdRdfize);
         try {
-            RDFDataMgrRx.writeResources(logRdfEvents, StdIo.openStdOutWithCloseShield(), RDFFormat.TRIG_BLOCKS);
+            if (LsqBinaryRdf.isFormatName(outputSpec.outFormat) || shardSpec.isSharded()) {
+                writeDatasets(logRdfEvents.map(ResourceInDataset::getDataset), outputSpec, shardSpec,
+                        LsqParallelLogReader.effectiveParallelism(cmdRdfize.getParallel()));
+            } else {
+                try (OutputStream out = openOutput(outputSpec)) {
+                    RDFDataMgrRx.writeResources(logRdfEvents, out, resolveRdfFormat(outputSpec.outFormat));
+                }
+            }
             logger.info("RDFization completed successfully");
         } catch(Exception e) {
             ExceptionUtilsAksw.rethrowIfNotBrokenPipe(e);
@@ -388,9 +490,16 @@ public class MainCliLsq {
 
 
     public static void analyze(CmdLsqAnalyzeBase analyzeCmd) throws Exception {
+        analyze(analyzeCmd, new CmdOutputSpecBase(), new CmdOutputShardSpec());
+    }
+
+    public static void analyze(CmdLsqAnalyzeBase analyzeCmd, CmdOutputSpecBase outputSpec, CmdOutputShardSpec shardSpec) throws Exception {
         CmdLsqRdfizeBase rdfizeCmd = new CmdLsqRdfizeBase();
         rdfizeCmd.nonOptionArgs = analyzeCmd.nonOptionArgs;
         rdfizeCmd.noMerge = true;
+        rdfizeCmd.parallel = analyzeCmd.parallel;
+
+        int effectiveParallelism = LsqParallelLogReader.effectiveParallelism(analyzeCmd.parallel);
 
         String baseIri = rdfizeCmd.baseIri;
         // TODO How to obtain the baseIRI? A simple hack would be to 'grep'
@@ -399,19 +508,99 @@ public class MainCliLsq {
         // which might be somewhat overkill
 
         LsqEnricherShell enricherFactory = new LsqEnricherShell(baseIri, analyzeCmd.enricherSpec.getEffectiveList(), LsqEnricherRegistry::get);
-        Function<Resource, Resource> enricher = enricherFactory.get();
 
-        Flowable<ResourceInDataset> flow = createLsqRdfFlow(rdfizeCmd);
+        Flowable<Dataset> dsFlow;
+        if (analyzeCmd.deferredSkolemization) {
+            // Records are enriched by the rdfizer's worker threads before their only skolemization
+            dsFlow = createLsqRdfFlow(rdfizeCmd, getOrCreateSalt(rdfizeCmd), enricherFactory.getDeferred())
+                    .map(ResourceInDataset::getDataset);
+        } else {
+            Function<Resource, Resource> enricher = enricherFactory.get();
+
+            Flowable<ResourceInDataset> flow = createLsqRdfFlow(rdfizeCmd);
+
+            // Each record is enriched independently - the ordered parallel map keeps the output identical
+            // to that of sequential processing
+            dsFlow = flow.compose(LsqRxOps.<ResourceInDataset, ResourceInDataset>mapParallelOrdered(rid -> {
+                // TODO The enricher may in general rename the input resource due to skolemization - handle this case
+                enricher.apply(rid);
+                return rid;
+            }, effectiveParallelism))
+//            .map(ResourceInDatasetImpl::createFromCopyIntoResourceGraph)
+            .map(ResourceInDataset::getDataset);
+        }
+
+        writeDatasets(dsFlow, outputSpec, shardSpec, effectiveParallelism);
+    }
 
-        Flowable<Dataset> dsFlow = flow.map(rid -> {
-            // TODO The enricher may in general rename the input resource due to skolemization - handle this case
-            enricher.apply(rid);
-            return rid;
-        })
-//        .map(ResourceInDatasetImpl::createFromCopyIntoResourceGraph)
-        .map(ResourceInDataset::getDataset);
+    /** Resolve an RDF format name such as "trig/blocks"; null yields TriG blocks */
+    public static RDFFormat resolveRdfFormat(String outFormat) {
+        RDFFormat result = outFormat == null
+                ? RDFFormat.TRIG_BLOCKS
+                : RDFWriterRegistry.registered().stream()
+                    .filter(f -> f.toString().equalsIgnoreCase(outFormat))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown output format: " + outFormat
+                            + " - expected " + LsqBinaryRdf.FORMAT_NAME + " or one of " + RDFWriterRegistry.registered()));
+        return result;
+    }
 
-        RDFDataMgrRx.writeDatasets(dsFlow, StdIo.openStdOutWithCloseShield(), RDFFormat.TRIG_BLOCKS);
+    protected static OutputStream openOutput(CmdOutputSpecBase outputSpec) throws IOException {
+        OutputStream result = outputSpec.outFile == null
+                ? StdIo.openStdOutWithCloseShield()
+                : Files.newOutputStream(Paths.get(outputSpec.outFile));
+        return result;
+    }
+
+    /**
+     * Write datasets in the format of the output spec to its file or to stdout.
+     * In the {@link LsqBinaryRdf} format records are encoded by parallelism worker threads while
+     * the frames are written in order.
+     * If the shard spec names an output folder then the datasets are written as shards instead; see {@link ShardedDatasetWriter}.
+     */
+    public static void writeDatasets(Flowable<Dataset> dsFlow, CmdOutputSpecBase outputSpec, CmdOutputShardSpec shardSpec, int parallelism) throws Exception {
+        if (shardSpec.isSharded()) {
+            if (outputSpec.outFile != null) {
+                logger.warn("Output file " + outputSpec.outFile + " is ignored because an output folder was given");
+            }
+
+            RDFFormat rdfFormat = LsqBinaryRdf.isFormatName(outputSpec.outFormat)
+                    ? null
+                    : resolveRdfFormat(outputSpec.outFormat);
+            if (!ShardedDatasetWriter.isSupportedFormat(rdfFormat)) {
+                throw new IllegalArgumentException("Output format " + rdfFormat + " cannot be written into shards because it is not a streaming format"
+                        + " - use " + LsqBinaryRdf.FORMAT_NAME + " or one of " + StreamRDFWriter.registered());
+            }
+            long maxShardBytes = ShardedDatasetWriter.parseShardSize(shardSpec.shardSize);
+            int numShards = LsqParallelLogReader.effectiveParallelism(shardSpec.shards);
+
+            ShardedDatasetWriter writer = new ShardedDatasetWriter(
+                    Paths.get(shardSpec.outFolder),
+                    numShards,
+                    rdfFormat,
+                    shardSpec.compress,
+                    maxShardBytes);
+            try {
+                dsFlow.blockingForEach(writer::write);
+            } finally {
+                writer.close();
+            }
+        } else {
+            writeDatasets(dsFlow, outputSpec, parallelism);
+        }
+    }
+
+    public static void writeDatasets(Flowable<Dataset> dsFlow, CmdOutputSpecBase outputSpec, int parallelism) throws Exception {
+        try (OutputStream out = openOutput(outputSpec)) {
+            if (LsqBinaryRdf.isFormatName(outputSpec.outFormat)) {
+                long count = LsqBinaryRdf.writeRecords(
+                        dsFlow.compose(LsqRxOps.<Dataset, byte[]>mapParallelOrdered(LsqBinaryRdf::encode, parallelism)),
+                        out);
+                logger.info("Wrote " + count + " records in " + LsqBinaryRdf.FORMAT_NAME + " format");
+            } else {
+                RDFDataMgrRx.writeDatasets(dsFlow, out, resolveRdfFormat(outputSpec.outFormat));
+            }
+        }
     }
 
 
@@ -674,7 +863,7 @@ public class MainCliLsq {
         String fullPathStr = tdb2FullPath.toString();
 
         LsqEnricherShell enricherFactory = new LsqEnricherShell(lsqBaseIri, benchmarkExecuteCmd.enricherSpec.getEffectiveList(), LsqEnricherRegistry::get);
-        Function<Resource, Resource> enricher = enricherFactory.get();
+        Function<LsqQuery, LsqQueryContext> enricher = enricherFactory.getContextual();
 
         logger.info("TDB2 benchmark db location: " + tdb2FullPath);
 
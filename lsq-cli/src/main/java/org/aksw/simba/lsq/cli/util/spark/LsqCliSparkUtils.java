@@ -1,17 +1,26 @@
 package org.aksw.simba.lsq.cli.util.spark;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Optional;
 
+import org.aksw.commons.io.util.StdIo;
 import org.aksw.commons.rx.function.RxFunction;
 import org.aksw.jenax.arq.dataset.api.DatasetOneNg;
 import org.aksw.simba.lsq.cli.cmd.base.CmdOutputSpecBase;
 import org.aksw.simba.lsq.cli.main.MainCliLsq;
 import org.aksw.simba.lsq.core.LsqRdfizeSpec;
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
 import org.apache.jena.shared.PrefixMapping;
 import org.apache.jena.shared.impl.PrefixMappingImpl;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.sql.SparkSession;
 
+import io.reactivex.rxjava3.core.Flowable;
+
 import net.sansa_stack.rdf.spark.io.LsqSparkIo;
 import net.sansa_stack.rdf.spark.io.LsqSparkUtils;
 import net.sansa_stack.spark.io.rdf.output.RddRdfWriterFactory;
@@ -24,22 +33,6 @@ public class LsqCliSparkUtils {
             CmdOutputSpecBase outputSpec,
             RxFunction<DatasetOneNg, DatasetOneNg> processor) {
 
-        PrefixMapping prefixes = MainCliLsq.addLsqPrefixes(new PrefixMappingImpl());
-
-        RddRdfWriterFactory rddRdfWriterFactory = RddRdfWriterFactory.create()
-                .setGlobalPrefixMapping(prefixes)
-                .setOutputFormat(outputSpec.outFormat)
-                .setDeferOutputForUsedPrefixes(100)
-                // .setOutputFormat(cmd.getOutFormat())
-                .setMapQuadsToTriplesForTripleLangs(true)
-                // .setAllowOverwriteFiles(true)
-                /// .setPartitionFolder(cmd.getOutFolder())
-                .setTargetFile(outputSpec.outFile)
-                // .setUseElephas(true)
-                .setAllowOverwriteFiles(true)
-                .setDeletePartitionFolderAfterMerge(true)
-                .validate();
-
             SparkSession sc = LsqSparkUtils.createSparkSession(conf -> {
                 Optional.ofNullable(inputSpec.getTemporaryDirectory()).ifPresent(v -> conf.set("spark.local.dir", v));
             });
@@ -47,8 +40,42 @@ public class LsqCliSparkUtils {
             JavaRDD<DatasetOneNg> baseRdd = LsqSparkIo.createLsqRdfFlow(sc, inputSpec);
             JavaRDD<DatasetOneNg> outRdd = JavaRddRxOps.mapPartitions(baseRdd, processor);
 
+            if (LsqBinaryRdf.isFormatName(outputSpec.outFormat)) {
+                writeBinary(outRdd, outputSpec.outFile);
+            } else {
+                PrefixMapping prefixes = MainCliLsq.addLsqPrefixes(new PrefixMappingImpl());
+
+                RddRdfWriterFactory rddRdfWriterFactory = RddRdfWriterFactory.create()
+                        .setGlobalPrefixMapping(prefixes)
+                        .setOutputFormat(outputSpec.outFormat)
+                        .setDeferOutputForUsedPrefixes(100)
+                        // .setOutputFormat(cmd.getOutFormat())
+                        .setMapQuadsToTriplesForTripleLangs(true)
+                        // .setAllowOverwriteFiles(true)
+                        /// .setPartitionFolder(cmd.getOutFolder())
+                        .setTargetFile(outputSpec.outFile)
+                        // .setUseElephas(true)
+                        .setAllowOverwriteFiles(true)
+                        .setDeletePartitionFolderAfterMerge(true)
+                        .validate();
+
+                rddRdfWriterFactory.forDataset(outRdd).runUnchecked();
+            }
+    }
 
-            rddRdfWriterFactory.forDataset(outRdd).runUnchecked();
+    /**
+     * Write the datasets in the {@link LsqBinaryRdf} format to the given file or stdout.
+     * Records are encoded by the executors; the driver only writes the frames in partition order.
+     */
+    public static void writeBinary(JavaRDD<DatasetOneNg> rdd, String outFile) {
+        JavaRDD<byte[]> records = rdd.map(ds -> LsqBinaryRdf.encode(ds));
+        try (OutputStream out = outFile == null
+                ? StdIo.openStdOutWithCloseShield()
+                : Files.newOutputStream(Paths.get(outFile))) {
+            LsqBinaryRdf.writeRecords(Flowable.fromIterable(() -> records.toLocalIterator()), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 //    public static RxFunction<Tuple2<String, Model>, Resource> namedModelToResource() {
@@ -0,0 +1,145 @@
+package org.aksw.simba.lsq.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.aksw.jenax.stmt.core.SparqlStmt;
+import org.aksw.jenax.stmt.core.SparqlStmtQuery;
+import org.aksw.jenax.stmt.util.SparqlStmtUtils;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.slf4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded cache from raw query strings (as found in logs) to the outcome of
+ * parsing, normalizing and hashing them.
+ *
+ * Query logs are highly repetitive; with this cache each distinct query string
+ * is parsed and hashed only once as long as it is not evicted.
+ * The cache is bounded by the total number of characters of the cached raw and normalized strings.
+ *
+ * Only immutable values are cached; the parsed {@link org.apache.jena.query.Query} objects are mutable and
+ * are therefore not shared between log records.
+ *
+ * @author raven
+ *
+ */
+public class LsqQueryCache
+    implements Function<String, LsqQueryCache.CachedQuery>
+{
+    /** The default maximum number of characters held by the cache */
+    public static final long DEFAULT_MAX_WEIGHT = 64l * 1024 * 1024;
+
+    /** The outcome of processing a raw query string */
+    public static class CachedQuery {
+        protected boolean isQuery;
+        protected String text;
+        protected String hash;
+        protected String parseError;
+
+        public CachedQuery(boolean isQuery, String text, String hash, String parseError) {
+            super();
+            this.isQuery = isQuery;
+            this.text = text;
+            this.hash = hash;
+            this.parseError = parseError;
+        }
+
+        /** False if the string was not a query (e.g. an update request); the other attributes are null in that case */
+        public boolean isQuery() {
+            return isQuery;
+        }
+
+        /** The normalized query string if it could be parsed, otherwise the original string */
+        public String getText() {
+            return text;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getParseError() {
+            return parseError;
+        }
+
+        protected int weight(String key) {
+            return key.length()
+                    + (text == null ? 0 : text.length())
+                    + (parseError == null ? 0 : parseError.length());
+        }
+    }
+
+    protected static final CachedQuery NOT_A_QUERY = new CachedQuery(false, null, null, null);
+
+    protected Function<String, SparqlStmt> sparqlStmtParser;
+    protected Cache<String, CachedQuery> cache;
+
+    public LsqQueryCache(Function<String, SparqlStmt> sparqlStmtParser, long maxWeight) {
+        super();
+        this.sparqlStmtParser = sparqlStmtParser;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .<String, CachedQuery>weigher((k, v) -> v.weight(k))
+                .recordStats()
+                .build();
+    }
+
+    public static LsqQueryCache create(Function<String, SparqlStmt> sparqlStmtParser) {
+        return new LsqQueryCache(sparqlStmtParser, DEFAULT_MAX_WEIGHT);
+    }
+
+    @Override
+    public CachedQuery apply(String rawQueryStr) {
+        CachedQuery result;
+        try {
+            result = cache.get(rawQueryStr, () -> process(rawQueryStr, sparqlStmtParser));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Parse a raw query string, optimize its prefixes and compute its hash - without caching.
+     */
+    public static CachedQuery process(String rawQueryStr, Function<String, SparqlStmt> sparqlStmtParser) {
+        SparqlStmt stmt = sparqlStmtParser.apply(rawQueryStr);
+
+        CachedQuery result;
+        if (stmt != null && stmt.isQuery()) {
+            if (stmt.isParsed()) {
+                SparqlStmtUtils.optimizePrefixes(stmt);
+            }
+
+            SparqlStmtQuery queryStmt = stmt.getAsQueryStmt();
+            String text = queryStmt.isParsed()
+                    ? queryStmt.getQuery().toString()
+                    : queryStmt.getOriginalString();
+
+            String hash = LsqQuery.createHash(text);
+
+            Throwable t = queryStmt.getParseException();
+            String parseError = t == null ? null : t.toString();
+
+            result = new CachedQuery(true, text, hash, parseError);
+        } else {
+            result = NOT_A_QUERY;
+        }
+
+        return result;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void logStats(Logger logger) {
+        CacheStats stats = cache.stats();
+        logger.info(String.format("Query cache: %d hits, %d misses (hit rate %.1f%%), %d evictions, %d distinct queries cached",
+                stats.hitCount(), stats.missCount(), stats.hitRate() * 100, stats.evictionCount(), cache.size()));
+    }
+}
@@ -25,10 +25,27 @@ public interface LsqRdfizeSpec {
 
     List<String> getNonOptionArgs();
 
+    /** Whether records are skolemized directly into their output graph */
+    boolean isDirectQuads();
+
+    /** Either "sort" or "hash" */
+    String getMergeStrategy();
+
+    int getMergeBuckets();
+
+    /** The maximum number of records merged into one dataset; values &lt;= 0 mean no limit */
+    int getMergeMaxRecords();
+
+    /** Whether to emit aggregates instead of the individual remote executions of each query */
+    boolean isRemoteExecSummary();
+
     String getBufferSize();
 
     String getTemporaryDirectory();
 
     int getParallel();
 
+    /** The maximum total number of characters of the distinct queries held by the parse cache */
+    long getQueryCacheSize();
+
 }
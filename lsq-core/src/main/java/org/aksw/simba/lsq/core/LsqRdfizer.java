@@ -1,24 +1,41 @@
 package org.aksw.simba.lsq.core;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.jenax.arq.dataset.orderaware.DatasetFactoryEx;
+import org.aksw.jenax.arq.util.node.NodeTransformLib2;
 import org.aksw.jenax.arq.util.prefix.PrefixMappingTrie;
 import org.aksw.jenax.stmt.core.SparqlStmt;
 import org.aksw.jenax.stmt.core.SparqlStmtParser;
 import org.aksw.jenax.stmt.core.SparqlStmtParserImpl;
 import org.aksw.jenax.stmt.core.SparqlStmtQuery;
 import org.aksw.jenax.stmt.util.SparqlStmtUtils;
+import org.aksw.simba.lsq.core.LsqQueryCache.CachedQuery;
 import org.aksw.simba.lsq.core.util.SkolemizeBackport;
 import org.aksw.simba.lsq.model.LsqQuery;
 import org.aksw.simba.lsq.model.RemoteExecution;
 import org.aksw.simba.lsq.parser.WebLogParser;
+import org.aksw.simba.lsq.parser.WebLogRecord;
 import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.NodeTransform;
+import org.apache.jena.sparql.graph.NodeTransformLib;
 
 import com.google.common.collect.Iterables;
 
@@ -103,6 +120,50 @@ public class LsqRdfizer {
 
 
 
+    /**
+     * Extract the raw query string of a log entry and add it with the lsq:query property.
+     *
+     * @param r A log entry resource
+     * @return The raw query string or null if the log entry has a processing error or does not carry a query
+     */
+    public static String getRawQuery(Resource r) {
+        WebLogParser.extractRawQueryString(r);
+
+        String result = r.getProperty(LSQ.processingError) == null
+                ? Optional.ofNullable(r.getProperty(LSQ.query)).map(queryStmt -> queryStmt.getString()).orElse(null)
+                : null;
+        return result;
+    }
+
+    /**
+     * Check whether the given log record can yield an LSQ query.
+     * This is the case if the log line was parsed without error and a query could be extracted.
+     * As a side effect, the raw query string is extracted and set on the record.
+     *
+     * @param record A log record
+     * @return true if the record should be rdfized
+     */
+    public static boolean isRdfizable(WebLogRecord record) {
+        boolean result = !record.hasProcessingError()
+                && (WebLogParser.extractRawQueryString(record) != null || record.getQuery() != null);
+        return result;
+    }
+
+    /**
+     * Turn a plain log record into a resource that can be passed to
+     * {@link #rdfizeLogRecord(Function, String, String, String, Function, Resource)}.
+     *
+     * @param record The log record
+     * @param sequenceId The (1-based) position of the record in its log
+     * @return A resource in its own dataset
+     */
+    public static Resource createLogRecordResource(WebLogRecord record, long sequenceId) {
+        Resource result = ResourceInDatasetImpl.createAnonInDefaultGraph();
+        record.copyInto(result);
+        result.as(RemoteExecution.class).setSequenceId(sequenceId);
+        return result;
+    }
+
     public static Optional<Resource> rdfizeLogRecord(
             Function<String, SparqlStmt> sparqlStmtParser,
             String baseIri,
@@ -110,66 +171,74 @@ public class LsqRdfizer {
             String serviceUrl,
             Function<String, String> hostHashFn,
             Resource x) {
-        RemoteExecution re = x.as(RemoteExecution.class);
-
-        // If we cannot obtain a query from the log record, we omit the entry
-        Optional<Resource> result;
-
-        // Invert; map from query to log entry
-        //ResourceInDataset queryInDataset = x.wrapCreate(Model::createResource);
-        Resource queryInDataset = re.getModel().createResource();
-
-        LsqQuery q = queryInDataset.as(LsqQuery.class);
-        q.getRemoteExecutions().add(re);
-
-            //try {
-        SparqlStmtQuery parsedQuery = getParsedQuery(x, sparqlStmtParser);
-        if(parsedQuery != null) {
-            String str = parsedQuery.isParsed()
-                    ? parsedQuery.getQuery().toString()
-                    : parsedQuery.getOriginalString();
-
-            //String queryHash = hashFn.apply(str); // Hashing.sha256().hashString(str, StandardCharsets.UTF_8).toString();
-            q.setQueryAndHash(str);
-            //q.setHash(queryHash);
-
-            Throwable t = parsedQuery.getParseException();
-            if(t != null) {
-                q.setParseError(t.toString());
-            }
-
-            // Map<Resource, Resource> remap = org.aksw.jena_sparql_api.rdf.collections.ResourceUtils.renameResources(baseIri, renames);
-
-
-
-            // String graphAndResourceIri = "urn:lsq:query:sha256:" + hash;
-            // String graphAndResourceIri = baseIri + "q-" + queryHash;
-            // Note: We could also leave the resource as a blank node
-            // The only important part is to have a named graph with the query hash
-            // in order to merge records about equivalent queries
-            // qq = ResourceInDatasetImpl.renameResource(qq, graphAndResourceIri);
-
-
-            /*
-             * Generate IRI for log record
-             */
-
-            //if(host != null) {
+        return rdfizeLogRecordCore(
+                rawQueryStr -> LsqQueryCache.process(rawQueryStr, sparqlStmtParser),
+                baseIri, hostHashSalt, serviceUrl, hostHashFn, x, null);
+    }
 
-            // http://www.example.org/sparql -> example.org-sparql
+    /**
+     * Rdfize a log record using a {@link LsqQueryCache} such that repeated
+     * query strings are only parsed and hashed once.
+     */
+    public static Optional<Resource> rdfizeLogRecord(
+            LsqQueryCache queryCache,
+            String baseIri,
+            String hostHashSalt,
+            String serviceUrl,
+            Function<String, String> hostHashFn,
+            Resource x) {
+        return rdfizeLogRecordCore(queryCache, baseIri, hostHashSalt, serviceUrl, hostHashFn, x, null);
+    }
 
-            // Hashing.sha256().hashString(hostHash, StandardCharsets.UTF_8);
+    /**
+     * Rdfize a log record with deferred skolemization: The enricher is applied to the query while
+     * all resources of the record are still blank nodes. The enricher may return renames for the resources it created
+     * (null for none). Afterwards a single skolemization pass computes the IRIs of the whole record and applies them
+     * together with the enricher's renames in a single node transform.
+     */
+    public static Optional<Resource> rdfizeLogRecord(
+            LsqQueryCache queryCache,
+            String baseIri,
+            String hostHashSalt,
+            String serviceUrl,
+            Function<String, String> hostHashFn,
+            Resource x,
+            Function<? super LsqQuery, Map<Node, Node>> enricher) {
+        return rdfizeLogRecordCore(queryCache, baseIri, hostHashSalt, serviceUrl, hostHashFn, x, enricher);
+    }
 
-            String host = re.getHost();
-            String hostHash = host == null
-                    ? null
-                    : hostHashFn.apply(hostHashSalt + host);
+    /**
+     * Enrich an already rdfized record - such as one read from RDF input - and skolemize it again in a single pass
+     * together with the renames returned by the enricher. This is the counterpart of
+     * {@link #rdfizeLogRecord(LsqQueryCache, String, String, String, Function, Resource, Function)}
+     * for records that do not pass through the rdfizer.
+     *
+     * @return The query with its skolemized IRI
+     */
+    public static Resource enrichAndSkolemize(
+            Resource r,
+            String baseIri,
+            Function<? super LsqQuery, Map<Node, Node>> enricher) {
+        LsqQuery q = r.as(LsqQuery.class);
+        Map<Node, Node> pendingRenames = enricher.apply(q);
+        Resource result = SkolemizeBackport.skolemize(q, null, baseIri, LsqQuery.class, pendingRenames, null);
+        return result;
+    }
 
-            // FIXME Respect the noHoshHash = true flag
-            re.setHostHash(hostHash);
-            re.setHost(null);
+    protected static Optional<Resource> rdfizeLogRecordCore(
+            Function<String, CachedQuery> queryProcessor,
+            String baseIri,
+            String hostHashSalt,
+            String serviceUrl,
+            Function<String, String> hostHashFn,
+            Resource x,
+            Function<? super LsqQuery, Map<Node, Node>> enricher) {
+        LsqQuery q = prepareLogRecord(queryProcessor, hostHashSalt, serviceUrl, hostHashFn, x);
 
-            re.setEndpointUrl(serviceUrl);
+        // If we cannot obtain a query from the log record, we omit the entry
+        Optional<Resource> result;
+        if(q != null) {
+            RemoteExecution re = x.as(RemoteExecution.class);
 
 //            Calendar timestamp = re.getTimestamp();
 
@@ -191,7 +260,9 @@ public class LsqRdfizer {
 //            NodeTransformLib2.applyNodeTransform(NodeTransformLib2.makeNullSafe(renames::get), dataset);
 //            result = Maybe.just(new ResourceInDatasetImpl(dataset, newRoot.getURI(), newRoot));
 
-            Resource r = SkolemizeBackport.skolemize(queryInDataset, baseIri, LsqQuery.class, (newRoot, renames) -> {
+            Map<Node, Node> pendingRenames = enricher == null ? null : enricher.apply(q);
+
+            Resource r = SkolemizeBackport.skolemize(q, null, baseIri, LsqQuery.class, pendingRenames, (newRoot, renames) -> {
                 Optional.ofNullable(renames.get(re.asNode()))
                     .map(newRoot.getModel()::wrapAsResource)
                     .ifPresent(newRe -> newRe.as(RemoteExecution.class).setSequenceId(null));
@@ -205,15 +276,10 @@ public class LsqRdfizer {
 //            RDFDataMgr.write(System.out, dataset, RDFFormat.NQUADS);
 
             // qq = ResourceInDatasetImpl.renameGraph(qq, graphAndResourceIri);
-
-
         } else {
-            re.setSequenceId(null);
-
             result = Optional.empty();
         }
 
-
         //LsqUtils.postProcessSparqlStmt(x, sparqlStmtParser);
 //	        	} catch(Exception e) {
 //	                qq.addLiteral(LSQ.processingError, e.toString());
@@ -227,4 +293,144 @@ public class LsqRdfizer {
             return result;
     }
 
+    /**
+     * Rdfize a log record directly into its final form: The skolem IRIs are computed up front
+     * and the renamed triples are written once into the named graph of the query.
+     * This avoids the in-place renaming of the record's model and the subsequent copy into a dataset
+     * of the regular path ({@link #rdfizeLogRecord(LsqQueryCache, String, String, String, Function, Resource)}
+     * followed by {@link ResourceInDatasetImpl#createFromCopyIntoResourceGraph(Resource)})
+     * while yielding the same triples in the same order.
+     */
+    public static Optional<ResourceInDataset> rdfizeLogRecordDirect(
+            LsqQueryCache queryCache,
+            String baseIri,
+            String hostHashSalt,
+            String serviceUrl,
+            Function<String, String> hostHashFn,
+            Resource x) {
+        LsqQuery q = prepareLogRecord(queryCache, hostHashSalt, serviceUrl, hostHashFn, x);
+
+        Optional<ResourceInDataset> result;
+        if(q != null) {
+            Map<Node, Node> renames = SkolemizeBackport.computeRenames(q, baseIri, LsqQuery.class);
+            Node newRoot = renames.get(q.asNode());
+
+            // The sequence id of the skolemized execution is dropped
+            Node newRe = renames.get(x.asNode());
+            Node sequenceId = LSQ.sequenceId.asNode();
+
+            NodeTransform transform = NodeTransformLib2.wrapWithNullAsIdentity(renames::get);
+
+            Dataset dataset = DatasetFactoryEx.createInsertOrderPreservingDataset();
+            DatasetGraph dsg = dataset.asDatasetGraph();
+
+            // In-place renaming re-appends all changed triples, so unchanged triples come first
+            List<Triple> changed = new ArrayList<>();
+            Iterator<Triple> it = q.getModel().getGraph().find();
+            while(it.hasNext()) {
+                Triple before = it.next();
+                Triple after = NodeTransformLib.transform(transform, before);
+
+                boolean isDropped = newRe != null && after.getSubject().equals(newRe) && after.getPredicate().equals(sequenceId);
+                if(!isDropped) {
+                    if(before.equals(after)) {
+                        dsg.add(Quad.create(newRoot, after));
+                    } else {
+                        changed.add(after);
+                    }
+                }
+            }
+
+            for(Triple t : changed) {
+                dsg.add(Quad.create(newRoot, t));
+            }
+
+            result = Optional.of(new ResourceInDatasetImpl(dataset, newRoot.getURI(), newRoot));
+        } else {
+            result = Optional.empty();
+        }
+
+        return result;
+    }
+
+    /**
+     * Invert a log record into a (not yet skolemized) {@link LsqQuery} in the record's model:
+     * Sets the query text, hash and parse error, links the record as a remote execution and replaces the host with
+     * its salted hash.
+     *
+     * @return The query or null if the record does not carry a query; in that case only the sequence id is removed from the record
+     */
+    protected static LsqQuery prepareLogRecord(
+            Function<String, CachedQuery> queryProcessor,
+            String hostHashSalt,
+            String serviceUrl,
+            Function<String, String> hostHashFn,
+            Resource x) {
+        RemoteExecution re = x.as(RemoteExecution.class);
+
+        LsqQuery result;
+
+        // Invert; map from query to log entry
+        //ResourceInDataset queryInDataset = x.wrapCreate(Model::createResource);
+        Resource queryInDataset = re.getModel().createResource();
+
+        LsqQuery q = queryInDataset.as(LsqQuery.class);
+        q.getRemoteExecutions().add(re);
+
+            //try {
+        String rawQueryStr = getRawQuery(x);
+        CachedQuery parsedQuery = rawQueryStr == null ? null : queryProcessor.apply(rawQueryStr);
+        if(parsedQuery != null && parsedQuery.isQuery()) {
+            //String queryHash = hashFn.apply(str); // Hashing.sha256().hashString(str, StandardCharsets.UTF_8).toString();
+            q.setText(parsedQuery.getText());
+            q.setHash(parsedQuery.getHash());
+
+            String parseError = parsedQuery.getParseError();
+            if(parseError != null) {
+                q.setParseError(parseError);
+            }
+
+            // Map<Resource, Resource> remap = org.aksw.jena_sparql_api.rdf.collections.ResourceUtils.renameResources(baseIri, renames);
+
+
+
+            // String graphAndResourceIri = "urn:lsq:query:sha256:" + hash;
+            // String graphAndResourceIri = baseIri + "q-" + queryHash;
+            // Note: We could also leave the resource as a blank node
+            // The only important part is to have a named graph with the query hash
+            // in order to merge records about equivalent queries
+            // qq = ResourceInDatasetImpl.renameResource(qq, graphAndResourceIri);
+
+
+            /*
+             * Generate IRI for log record
+             */
+
+            //if(host != null) {
+
+            // http://www.example.org/sparql -> example.org-sparql
+
+            // Hashing.sha256().hashString(hostHash, StandardCharsets.UTF_8);
+
+            String host = re.getHost();
+            String hostHash = host == null
+                    ? null
+                    : hostHashFn.apply(hostHashSalt + host);
+
+            // FIXME Respect the noHoshHash = true flag
+            re.setHostHash(hostHash);
+            re.setHost(null);
+
+            re.setEndpointUrl(serviceUrl);
+
+            result = q;
+        } else {
+            re.setSequenceId(null);
+
+            result = null;
+        }
+
+        return result;
+    }
+
 }
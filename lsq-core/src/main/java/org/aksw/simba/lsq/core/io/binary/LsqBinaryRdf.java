@@ -0,0 +1,216 @@
+package org.aksw.simba.lsq.core.io.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+import org.aksw.jenax.arq.dataset.orderaware.DatasetFactoryEx;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+/**
+ * A record-framed binary RDF format for handing data between LSQ stages without
+ * text serialization.
+ *
+ * A stream starts with the magic bytes "LSQB" and a version byte. It is followed by
+ * records of the form [int length][RDF Thrift bytes of a dataset], one record per emitted dataset
+ * (typically the named graph of a query). The format is lossless: RDF Thrift retains lexical forms
+ * and blank node labels are read back as given.
+ *
+ * Because each record is length prefixed, frames can be read sequentially while the - comparatively
+ * expensive - encoding and decoding of records is done by other threads.
+ *
+ * @author raven
+ *
+ */
+public class LsqBinaryRdf {
+
+    /** The name by which the format is selected, e.g. with --out-format */
+    public static final String FORMAT_NAME = "lsq-binary";
+
+    protected static final byte[] MAGIC = { 'L', 'S', 'Q', 'B' };
+    protected static final byte VERSION = 1;
+
+    public static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    public static boolean isFormatName(String name) {
+        return FORMAT_NAME.equalsIgnoreCase(name);
+    }
+
+    public static boolean hasMagic(byte[] header, int n) {
+        boolean result = n >= MAGIC.length && Arrays.equals(MAGIC, 0, MAGIC.length, header, 0, MAGIC.length);
+        return result;
+    }
+
+    /** Check whether the given input starts with the magic bytes of the format; failures to read yield false */
+    public static boolean probe(Callable<InputStream> inSupp) {
+        boolean result;
+        try (InputStream in = inSupp.call()) {
+            byte[] header = new byte[HEADER_LENGTH];
+            int n = in.readNBytes(header, 0, header.length);
+            result = hasMagic(header, n);
+        } catch (Exception e) {
+            result = false;
+        }
+        return result;
+    }
+
+    public static void writeHeader(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    public static void readHeader(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int n = in.readNBytes(header, 0, header.length);
+        if (!hasMagic(header, n)) {
+            throw new IOException("Input is not in " + FORMAT_NAME + " format");
+        }
+        if (n < HEADER_LENGTH || header[MAGIC.length] != VERSION) {
+            throw new IOException("Unsupported " + FORMAT_NAME + " version: " + (n < HEADER_LENGTH ? "none" : header[MAGIC.length]));
+        }
+    }
+
+    /** Encode a dataset as the payload of a record */
+    public static byte[] encode(Dataset dataset) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        RDFDataMgr.write(baos, dataset.asDatasetGraph(), RDFFormat.RDF_THRIFT);
+        return baos.toByteArray();
+    }
+
+    /** Decode the payload of a record into an insert order preserving dataset */
+    public static Dataset decode(byte[] payload) {
+        Dataset result = DatasetFactoryEx.createInsertOrderPreservingDataset();
+        RDFParser.source(new ByteArrayInputStream(payload))
+            .lang(Lang.RDFTHRIFT)
+            .labelToNode(LabelToNode.createUseLabelAsGiven())
+            .parse(result.asDatasetGraph());
+        return result;
+    }
+
+    public static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /** Read the payload of the next record; null if the end of the input was reached */
+    public static byte[] readRecord(DataInputStream in) throws IOException {
+        byte[] result = null;
+        // Distinguish the regular end of the input from a truncated record
+        int b0 = in.read();
+        if (b0 >= 0) {
+            int length = (b0 << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+            if (length < 0) {
+                throw new IOException("Invalid record length: " + length);
+            }
+            result = new byte[length];
+            in.readFully(result);
+        }
+        return result;
+    }
+
+    /**
+     * Write a flow of encoded records to the given output stream. The output stream is flushed but not closed.
+     *
+     * @return The number of written records
+     */
+    public static long writeRecords(Flowable<byte[]> records, OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        writeHeader(dataOut);
+        long[] count = { 0 };
+        records.blockingForEach(payload -> {
+            writeRecord(dataOut, payload);
+            ++count[0];
+        });
+        dataOut.flush();
+        return count[0];
+    }
+
+    public static long writeDatasets(Flowable<? extends Dataset> datasets, OutputStream out) throws IOException {
+        return writeRecords(datasets.map(LsqBinaryRdf::encode), out);
+    }
+
+    /** Create a flow of the raw record payloads; the header is validated upon subscription */
+    public static Flowable<byte[]> createFlowableRecords(Callable<InputStream> inSupp) {
+        Flowable<byte[]> result = Flowable.generate(
+                () -> {
+                    InputStream tmp = inSupp.call();
+                    Objects.requireNonNull(tmp, "An InputStream supplier supplied null");
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(tmp, 1 << 16));
+                    readHeader(in);
+                    return in;
+                },
+                (in, emitter) -> {
+                    byte[] payload = readRecord(in);
+                    if (payload != null) {
+                        emitter.onNext(payload);
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                DataInputStream::close);
+        return result;
+    }
+
+    public static Flowable<Dataset> createFlowableDatasets(Callable<InputStream> inSupp) {
+        return createFlowableRecords(inSupp).map(LsqBinaryRdf::decode);
+    }
+
+    /**
+     * Iterate the datasets of the given input; intended for contexts without RxJava such as Spark partitions.
+     * The input stream is closed once the end is reached.
+     */
+    public static Iterator<Dataset> iterateDatasets(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        readHeader(dataIn);
+
+        return new Iterator<Dataset>() {
+            protected byte[] next = null;
+            protected boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        next = readRecord(dataIn);
+                        if (next == null) {
+                            done = true;
+                            dataIn.close();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Dataset next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                byte[] payload = next;
+                next = null;
+                return decode(payload);
+            }
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package org.aksw.simba.lsq.core.io.input;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a BGZF (blocked gzip, as written by bgzip) stream by inflating
+ * the blocks in parallel.
+ *
+ * BGZF files are a series of gzip members, each of which states its compressed size in
+ * the 'BC' extra field. The compressed blocks are therefore read sequentially without inflating them,
+ * submitted to an executor, and the inflated blocks are returned in order.
+ * The number of blocks that are inflated ahead of the reader is bounded.
+ *
+ * @author raven
+ *
+ */
+public class BgzfInputStream
+    extends InputStream
+{
+    /** The length of the fixed part of a BGZF block header including the 'BC' subfield */
+    public static final int HEADER_LENGTH = 18;
+
+    protected InputStream in;
+    protected ExecutorService executorService;
+    protected int readAhead;
+
+    protected Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    protected boolean inEof = false;
+
+    protected byte[] current = new byte[0];
+    protected int pos = 0;
+
+    public BgzfInputStream(InputStream in, ExecutorService executorService, int readAhead) {
+        super();
+        this.in = in;
+        this.executorService = executorService;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Check whether the given bytes start with a BGZF block header.
+     * At least {@link #HEADER_LENGTH} bytes are needed.
+     */
+    public static boolean isBgzfHeader(byte[] b, int len) {
+        boolean result = len >= HEADER_LENGTH
+                && (b[0] & 0xff) == 31 && (b[1] & 0xff) == 139 // gzip magic
+                && b[2] == 8 // deflate
+                && (b[3] & 4) != 0 // FEXTRA
+                && b[12] == 'B' && b[13] == 'C'
+                && b[14] == 2 && b[15] == 0;
+        return result;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (pos >= current.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    protected boolean nextBlock() throws IOException {
+        // Schedule compressed blocks for inflation
+        while (!inEof && pending.size() < readAhead) {
+            byte[] block = readRawBlock();
+            if (block == null) {
+                inEof = true;
+            } else {
+                pending.add(executorService.submit(() -> inflate(block)));
+            }
+        }
+
+        Future<byte[]> next = pending.poll();
+        boolean result = next != null;
+        if (result) {
+            try {
+                current = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to inflate BGZF block", e.getCause());
+            }
+            pos = 0;
+        }
+        return result;
+    }
+
+    /** Read the next complete block (header, compressed data and trailer) or return null on end of input */
+    protected byte[] readRawBlock() throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int n = in.readNBytes(header, 0, HEADER_LENGTH);
+        if (n == 0) {
+            return null;
+        }
+
+        if (!isBgzfHeader(header, n)) {
+            throw new IOException("Input is not a BGZF stream or is truncated");
+        }
+
+        int blockSize = ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+        byte[] result = new byte[blockSize];
+        System.arraycopy(header, 0, result, 0, HEADER_LENGTH);
+        int remaining = blockSize - HEADER_LENGTH;
+        if (in.readNBytes(result, HEADER_LENGTH, remaining) != remaining) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        return result;
+    }
+
+    /** Inflate a single block and verify its checksum */
+    public static byte[] inflate(byte[] block) throws DataFormatException, IOException {
+        int xlen = (block[10] & 0xff) | ((block[11] & 0xff) << 8);
+        int dataStart = 12 + xlen;
+        int trailerStart = block.length - 8;
+
+        long expectedCrc = readUInt32(block, trailerStart);
+        int isize = (int)readUInt32(block, trailerStart + 4);
+
+        byte[] result = new byte[isize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, dataStart, trailerStart - dataStart);
+            int n = 0;
+            while (n < isize && !inflater.finished()) {
+                int k = inflater.inflate(result, n, isize - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != isize) {
+                throw new IOException("BGZF block inflated to " + n + " bytes but " + isize + " were expected");
+            }
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(result);
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException("CRC mismatch in BGZF block");
+        }
+
+        return result;
+    }
+
+    protected static long readUInt32(byte[] b, int off) {
+        return (b[off] & 0xffL)
+                | ((b[off + 1] & 0xffL) << 8)
+                | ((b[off + 2] & 0xffL) << 16)
+                | ((b[off + 3] & 0xffL) << 24);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        in.close();
+    }
+}
@@ -0,0 +1,122 @@
+package org.aksw.simba.lsq.core.io.input;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jena.riot.RDFDataMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Utilities to open log sources such that decompression does not
+ * run on the thread that consumes the data.
+ *
+ * <ul>
+ *   <li>BGZF files (as written by bgzip) are inflated block-wise in parallel.</li>
+ *   <li>Other compressed files are decompressed on a separate thread with read-ahead.</li>
+ *   <li>Anything else is opened with {@link RDFDataMgr#open(String)}.</li>
+ * </ul>
+ *
+ * @author raven
+ *
+ */
+public class LsqInputStreams {
+
+    private static final Logger logger = LoggerFactory.getLogger(LsqInputStreams.class);
+
+    /** File extensions for which RDFDataMgr.open decodes the content */
+    public static final List<String> encodedFileExtensions = Arrays.asList(
+            ".gz", ".bz2", ".sz", ".xz", ".zst", ".lz4", ".br", ".z", ".deflate");
+
+    public static boolean hasEncodingExtension(String filename) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        boolean result = encodedFileExtensions.stream().anyMatch(name::endsWith);
+        return result;
+    }
+
+    /** Return the path for the given source if it denotes a local regular file; null otherwise */
+    public static Path tryGetLocalFile(String source) {
+        Path result = null;
+        if (source != null) {
+            try {
+                Path path = Paths.get(source);
+                if (Files.isRegularFile(path)) {
+                    result = path;
+                }
+            } catch (InvalidPathException e) {
+                // Not a local path (e.g. a URL)
+            }
+        }
+        return result;
+    }
+
+    public static boolean isBgzf(Path path) throws IOException {
+        byte[] header = new byte[BgzfInputStream.HEADER_LENGTH];
+        int n;
+        try (InputStream in = Files.newInputStream(path)) {
+            n = in.readNBytes(header, 0, header.length);
+        }
+        boolean result = BgzfInputStream.isBgzfHeader(header, n);
+        return result;
+    }
+
+    /**
+     * Open a log source.
+     *
+     * @param source A file name or URL
+     * @param parallelism The number of threads that may be used for decompression; with a value of 1
+     *   the source is opened with {@link RDFDataMgr#open(String)}
+     */
+    public static InputStream open(String source, int parallelism) throws IOException {
+        InputStream result;
+        Path path = tryGetLocalFile(source);
+        if (parallelism <= 1) {
+            result = RDFDataMgr.open(source);
+        } else if (path != null && isBgzf(path)) {
+            logger.info("Inflating BGZF blocks of " + source + " using " + parallelism + " threads");
+            ExecutorService executorService = newExecutorService(parallelism);
+            InputStream raw = new BufferedInputStream(Files.newInputStream(path), 1024 * 1024);
+            result = closeExecutorOnClose(new BgzfInputStream(raw, executorService, parallelism * 4), executorService);
+        } else if (hasEncodingExtension(source)) {
+            ExecutorService executorService = newExecutorService(1);
+            result = closeExecutorOnClose(new ReadAheadInputStream(RDFDataMgr.open(source), executorService,
+                    ReadAheadInputStream.DEFAULT_CHUNK_SIZE, 8), executorService);
+        } else {
+            result = RDFDataMgr.open(source);
+        }
+        return result;
+    }
+
+    protected static ExecutorService newExecutorService(int parallelism) {
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("lsq-decompress-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    protected static InputStream closeExecutorOnClose(InputStream in, ExecutorService executorService) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    executorService.shutdownNow();
+                }
+            }
+        };
+    }
+}
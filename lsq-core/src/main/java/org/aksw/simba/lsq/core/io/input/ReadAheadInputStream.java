@@ -0,0 +1,122 @@
+package org.aksw.simba.lsq.core.io.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An input stream that reads its delegate on a separate thread.
+ *
+ * This is used for compressed inputs whose block boundaries are not known in advance
+ * (plain gzip, bzip2): decompression then runs concurrently with the consumer
+ * which parses the decompressed data.
+ *
+ * @author raven
+ *
+ */
+public class ReadAheadInputStream
+    extends InputStream
+{
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /** Marker for the end of the delegate */
+    protected static final byte[] EOF = new byte[0];
+
+    protected InputStream in;
+    protected int chunkSize;
+    protected BlockingQueue<byte[]> queue;
+    protected Future<?> task;
+
+    protected volatile IOException error;
+    protected volatile boolean closed = false;
+
+    protected byte[] current = new byte[0];
+    protected int pos = 0;
+    protected boolean eof = false;
+
+    public ReadAheadInputStream(InputStream in, ExecutorService executorService, int chunkSize, int maxChunks) {
+        super();
+        this.in = in;
+        this.chunkSize = chunkSize;
+        this.queue = new ArrayBlockingQueue<>(maxChunks);
+        this.task = executorService.submit(this::readLoop);
+    }
+
+    protected void readLoop() {
+        try {
+            while (!closed) {
+                byte[] chunk = new byte[chunkSize];
+                int n = in.readNBytes(chunk, 0, chunkSize);
+                if (n == 0) {
+                    break;
+                }
+                queue.put(n == chunkSize ? chunk : Arrays.copyOf(chunk, n));
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            // Closed by the consumer
+            return;
+        } catch (Exception e) {
+            error = new IOException(e);
+        }
+
+        try {
+            queue.put(EOF);
+        } catch (InterruptedException e) {
+            // Closed by the consumer
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (pos >= current.length) {
+            if (eof) {
+                return -1;
+            }
+
+            try {
+                current = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            pos = 0;
+
+            if (current == EOF) {
+                eof = true;
+                if (error != null) {
+                    throw error;
+                }
+            }
+        }
+
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        task.cancel(true);
+        in.close();
+    }
+}
@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 
 import org.aksw.simba.lsq.core.ResourceParser;
 import org.aksw.simba.lsq.core.rx.io.input.LsqRxIo;
+import org.aksw.simba.lsq.core.rx.io.input.WebLogResourceParser;
 import org.aksw.simba.lsq.parser.Mapper;
 import org.aksw.simba.lsq.parser.WebLogParser;
 import org.apache.jena.riot.Lang;
@@ -36,7 +37,7 @@ public class LsqInputFormatRegistry {
     public static Map<String, ResourceParser> wrap(Map<String, Mapper> webLogParserRegistry) {
          Map<String, ResourceParser> result = webLogParserRegistry.entrySet().stream().map(e -> {
             String name = e.getKey();
-            ResourceParser r = inSupp -> LsqRxIo.createResourceStreamFromMapperRegistry(inSupp, webLogParserRegistry::get, name);
+            ResourceParser r = new WebLogResourceParser(e.getValue());
             return new SimpleEntry<>(name, r);
         }).collect(Collectors.toMap(Entry::getKey, Entry::getValue));
 
@@ -0,0 +1,350 @@
+package org.aksw.simba.lsq.core.io.output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes datasets into a fixed number of shards in an output folder.
+ *
+ * Each dataset is routed by the hash of its first named graph - for LSQ output the IRI of the query -
+ * such that all records of a query end up in the same shard. Every shard has its own thread that
+ * serializes and compresses its records, so output is no longer limited by a single writer thread.
+ * Once a shard file exceeds the size limit it is closed and a new part is started.
+ *
+ * Files are named part-[shard]-[part].[ext] where the extension reflects format and compression.
+ *
+ * @author raven
+ *
+ */
+public class ShardedDatasetWriter
+    implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ShardedDatasetWriter.class);
+
+    public static final String COMPRESSION_NONE = "none";
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final String COMPRESSION_ZSTD = "zstd";
+
+    /** The number of records per shard that may be queued before the producer is blocked */
+    protected static final int MAX_PENDING_PER_SHARD = 256;
+
+    protected Path folder;
+    protected RDFFormat rdfFormat;
+    protected String compression;
+    protected long maxShardBytes;
+
+    protected List<Shard> shards;
+
+    /** The first failure of any shard; reported to the producer */
+    protected volatile Throwable failure = null;
+
+    /**
+     * @param folder The output folder; created if it does not exist
+     * @param numShards The number of shards
+     * @param rdfFormat The RDF format of the records; null for {@link LsqBinaryRdf}. Must be a streaming format; see {@link #isSupportedFormat(RDFFormat)}
+     * @param compression One of none, gzip or zstd
+     * @param maxShardBytes The number of (compressed) bytes after which a new part is started; values &lt;= 0 disable rollover
+     */
+    public ShardedDatasetWriter(Path folder, int numShards, RDFFormat rdfFormat, String compression, long maxShardBytes) throws IOException {
+        super();
+        this.folder = folder;
+        this.rdfFormat = rdfFormat;
+        this.compression = compression == null ? COMPRESSION_NONE : compression.toLowerCase(Locale.ROOT);
+        this.maxShardBytes = maxShardBytes;
+
+        switch (this.compression) {
+        case COMPRESSION_NONE:
+        case COMPRESSION_GZIP:
+        case COMPRESSION_ZSTD:
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown compression: " + compression + " - expected none, gzip or zstd");
+        }
+
+        if (!isSupportedFormat(rdfFormat)) {
+            throw new IllegalArgumentException("Output format " + rdfFormat + " cannot be written as a stream - use one of " + StreamRDFWriter.registered());
+        }
+
+        Files.createDirectories(folder);
+
+        int n = Math.max(1, numShards);
+        this.shards = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            shards.add(new Shard(i));
+        }
+    }
+
+    /** Shards are written record by record, so only {@link LsqBinaryRdf} (null) and the streaming RDF formats are supported */
+    public static boolean isSupportedFormat(RDFFormat rdfFormat) {
+        boolean result = rdfFormat == null || StreamRDFWriter.registered(rdfFormat);
+        return result;
+    }
+
+    /**
+     * Parse a shard size: A number of bytes with an optional suffix of B, K, M, G or T (powers of 1024).
+     * Unlike buffer sizes there is no percentage notation and a bare number denotes bytes.
+     */
+    public static long parseShardSize(String str) {
+        String s = str.trim();
+        if (s.isEmpty()) {
+            throw new IllegalArgumentException("Empty shard size");
+        }
+
+        char last = Character.toUpperCase(s.charAt(s.length() - 1));
+        String numberPart = Character.isDigit(last) ? s : s.substring(0, s.length() - 1).trim();
+
+        long factor;
+        switch (last) {
+        case 'B': factor = 1l; break;
+        case 'K': factor = 1l << 10; break;
+        case 'M': factor = 1l << 20; break;
+        case 'G': factor = 1l << 30; break;
+        case 'T': factor = 1l << 40; break;
+        default:
+            if (Character.isDigit(last)) {
+                factor = 1l;
+            } else {
+                throw new IllegalArgumentException(String.format(Locale.ROOT, "Unknown unit in shard size: %s", str));
+            }
+        }
+
+        long result;
+        try {
+            result = (long)(Double.parseDouble(numberPart) * factor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "Invalid shard size: %s", str), e);
+        }
+        return result;
+    }
+
+    public int getNumShards() {
+        return shards.size();
+    }
+
+    /** Map the key to a shard by splitting the (unsigned) hash range into numShards equal ranges */
+    public static int shardOf(String key, int numShards) {
+        long hash = Integer.toUnsignedLong(key.hashCode());
+        int result = (int)((hash * numShards) >>> 32);
+        return result;
+    }
+
+    /** The routing key of a dataset is its first named graph; datasets without named graphs go to the first shard */
+    public static String routingKey(Dataset dataset) {
+        Iterator<Node> it = dataset.asDatasetGraph().listGraphNodes();
+        String result = it.hasNext() ? it.next().toString() : "";
+        return result;
+    }
+
+    public void write(Dataset dataset) {
+        checkFailure();
+        Shard shard = shards.get(shardOf(routingKey(dataset), shards.size()));
+        shard.submit(dataset);
+    }
+
+    protected void checkFailure() {
+        Throwable e = failure;
+        if (e != null) {
+            throw new RuntimeException("Failed to write output shard", e);
+        }
+    }
+
+    protected String fileExtension() {
+        String result = rdfFormat == null
+                ? "lsqb"
+                : rdfFormat.getLang().getFileExtensions().get(0);
+        switch (compression) {
+        case COMPRESSION_GZIP: result += ".gz"; break;
+        case COMPRESSION_ZSTD: result += ".zst"; break;
+        default: break;
+        }
+        return result;
+    }
+
+    /** Counts the bytes written to the file - i.e. after compression */
+    protected static class CountingOutputStream
+        extends FilterOutputStream
+    {
+        protected long count = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /** A shard with its own writer thread. All file operations happen on that thread. */
+    protected class Shard {
+        protected int id;
+        protected ExecutorService executorService;
+        protected Semaphore pending = new Semaphore(MAX_PENDING_PER_SHARD);
+
+        protected int partId = 0;
+        protected CountingOutputStream fileOut = null;
+        protected OutputStream out = null;
+        protected StreamRDF rdfOut = null;
+        protected long recordCount = 0;
+
+        public Shard(int id) {
+            super();
+            this.id = id;
+            this.executorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("lsq-shard-" + id)
+                    .setDaemon(true)
+                    .build());
+        }
+
+        public void submit(Dataset dataset) {
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            executorService.execute(() -> {
+                try {
+                    if (failure == null) {
+                        writeRecord(dataset);
+                    }
+                } catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                } finally {
+                    pending.release();
+                }
+            });
+        }
+
+        protected void writeRecord(Dataset dataset) throws IOException {
+            if (out == null) {
+                openPart();
+            }
+
+            if (rdfOut != null) {
+                StreamRDFOps.sendDatasetToStream(dataset.asDatasetGraph(), rdfOut);
+            } else {
+                LsqBinaryRdf.writeRecord((DataOutputStream)out, LsqBinaryRdf.encode(dataset));
+            }
+            ++recordCount;
+
+            // Buffered and compressor internal data is not yet accounted for; parts may slightly exceed the limit
+            if (maxShardBytes > 0 && fileOut.getCount() >= maxShardBytes) {
+                closePart();
+            }
+        }
+
+        protected void openPart() throws IOException {
+            Path file = folder.resolve(String.format(Locale.ROOT, "part-%05d-%05d.%s", id, partId++, fileExtension()));
+            fileOut = new CountingOutputStream(Files.newOutputStream(file));
+
+            OutputStream tmp;
+            switch (compression) {
+            case COMPRESSION_GZIP: tmp = new GZIPOutputStream(fileOut, 1 << 16); break;
+            case COMPRESSION_ZSTD: tmp = new ZstdOutputStream(fileOut); break;
+            default: tmp = fileOut; break;
+            }
+
+            if (rdfFormat == null) {
+                DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(tmp, 1 << 16));
+                LsqBinaryRdf.writeHeader(dataOut);
+                out = dataOut;
+            } else {
+                out = new BufferedOutputStream(tmp, 1 << 16);
+                rdfOut = StreamRDFWriter.getWriterStream(out, rdfFormat);
+                rdfOut.start();
+            }
+        }
+
+        protected void closePart() throws IOException {
+            if (rdfOut != null) {
+                rdfOut.finish();
+                rdfOut = null;
+            }
+            if (out != null) {
+                out.close();
+                out = null;
+                fileOut = null;
+            }
+        }
+
+        /** Close the current part on the shard's thread and stop the thread */
+        public void finish() {
+            executorService.execute(() -> {
+                try {
+                    closePart();
+                } catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            });
+            executorService.shutdown();
+        }
+
+        public void awaitTermination() throws InterruptedException {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Complete all shards; waits for pending records to be written. Failures of any shard are rethrown. */
+    @Override
+    public void close() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.finish();
+        }
+
+        long total = 0;
+        int parts = 0;
+        for (Shard shard : shards) {
+            shard.awaitTermination();
+            total += shard.recordCount;
+            parts += shard.partId;
+        }
+
+        checkFailure();
+        logger.info("Wrote " + total + " records into " + parts + " files in " + folder);
+    }
+}
@@ -0,0 +1,79 @@
+package org.aksw.simba.lsq.core.rx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Flow operators used by the LSQ pipelines.
+ *
+ * @author raven
+ *
+ */
+public class LsqRxOps {
+
+    /** The default number of items that are processed as one unit of work */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Map the items of a flow on a pool of worker threads while retaining their order.
+     * Items are processed in batches; at most parallelism batches are in flight at any time.
+     * Items for which the mapper returns null are dropped.
+     *
+     * With a parallelism of 1 or less the items are mapped on the calling thread.
+     *
+     * @param mapper A thread-safe function
+     * @param parallelism The number of worker threads
+     */
+    public static <T, R> FlowableTransformer<T, R> mapParallelOrdered(Function<? super T, ? extends R> mapper, int parallelism) {
+        return mapParallelOrdered(mapper, parallelism, DEFAULT_BATCH_SIZE);
+    }
+
+    public static <T, R> FlowableTransformer<T, R> mapParallelOrdered(Function<? super T, ? extends R> mapper, int parallelism, int batchSize) {
+        return upstream -> {
+            Flowable<R> result;
+            if (parallelism <= 1) {
+                result = upstream.concatMapMaybe(item -> Maybe.fromOptional(Optional.<R>ofNullable(mapper.apply(item))));
+            } else {
+                result = Flowable.using(
+                    () -> Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                            .setNameFormat("lsq-worker-%d")
+                            .setDaemon(true)
+                            .build()),
+                    executorService -> {
+                        Scheduler scheduler = Schedulers.from(executorService);
+                        return upstream
+                            .buffer(batchSize)
+                            .concatMapEager(batch -> Flowable.fromCallable(() -> mapBatch(batch, mapper))
+                                    .subscribeOn(scheduler),
+                                parallelism, 1)
+                            .concatMapIterable(x -> x);
+                    },
+                    ExecutorService::shutdownNow);
+            }
+            return result;
+        };
+    }
+
+    protected static <T, R> List<R> mapBatch(List<T> batch, Function<? super T, ? extends R> mapper) {
+        List<R> result = new ArrayList<>(batch.size());
+        for (T item : batch) {
+            R r = mapper.apply(item);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+}
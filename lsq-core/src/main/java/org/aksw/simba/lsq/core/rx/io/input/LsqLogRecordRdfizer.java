@@ -1,32 +1,54 @@
 package org.aksw.simba.lsq.core.rx.io.input;
 
+import java.util.Map;
 import java.util.function.Function;
 
 import org.aksw.jenax.stmt.core.SparqlStmt;
+import org.aksw.simba.lsq.core.LsqQueryCache;
 import org.aksw.simba.lsq.core.LsqRdfizer;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Resource;
 
 public class LsqLogRecordRdfizer
     implements Function<Resource, Resource>
 {
-    protected Function<String, SparqlStmt> sparqlStmtParser;
+    protected LsqQueryCache queryCache;
     protected String baseIri;
     protected String hostHashSalt;
     protected String serviceUrl;
     protected Function<String, String> hashFn;
 
+    /** Optional enricher applied before the single skolemization pass; see {@link LsqRdfizer#rdfizeLogRecord(LsqQueryCache, String, String, String, Function, Resource, Function)} */
+    protected Function<? super LsqQuery, Map<Node, Node>> enricher;
+
     public LsqLogRecordRdfizer(Function<String, SparqlStmt> sparqlStmtParser, String baseIri, String hostHashSalt,
             String serviceUrl, Function<String, String> hashFn) {
+        this(LsqQueryCache.create(sparqlStmtParser), baseIri, hostHashSalt, serviceUrl, hashFn);
+    }
+
+    public LsqLogRecordRdfizer(LsqQueryCache queryCache, String baseIri, String hostHashSalt,
+            String serviceUrl, Function<String, String> hashFn) {
+        this(queryCache, baseIri, hostHashSalt, serviceUrl, hashFn, null);
+    }
+
+    public LsqLogRecordRdfizer(LsqQueryCache queryCache, String baseIri, String hostHashSalt,
+            String serviceUrl, Function<String, String> hashFn, Function<? super LsqQuery, Map<Node, Node>> enricher) {
         super();
-        this.sparqlStmtParser = sparqlStmtParser;
+        this.queryCache = queryCache;
         this.baseIri = baseIri;
         this.hostHashSalt = hostHashSalt;
         this.serviceUrl = serviceUrl;
         this.hashFn = hashFn;
+        this.enricher = enricher;
+    }
+
+    public LsqQueryCache getQueryCache() {
+        return queryCache;
     }
 
     @Override
     public Resource apply(Resource logEntry) {
-        return LsqRdfizer.rdfizeLogRecord(sparqlStmtParser, baseIri, hostHashSalt, serviceUrl, hashFn, logEntry).orElse(null);
+        return LsqRdfizer.rdfizeLogRecord(queryCache, baseIri, hostHashSalt, serviceUrl, hashFn, logEntry, enricher).orElse(null);
     }
 }
@@ -0,0 +1,30 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.util.function.Function;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.simba.lsq.core.LsqQueryCache;
+import org.aksw.simba.lsq.core.LsqRdfizer;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * Variant of {@link LsqLogRecordRdfizer} whose results are {@link ResourceInDataset} instances
+ * that are already skolemized and placed in the named graph of the query.
+ * They can be written out or merged without further copying.
+ *
+ * @author raven
+ *
+ */
+public class LsqLogRecordRdfizerDirect
+    extends LsqLogRecordRdfizer
+{
+    public LsqLogRecordRdfizerDirect(LsqQueryCache queryCache, String baseIri, String hostHashSalt,
+            String serviceUrl, Function<String, String> hashFn) {
+        super(queryCache, baseIri, hostHashSalt, serviceUrl, hashFn);
+    }
+
+    @Override
+    public Resource apply(Resource logEntry) {
+        return LsqRdfizer.rdfizeLogRecordDirect(queryCache, baseIri, hostHashSalt, serviceUrl, hashFn, logEntry).orElse(null);
+    }
+}
@@ -3,7 +3,8 @@ package org.aksw.simba.lsq.core.rx.io.input;
 import java.util.function.Function;
 
 import org.aksw.jenax.stmt.core.SparqlStmt;
-import org.aksw.jenax.stmt.core.SparqlStmtQuery;
+import org.aksw.simba.lsq.core.LsqQueryCache;
+import org.aksw.simba.lsq.core.LsqQueryCache.CachedQuery;
 import org.aksw.simba.lsq.core.LsqRdfizer;
 import org.aksw.simba.lsq.core.util.SkolemizeBackport;
 import org.aksw.simba.lsq.model.LsqQuery;
@@ -13,17 +14,25 @@ import org.apache.jena.rdf.model.Resource;
 public class LsqLogRecordRdfizerQueryOnly
     implements Function<Resource, Resource>
 {
-    protected Function<String, SparqlStmt> sparqlStmtParser;
+    protected LsqQueryCache queryCache;
     protected String baseIri;
     protected Function<String, String> hashFn;
 
     public LsqLogRecordRdfizerQueryOnly(Function<String, SparqlStmt> sparqlStmtParser, String baseIri, Function<String, String> hashFn) {
+        this(LsqQueryCache.create(sparqlStmtParser), baseIri, hashFn);
+    }
+
+    public LsqLogRecordRdfizerQueryOnly(LsqQueryCache queryCache, String baseIri, Function<String, String> hashFn) {
         super();
-        this.sparqlStmtParser = sparqlStmtParser;
+        this.queryCache = queryCache;
         this.baseIri = baseIri;
         this.hashFn = hashFn;
     }
 
+    public LsqQueryCache getQueryCache() {
+        return queryCache;
+    }
+
     @Override
     public Resource apply(Resource logEntry) {
         // RemoteExecution re = logEntry.as(RemoteExecution.class);
@@ -38,17 +47,15 @@ public class LsqLogRecordRdfizerQueryOnly
 
         LsqQuery q = queryInDataset.as(LsqQuery.class);
 
-        SparqlStmtQuery parsedQuery = LsqRdfizer.getParsedQuery(logEntry, sparqlStmtParser);
-        if(parsedQuery != null) {
-            String str = parsedQuery.isParsed()
-                    ? parsedQuery.getQuery().toString()
-                    : parsedQuery.getOriginalString();
-
-            q.setQueryAndHash(str);
+        String rawQueryStr = LsqRdfizer.getRawQuery(logEntry);
+        CachedQuery parsedQuery = rawQueryStr == null ? null : queryCache.apply(rawQueryStr);
+        if(parsedQuery != null && parsedQuery.isQuery()) {
+            q.setText(parsedQuery.getText());
+            q.setHash(parsedQuery.getHash());
 
-            Throwable t = parsedQuery.getParseException();
-            if(t != null) {
-                q.setParseError(t.toString());
+            String parseError = parsedQuery.getParseError();
+            if(parseError != null) {
+                q.setParseError(parseError);
             }
 
             Resource r = SkolemizeBackport.skolemize(queryInDataset, baseIri, LsqQuery.class, (newRoot, renames) -> {
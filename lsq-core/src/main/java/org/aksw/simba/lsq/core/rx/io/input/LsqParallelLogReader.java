@@ -0,0 +1,239 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.aksw.simba.lsq.core.io.input.LsqInputStreams;
+import org.apache.jena.rdf.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Parallel reader for line based logs in local uncompressed files.
+ *
+ * The file is split into byte ranges whose boundaries are aligned to line starts.
+ * In a first pass, the number of lines in each range is counted in parallel such that
+ * the sequence id of the first line of each range is known.
+ * In the second pass, the ranges are parsed and rdfized on a worker pool; the results are
+ * emitted in the original line order. Both passes read the file via memory mapping.
+ *
+ * Sequence ids are the same as those of the sequential reader, i.e. the 1-based
+ * line number as produced by {@link java.io.BufferedReader#readLine()}.
+ *
+ * @author raven
+ *
+ */
+public class LsqParallelLogReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(LsqParallelLogReader.class);
+
+    public static final long MIN_RANGE_SIZE = 1024 * 1024;
+    public static final long MAX_RANGE_SIZE = 64 * 1024 * 1024;
+
+    /** The number of items each range may buffer ahead of the consumer */
+    public static final int PREFETCH = 128;
+
+    /**
+     * Return the path for the given log source if it denotes a local regular file
+     * whose content is not compressed. Otherwise return null.
+     */
+    public static Path tryGetLocalUncompressedFile(String logSource) {
+        Path result = LsqInputStreams.tryGetLocalFile(logSource);
+        if (result != null && LsqInputStreams.hasEncodingExtension(result.getFileName().toString())) {
+            result = null;
+        }
+        return result;
+    }
+
+    public static int effectiveParallelism(int parallelism) {
+        int result = parallelism > 0
+                ? parallelism
+                : Runtime.getRuntime().availableProcessors();
+        return result;
+    }
+
+    /**
+     * Read, parse and rdfize the lines of the given file in parallel.
+     *
+     * @param path A local uncompressed file
+     * @param parser The parser for the log format
+     * @param rdfizer The rdfizer which is applied to every log record that carries a query; must be thread-safe
+     * @param parallelism The number of worker threads
+     */
+    public static Flowable<Resource> createReader(
+            Path path,
+            WebLogResourceParser parser,
+            Function<Resource, Resource> rdfizer,
+            int parallelism) {
+        return createReader(path, parser, rdfizer, parallelism, MIN_RANGE_SIZE);
+    }
+
+    /**
+     * @param minRangeSize The minimum size of a byte range; ranges are only smaller if the file is
+     */
+    public static Flowable<Resource> createReader(
+            Path path,
+            WebLogResourceParser parser,
+            Function<Resource, Resource> rdfizer,
+            int parallelism,
+            long minRangeSize) {
+        return Flowable.using(
+                () -> Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                        .setNameFormat("lsq-ingest-%d")
+                        .setDaemon(true)
+                        .build()),
+                executorService -> {
+                    Scheduler scheduler = Schedulers.from(executorService);
+
+                    long size = Files.size(path);
+                    long rangeSize = Math.max(minRangeSize, Math.min(MAX_RANGE_SIZE, size / (parallelism * 4L)));
+                    long[] boundaries = computeRangeBoundaries(path, size, rangeSize);
+                    long[] firstIds = computeFirstSequenceIds(path, boundaries, executorService);
+
+                    int n = boundaries.length - 1;
+                    logger.info("Processing " + path + " in " + n + " ranges using " + parallelism + " threads");
+
+                    return Flowable.range(0, n)
+                        .concatMapEager(i -> {
+                            long start = boundaries[i];
+                            long end = boundaries[i + 1];
+                            Flowable<Resource> logEntries = LsqRxIo.createLogRecordResources(
+                                    parser.parseLines(MappedLineReader.createLineStream(path, start, end)), firstIds[i]);
+                            return LsqRxIo.applyRdfizer(logEntries, rdfizer)
+                                    .subscribeOn(scheduler);
+                        }, parallelism, PREFETCH);
+                },
+                ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Split a file into ranges of approximately the given size such that every range
+     * starts at the beginning of a line.
+     *
+     * @return An array of offsets where the i-th range spans [result[i], result[i+1])
+     */
+    public static long[] computeRangeBoundaries(Path path, long size, long rangeSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0l);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long candidate = rangeSize;
+            while (candidate < size) {
+                // A range starts after a '\n'; this never splits a "\r\n" sequence
+                long lineStart = findLineStart(channel, candidate, size, buffer);
+                if (lineStart >= size) {
+                    break;
+                }
+                boundaries.add(lineStart);
+                candidate = lineStart + rangeSize;
+            }
+        }
+
+        boundaries.add(size);
+
+        long[] result = boundaries.stream().mapToLong(Long::longValue).toArray();
+        return result;
+    }
+
+    /** Find the smallest offset greater than or equal to the given one which is preceded by a '\n' */
+    protected static long findLineStart(FileChannel channel, long offset, long size, ByteBuffer buffer) throws IOException {
+        long pos = offset - 1;
+        while (pos < size) {
+            buffer.clear();
+            int n = channel.read(buffer, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; ++i) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Count the lines of all ranges in parallel and compute the 1-based sequence id
+     * of the first line in each range.
+     */
+    protected static long[] computeFirstSequenceIds(Path path, long[] boundaries, ExecutorService executorService) throws Exception {
+        int n = boundaries.length - 1;
+        List<Future<Long>> counts = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            counts.add(executorService.submit(() -> countLines(path, start, end)));
+        }
+
+        long[] result = new long[n];
+        long next = 1;
+        for (int i = 0; i < n; ++i) {
+            result[i] = next;
+            next += counts.get(i).get();
+        }
+        return result;
+    }
+
+    /**
+     * Count the lines in the given range like {@link java.io.BufferedReader#readLine()} would:
+     * Lines are terminated by '\n', '\r' or "\r\n"; a non-empty remainder counts as a line.
+     */
+    public static long countLines(Path path, long start, long end) throws IOException {
+        long result = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long pos = start;
+            boolean pendingCr = false;
+            boolean pendingContent = false;
+            while (pos < end) {
+                // The lines are scanned directly in the mapped memory
+                int n = (int)Math.min(MappedLineReader.DEFAULT_WINDOW_SIZE, end - pos);
+                MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, pos, n);
+                for (int i = 0; i < n; ++i) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        // A '\n' directly after a '\r' was already counted
+                        if (!pendingCr) {
+                            ++result;
+                        }
+                        pendingCr = false;
+                        pendingContent = false;
+                    } else if (b == '\r') {
+                        ++result;
+                        pendingCr = true;
+                        pendingContent = false;
+                    } else {
+                        pendingCr = false;
+                        pendingContent = true;
+                    }
+                }
+                pos += n;
+            }
+
+            if (pendingContent) {
+                ++result;
+            }
+        }
+        return result;
+    }
+}
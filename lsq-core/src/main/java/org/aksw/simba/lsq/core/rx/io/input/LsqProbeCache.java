@@ -0,0 +1,132 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Sidecar file that remembers the outcome of probing a log file's format.
+ *
+ * The sidecar is placed next to the log file (name suffix {@value #SUFFIX}) and is keyed
+ * by the log file's size, modification time and a hash of its first bytes.
+ * If the sidecar cannot be written (e.g. read-only directory) probing simply
+ * happens again on the next run.
+ *
+ * @author raven
+ *
+ */
+public class LsqProbeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LsqProbeCache.class);
+
+    public static final String SUFFIX = ".lsqprobe";
+
+    /** The number of bytes at the start of a file that contribute to the key */
+    public static final int HEAD_SIZE = 64 * 1024;
+
+    protected static final String KEY_SIZE = "size";
+    protected static final String KEY_MTIME = "mtime";
+    protected static final String KEY_HEAD_HASH = "headSha256";
+    protected static final String KEY_FORMATS = "formats";
+
+    public static Path getSidecarPath(Path path) {
+        return path.resolveSibling(path.getFileName().toString() + SUFFIX);
+    }
+
+    protected static Properties computeKey(Path path) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(path)) {
+            head = in.readNBytes(HEAD_SIZE);
+        }
+
+        Properties result = new Properties();
+        result.setProperty(KEY_SIZE, Long.toString(Files.size(path)));
+        result.setProperty(KEY_MTIME, Long.toString(Files.getLastModifiedTime(path).toMillis()));
+        result.setProperty(KEY_HEAD_HASH, BaseEncoding.base16().lowerCase().encode(Hashing.sha256().hashBytes(head).asBytes()));
+        return result;
+    }
+
+    /**
+     * Load the cached probe result for the given file.
+     *
+     * @param path The log file
+     * @param availableFormats The currently registered formats; cached results that mention other formats are ignored
+     * @return The cached candidate formats ordered by weight or null if there is no valid cache entry
+     */
+    public static List<Entry<String, Number>> load(Path path, Set<String> availableFormats) {
+        List<Entry<String, Number>> result = null;
+        Path sidecar = getSidecarPath(path);
+        if (Files.isRegularFile(sidecar)) {
+            try {
+                Properties cached = new Properties();
+                try (InputStream in = Files.newInputStream(sidecar)) {
+                    cached.load(in);
+                }
+
+                Properties key = computeKey(path);
+                boolean isValid = key.stringPropertyNames().stream()
+                        .allMatch(k -> key.getProperty(k).equals(cached.getProperty(k)));
+
+                String formatsStr = cached.getProperty(KEY_FORMATS);
+                if (isValid && formatsStr != null) {
+                    List<Entry<String, Number>> tmp = parseFormats(formatsStr);
+                    if (tmp.stream().allMatch(e -> availableFormats.contains(e.getKey()))) {
+                        result = tmp;
+                    }
+                }
+            } catch (Exception e) {
+                logger.debug("Ignoring unreadable probe cache " + sidecar, e);
+            }
+        }
+        return result;
+    }
+
+    public static void store(Path path, List<Entry<String, Number>> formats) {
+        Path sidecar = getSidecarPath(path);
+        try {
+            Properties props = computeKey(path);
+            props.setProperty(KEY_FORMATS, formatFormats(formats));
+            try (OutputStream out = Files.newOutputStream(sidecar)) {
+                props.store(out, "LSQ log format probe result");
+            }
+        } catch (Exception e) {
+            logger.debug("Could not write probe cache " + sidecar, e);
+        }
+    }
+
+    protected static String formatFormats(List<Entry<String, Number>> formats) {
+        StringBuilder sb = new StringBuilder();
+        for (Entry<String, Number> e : formats) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(e.getKey()).append("=").append(e.getValue().doubleValue());
+        }
+        return sb.toString();
+    }
+
+    protected static List<Entry<String, Number>> parseFormats(String str) {
+        List<Entry<String, Number>> result = new ArrayList<>();
+        if (!str.isEmpty()) {
+            for (String item : str.split(",")) {
+                int i = item.lastIndexOf('=');
+                result.add(Maps.immutableEntry(item.substring(0, i), Double.parseDouble(item.substring(i + 1))));
+            }
+        }
+        return result;
+    }
+}
@@ -1,16 +1,22 @@
 package org.aksw.simba.lsq.core.rx.io.input;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.DoubleAccumulator;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
 import org.aksw.jenax.stmt.util.SparqlStmtUtils;
 import org.aksw.simba.lsq.core.ResourceParser;
+import org.aksw.simba.lsq.core.io.input.LsqInputStreams;
 import org.aksw.simba.lsq.core.io.input.registry.LsqInputFormatRegistry;
 import org.aksw.simba.lsq.vocab.LSQ;
 import com.google.common.collect.Maps;
@@ -22,10 +28,21 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.TreeMultimap;
 
+import io.reactivex.rxjava3.core.Flowable;
+
 public class LsqProbeUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(LsqProbeUtils.class);
 
+    /** The maximum number of bytes read from the input for probing */
+    public static final int SAMPLE_SIZE = 8 * 1024 * 1024;
+
+    /** The maximum number of records parsed per format */
+    public static final int MAX_PROBE_RECORDS = 1000;
+
+    /** The number of records a format is evaluated on before it may be abandoned */
+    public static final int MIN_PROBE_RECORDS = 100;
+
     public static List<Entry<String, Number>> probeLogFormat(String resource) {
         //FileSystemResourceLoader loader = new FileSystemResourceLoader();
         Map<String, ResourceParser> registry = LsqInputFormatRegistry.createDefaultLogFmtRegistry();
@@ -43,27 +60,92 @@ public class LsqProbeUtils {
         return result;
     }
 
+    /**
+     * Probe the format of the given resource.
+     * For local files the result is cached in a sidecar file (see {@link LsqProbeCache})
+     * such that subsequent runs on the same unmodified file skip probing.
+     */
     public static List<Entry<String, Number>> probeLogFormat(Map<String, ResourceParser> registry, String resource) {
 
-        Multimap<? extends Number, String> report = probeLogFormatCore(registry, resource);
+        Path localFile = LsqInputStreams.tryGetLocalFile(resource);
+        List<Entry<String, Number>> result = localFile == null
+                ? null
+                : LsqProbeCache.load(localFile, registry.keySet());
 
-        List<Entry<String, Number>> result = report.entries().stream()
-            .filter(e -> e.getKey().doubleValue() != 0)
-            .map(e -> Maps.immutableEntry(e.getValue(), (Number)e.getKey()))
+        if (result != null) {
+            logger.info("Using cached probe result for " + resource + ": " + result);
+        } else {
+            Multimap<? extends Number, String> report = probeLogFormatCore(registry, resource);
+
+            result = report.entries().stream()
+                .filter(e -> e.getKey().doubleValue() != 0)
+                .map(e -> Maps.immutableEntry(e.getValue(), (Number)e.getKey()))
 //			.limit(2)
-            //.map(Entry::getValue)
-            //.flatMap(Collection::stream)
-            .collect(Collectors.toList());
+                //.map(Entry::getValue)
+                //.flatMap(Collection::stream)
+                .collect(Collectors.toList());
+
+            // An empty or ambiguous result is not cached so that it does not get reused blindly
+            boolean isTied = result.size() > 1
+                    && result.get(0).getValue().doubleValue() == result.get(1).getValue().doubleValue();
+
+            if (localFile != null && !result.isEmpty() && !isTied) {
+                LsqProbeCache.store(localFile, result);
+            }
+        }
 
         return result;
     }
 
+    /**
+     * Read the sample against which all formats are probed.
+     * If the input is larger than the sample size then the sample is cut after the last newline.
+     */
+    protected static Sample readSample(String filename, int maxSize) throws Exception {
+        byte[] bytes;
+        boolean truncated;
+        try (InputStream in = SparqlStmtUtils.openInputStream(filename)) {
+            bytes = in.readNBytes(maxSize);
+            truncated = in.read() != -1;
+        }
+
+        if (truncated) {
+            int i = bytes.length - 1;
+            while (i >= 0 && bytes[i] != '\n') {
+                --i;
+            }
+            if (i >= 0) {
+                bytes = Arrays.copyOf(bytes, i + 1);
+            }
+        }
+
+        return new Sample(bytes, truncated);
+    }
+
+    protected static class Sample {
+        protected byte[] bytes;
+        protected boolean truncated;
+
+        public Sample(byte[] bytes, boolean truncated) {
+            super();
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
     /**
      * Return formats sorted by weight
      * Higher weight = better format; more properties could be parsed with that format
      *
+     * The input is read only once into a sample buffer against which all formats are evaluated in parallel.
+     * After {@value #MIN_PROBE_RECORDS} records a format is abandoned as soon as the best weight it could still achieve
+     * falls below the weight of the best format that has completed so far; abandoned formats receive a weight of 0.
+     * The achievable weight assumes that all remaining records parse with the largest number of properties
+     * seen so far for that format. Hence, as long as that number shows among a format's first records,
+     * the format with the highest weight is never abandoned and the best format does not depend on the order
+     * in which the formats complete.
+     *
      * @param registry
-     * @param loader
      * @param filename
      * @return
      */
@@ -73,36 +155,83 @@ public class LsqProbeUtils {
 
 //        registry = Collections.singletonMap("wikidata", registry.get("wikidata"));
 
+        Sample sample;
+        try {
+            sample = readSample(filename, SAMPLE_SIZE);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read sample from " + filename, e);
+        }
+
+        // The highest weight among the formats that completed so far
+        DoubleAccumulator bestWeight = new DoubleAccumulator(Math::max, 0);
+
+        Map<String, Double> weights = registry.entrySet().parallelStream()
+                .collect(Collectors.toMap(Entry::getKey,
+                        entry -> probeFormat(entry.getKey(), entry.getValue(), sample, bestWeight)));
+
         // succcessCountToFormat
         Multimap<Double, String> result = TreeMultimap.create(Ordering.natural().reverse(), Ordering.natural());
+        weights.forEach((formatName, weight) -> result.put(weight, formatName));
 
-        for(Entry<String, ResourceParser> entry : registry.entrySet()) {
-            String formatName = entry.getKey();
-
-//			if(formatName.equals("wikidata")) {
-//				System.out.println("here");
-//			}
-
-            ResourceParser fn = entry.getValue();
-
-            // Try-catch block because fn.parse may throw an exception before the flowable is created
-            // For example, a format may attempt ot read the input stream into a buffer
-            List<ResourceInDataset> baseItems;
-            try {
-                baseItems = fn.parse(() -> SparqlStmtUtils.openInputStream(filename))
-                        .take(1000)
-                        .toList()
-                        .onErrorReturn(x -> Collections.emptyList())
-                        .blockingGet();
-            } catch(Exception e) {
-                baseItems = Collections.emptyList();
-                logger.debug("Probing against format " + formatName + " raised exception", e);
-            }
+        return result;
+    }
+
+    /**
+     * The highest weight a format can still reach if it has seen recordCount records with a total of propertyCount
+     * properties among the successfully parsed ones, and if each of the remaining records parses with maxPropertyCount properties.
+     * The weight can only increase with further such records, so the bound is reached with the maximum number of records.
+     */
+    public static double achievableWeight(int recordCount, long propertyCount, int maxPropertyCount) {
+        int remaining = Math.max(0, MAX_PROBE_RECORDS - recordCount);
+        double result = (propertyCount + remaining * (double)maxPropertyCount) / (recordCount + remaining);
+        return result;
+    }
+
+    protected static double probeFormat(String formatName, ResourceParser fn, Sample sample, DoubleAccumulator bestWeight) {
+        Predicate<Resource> errorCondition = r -> r.hasProperty(LSQ.processingError);
+
+        int[] recordCount = {0};
+        long[] propertyCount = {0};
+        int[] maxPropertyCount = {0};
+        boolean[] abandoned = {false};
 
-            // int availableItems = baseItems.size();
-            double weight = analyzeInformationRatio(baseItems, r -> r.hasProperty(LSQ.processingError));
+        // Try-catch block because fn.parse may throw an exception before the flowable is created
+        // For example, a format may attempt ot read the input stream into a buffer
+        List<ResourceInDataset> baseItems;
+        try {
+            baseItems = fn.parse(() -> new ByteArrayInputStream(sample.bytes))
+                    // A format may fail on the record that was cut off at the end of the sample
+                    .onErrorResumeNext(e -> sample.truncated ? Flowable.empty() : Flowable.error(e))
+                    .take(MAX_PROBE_RECORDS)
+                    .takeWhile(r -> {
+                        ++recordCount[0];
+                        if (!errorCondition.test(r)) {
+                            int n = r.listProperties().toList().size();
+                            propertyCount[0] += n;
+                            maxPropertyCount[0] = Math.max(maxPropertyCount[0], n);
+                        }
+
+                        if (recordCount[0] >= MIN_PROBE_RECORDS
+                                && achievableWeight(recordCount[0], propertyCount[0], maxPropertyCount[0]) < bestWeight.get()) {
+                            abandoned[0] = true;
+                        }
+                        return !abandoned[0];
+                    })
+                    .toList()
+                    .onErrorReturn(x -> Collections.emptyList())
+                    .blockingGet();
+        } catch(Exception e) {
+            baseItems = Collections.emptyList();
+            logger.debug("Probing against format " + formatName + " raised exception", e);
+        }
 
-            result.put(weight, formatName);
+        double result;
+        if (abandoned[0]) {
+            logger.debug("Abandoned probing against format " + formatName + " after " + recordCount[0] + " records");
+            result = 0;
+        } else {
+            result = analyzeInformationRatio(baseItems, errorCondition);
+            bestWeight.accumulate(result);
         }
 
         return result;
@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -20,14 +22,20 @@ import org.aksw.jenax.arq.dataset.impl.RDFNodeInDatasetUtils;
 import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
 import org.aksw.jenax.sparql.query.rx.RDFDataMgrRx;
 import org.aksw.jenax.stmt.core.SparqlStmt;
+import org.aksw.jenax.stmt.core.SparqlStmtParser;
 import org.aksw.jenax.stmt.core.SparqlStmtParserImpl;
 import org.aksw.jenax.stmt.core.SparqlStmtQuery;
-import org.aksw.jenax.stmt.util.SparqlStmtIterator;
+import org.aksw.simba.lsq.core.LsqRdfizer;
 import org.aksw.simba.lsq.core.ResourceParser;
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.aksw.simba.lsq.core.io.input.LsqInputStreams;
+import org.aksw.simba.lsq.core.rx.LsqRxOps;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps;
 import org.aksw.simba.lsq.model.RemoteExecution;
 import org.aksw.simba.lsq.parser.Mapper;
+import org.aksw.simba.lsq.parser.WebLogRecord;
 import org.aksw.simba.lsq.vocab.LSQ;
-import org.apache.commons.io.IOUtils;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
@@ -40,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
 
+import io.reactivex.rxjava3.core.Emitter;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 
@@ -48,26 +57,37 @@ public class LsqRxIo {
     private static final Logger logger = LoggerFactory.getLogger(LsqRxIo.class);
 
 
+    /**
+     * Create a flow of resources from a stream of SPARQL queries.
+     * The input is split into individual queries incrementally such that only
+     * the query being processed needs to be held in memory.
+     */
     public static Flowable<ResourceInDataset> createSparqlStream(Callable<InputStream> inSupp) {
-        String str;
-        try {
-            try(InputStream in = inSupp.call()) {
-                // If the buffer gets completely filled, our input is too large
-                byte[] buffer = new byte[1024 * 1024 * 1024];
-                int n = IOUtils.read(in, buffer);
-                if(n == buffer.length) {
-                    throw new RuntimeException("Input is too large for sparql stream; reached limit of " + buffer.length + " bytes");
-                }
-                str = new String(buffer, 0, n, StandardCharsets.UTF_8);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        SparqlStmtParser parser = SparqlStmtParserImpl.create(Syntax.syntaxARQ, true);
 
         // Note: Non-query statements will cause an exception
-        Flowable<ResourceInDataset> result =
-                Flowable.fromIterable(() -> new SparqlStmtIterator(SparqlStmtParserImpl.create(Syntax.syntaxARQ, true), str))
+        Flowable<ResourceInDataset> result = Flowable.generate(
+                () -> {
+                    InputStream tmp = inSupp.call();
+                    Objects.requireNonNull(tmp, "An InputStream supplier supplied null");
+                    return new SparqlQuerySplitter(new InputStreamReader(tmp, StandardCharsets.UTF_8));
+                },
+                (SparqlQuerySplitter splitter, Emitter<String> emitter) -> {
+                    if(splitter.hasNext()) {
+                        emitter.onNext(splitter.next());
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                SparqlQuerySplitter::close)
 //    			.map(SparqlStmt::getOriginalString)
+                .map(parser::apply)
+                .map(stmt -> {
+                    if(!stmt.isParsed()) {
+                        throw new RuntimeException("Failed to parse SPARQL statement: " + stmt.getOriginalString(), stmt.getParseException());
+                    }
+                    return stmt;
+                })
                 .map(SparqlStmt::getAsQueryStmt)
                 .map(SparqlStmtQuery::getQuery)
                 .map(Object::toString)
@@ -85,10 +105,58 @@ public class LsqRxIo {
             throw new RuntimeException("No mapper found for '" + fmtName + "'");
         }
 
+        return createResourceStreamFromMapper(in, mapper);
+    }
+
+    public static Flowable<ResourceInDataset> createResourceStreamFromMapper(Callable<InputStream> in, Mapper mapper) {
+        Flowable<ResourceInDataset> result = createWebLogRecordStream(in, mapper)
+                .map(record -> {
+                    ResourceInDataset r = ResourceInDatasetImpl.createAnonInDefaultGraph();//ModelFactory.createDefaultModel().createResource();
+                    record.copyInto(r);
+                    return r;
+                });
+
+        return result;
+    }
+
+    /**
+     * Create a flow of plain {@link WebLogRecord}s from the lines of the given input.
+     * Lines that fail to parse yield records with a processing error.
+     */
+    public static Flowable<WebLogRecord> createWebLogRecordStream(Callable<InputStream> in, Mapper mapper) {
+        return createWebLogRecordStream(createLineStream(in), mapper);
+    }
+
+    public static Flowable<WebLogRecord> createWebLogRecordStream(Flowable<String> lines, Mapper mapper) {
+        Flowable<WebLogRecord> result = lines
+                .map(line -> {
+                    WebLogRecord r = new WebLogRecord();
+                    r.setLogRecord(line);
+
+                    boolean parsed;
+                    try {
+                        parsed = mapper.parse(r, line) != 0;
+                        // Mappers that report a ParseFailure on the record need no further message
+                        if(!parsed && !r.hasProcessingError()) {
+                            r.setProcessingError("Failed to parse log line (no detailed information available)");
+                        }
+                    } catch(Exception e) {
+                        parsed = false;
+                        r.setProcessingError("Failed to parse log line: " + e);
+                        // logger.warn("Parser error", e);
+                    }
+
+                    return r;
+                });
+
+        return result;
+    }
+
+    public static Flowable<String> createLineStream(Callable<InputStream> in) {
         //BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
         //Stream<String> stream = reader.lines();
 
-        Flowable<String> flow = Flowable.generate(
+        Flowable<String> result = Flowable.generate(
                 () -> {
                     InputStream tmp = in.call();
                     Objects.requireNonNull(tmp, "An InputStream supplier supplied null");
@@ -104,27 +172,6 @@ public class LsqRxIo {
                 },
                 BufferedReader::close);
 
-        Flowable<ResourceInDataset> result = flow
-                .map(line -> {
-                    ResourceInDataset r = ResourceInDatasetImpl.createAnonInDefaultGraph();//ModelFactory.createDefaultModel().createResource();
-                    r.addLiteral(LSQ.logRecord, line);
-
-                    boolean parsed;
-                    try {
-                        parsed = mapper.parse(r, line) != 0;
-                        if(!parsed) {
-                            r.addLiteral(LSQ.processingError, "Failed to parse log line (no detailed information available)");
-                        }
-                    } catch(Exception e) {
-                        parsed = false;
-                        r.addLiteral(LSQ.processingError, "Failed to parse log line: " + e);
-                        // logger.warn("Parser error", e);
-                    }
-
-                    return r;
-                })
-                ;
-
         return result;
     }
 
@@ -144,6 +191,39 @@ public class LsqRxIo {
             Map<String, ResourceParser> logFmtRegistry,
             Function<Resource, Resource> rdfizer
             ) throws IOException {
+        return createReader(logSource, logFormat, logFmtRegistry, rdfizer, 1);
+    }
+
+    /**
+     * Create a reader for the given log source.
+     * Input in the {@link LsqBinaryRdf} format is detected by its magic bytes.
+     * If the parallelism is greater than 1 and the source is a local uncompressed file
+     * of a line based format then the file is processed by a {@link LsqParallelLogReader}.
+     *
+     * @param parallelism The number of threads for parsing and rdfization; values &lt;= 0 select the number of available processors
+     */
+    public static Flowable<Resource> createReader(
+            String logSource,
+            String logFormat,
+            Map<String, ResourceParser> logFmtRegistry,
+            Function<Resource, Resource> rdfizer,
+            int parallelism
+            ) throws IOException {
+        return createReader(logSource, logFormat, logFmtRegistry, rdfizer, null, parallelism);
+    }
+
+    /**
+     * @param rdfRecordProcessor An optional function that is applied to the records of RDF input
+     *        (which do not pass through the rdfizer); null for none
+     */
+    public static Flowable<Resource> createReader(
+            String logSource,
+            String logFormat,
+            Map<String, ResourceParser> logFmtRegistry,
+            Function<Resource, Resource> rdfizer,
+            Function<Resource, Resource> rdfRecordProcessor,
+            int parallelism
+            ) throws IOException {
 
 //		String filename;
 //		if(logSource == null) {
@@ -157,16 +237,33 @@ public class LsqRxIo {
                 ? () -> StdIo.openStdInWithCloseShield()
                 : () -> RDFDataMgr.open(logSource); // Alteratively StreamMgr.open()
 
-        Lang lang = logFormat == null
+        Flowable<Resource> result = null;
+
+        // Binary input is recognized by its magic bytes regardless of the file name;
+        // stdin cannot be probed without consuming it so there the format must be given explicitly
+        boolean isBinary = LsqBinaryRdf.isFormatName(logFormat)
+                || (logSource != null && Strings.isNullOrEmpty(logFormat) && LsqBinaryRdf.probe(inSupp));
+
+        if(isBinary) {
+            logger.info("LSQ binary RDF detected - assuming RDFized log as input");
+            // Frames are read sequentially; decoding them is done by the workers
+            result = LsqBinaryRdf.createFlowableRecords(inSupp)
+                    .compose(LsqRxOps.<byte[], Dataset>mapParallelOrdered(LsqBinaryRdf::decode,
+                            LsqParallelLogReader.effectiveParallelism(parallelism)))
+                    // Records of frequent queries may have been written in several chunks
+                    .compose(LsqMergeOps.coalesceConsecutiveGraphs())
+                    .flatMap(ds -> Flowable.fromIterable(
+                            RDFNodeInDatasetUtils.listResourcesWithProperty(ds, LSQ.text).toList()));
+        }
+
+        Lang lang = isBinary || logFormat == null
                 ? null
                 : RDFLanguages.nameToLang(logFormat);
 
-        if(lang == null) {
+        if(lang == null && !isBinary) {
             lang = RDFDataMgr.determineLang(logSource, null, null);
         }
 
-        Flowable<Resource> result = null;
-
 
         // Check if we are dealing with RDF
         if(lang != null) {
@@ -176,6 +273,7 @@ public class LsqRxIo {
                 // TODO Stream as datasets first, then select any resource with LSQ.text
                 logger.info("Quad-based format detected - assuming RDFized log as input");
                 result = RDFDataMgrRx.createFlowableDatasets(inSupp, lang, null)
+                        .compose(LsqMergeOps.coalesceConsecutiveGraphs())
                         .flatMap(ds -> Flowable.fromIterable(
                                 RDFNodeInDatasetUtils.listResourcesWithProperty(ds, LSQ.text).toList()));
 
@@ -195,6 +293,10 @@ public class LsqRxIo {
 
         }
 
+        if(result != null && rdfRecordProcessor != null) {
+            result = applyRdfizer(result, rdfRecordProcessor, LsqParallelLogReader.effectiveParallelism(parallelism));
+        }
+
         String effectiveLogFormat = null;
 
         // If the result is still null, probe for log formats
@@ -224,44 +326,103 @@ public class LsqRxIo {
                 throw new RuntimeException("No log format parser found for '" + logFormat + "'");
             }
 
-            result = webLogParser.parse(() -> RDFDataMgr.open(logSource))
-                    .map(r -> r); // Turn ResourceInDataset to plain Resource
+            int effectiveParallelism = LsqParallelLogReader.effectiveParallelism(parallelism);
+            Path localFile = LsqParallelLogReader.tryGetLocalUncompressedFile(logSource);
 
+            if(webLogParser instanceof WebLogResourceParser && effectiveParallelism > 1 && localFile != null) {
+                result = LsqParallelLogReader.createReader(localFile, (WebLogResourceParser)webLogParser, rdfizer, effectiveParallelism);
+            } else {
+                Flowable<Resource> logEntries;
+                if(webLogParser instanceof WebLogResourceParser) {
+                    WebLogResourceParser p = (WebLogResourceParser)webLogParser;
+                    // Local files are read via memory mapping
+                    Flowable<WebLogRecord> records = localFile != null
+                            ? p.parseLines(MappedLineReader.createLineStream(localFile, 0, Files.size(localFile)))
+                            : p.parseRecords(() -> LsqInputStreams.open(logSource, effectiveParallelism));
+                    logEntries = createLogRecordResources(records, 1);
+                } else {
+                    // The webLogParser yields resources (blank nodes) for the log entry
+                    // First add a sequence id attribute
+                    // Then invert the entry:
+                    logEntries = webLogParser.parse(() -> LsqInputStreams.open(logSource, effectiveParallelism))
+                        .map(r -> (Resource)r) // Turn ResourceInDataset to plain Resource
+                        .zipWith(LongStream.iterate(1, x -> x + 1)::iterator, Maps::immutableEntry)
+                        // Add the zipped index to the resource
+                        .map(e -> {
+                            Resource r = e.getKey();
+                            Long idx = e.getValue();
+
+                            RemoteExecution re = r.as(RemoteExecution.class);
+                            re.setSequenceId(idx);
+
+                            return r;
+                        });
+                }
 
-            // The webLogParser yields resources (blank nodes) for the log entry
-            // First add a sequence id attribute
-            // Then invert the entry:
+                // Only the rdfization runs in parallel; reading and parsing the source remains sequential
+                result = applyRdfizer(logEntries, rdfizer, effectiveParallelism);
+            }
+        }
 
-            result = result
-                .zipWith(LongStream.iterate(1, x -> x + 1)::iterator, Maps::immutableEntry)
-                // Add the zipped index to the resource
-                .map(e -> {
-                    Resource r = e.getKey();
-                    Long idx = e.getValue();
 
-                    RemoteExecution re = r.as(RemoteExecution.class);
-                    re.setSequenceId(idx);
+        return result;
+    }
 
-                    return r;
-                })
-                .flatMapMaybe(record -> {
-                    Maybe<Resource> r;
-                    try {
-                        r = Maybe.fromOptional(Optional.ofNullable(rdfizer.apply(record)));
-                        // r = Maybe.fromOptional(LsqRdfizer.rdfizeLogRecord(sparqlStmtParser, baseIri, hostHashSalt, serviceUrl, hashFn, record));
-                    } catch (Exception e) {
-                        logger.warn("Internal error; trying to continue", e);
-                        r = Maybe.empty();
-                    }
-                    return r;
-                });
-        }
 
 
+    /**
+     * Assign sequence ids to log records and turn those that carry a query into resources.
+     * Sequence ids are allocated for all records in order to keep them stable;
+     * however, only records that carry a query are turned into RDF.
+     *
+     * @param records The log records
+     * @param firstSequenceId The sequence id of the first record
+     */
+    public static Flowable<Resource> createLogRecordResources(Flowable<WebLogRecord> records, long firstSequenceId) {
+        Flowable<Resource> result = records
+            .zipWith(LongStream.iterate(firstSequenceId, x -> x + 1)::iterator, Maps::immutableEntry)
+            .filter(e -> LsqRdfizer.isRdfizable(e.getKey()))
+            .map(e -> LsqRdfizer.createLogRecordResource(e.getKey(), e.getValue()));
         return result;
     }
 
+    public static Flowable<Resource> applyRdfizer(Flowable<Resource> logEntries, Function<Resource, Resource> rdfizer) {
+        Flowable<Resource> result = logEntries
+            .flatMapMaybe(record -> {
+                Maybe<Resource> r;
+                try {
+                    r = Maybe.fromOptional(Optional.ofNullable(rdfizer.apply(record)));
+                    // r = Maybe.fromOptional(LsqRdfizer.rdfizeLogRecord(sparqlStmtParser, baseIri, hostHashSalt, serviceUrl, hashFn, record));
+                } catch (Exception e) {
+                    logger.warn("Internal error; trying to continue", e);
+                    r = Maybe.empty();
+                }
+                return r;
+            });
+        return result;
+    }
 
+    /**
+     * Apply the rdfizer to the log entries using the given number of worker threads.
+     * The order of the log entries is retained.
+     *
+     * @param rdfizer A thread-safe rdfizer
+     */
+    public static Flowable<Resource> applyRdfizer(Flowable<Resource> logEntries, Function<Resource, Resource> rdfizer, int parallelism) {
+        Flowable<Resource> result = parallelism <= 1
+            ? applyRdfizer(logEntries, rdfizer)
+            : logEntries.compose(LsqRxOps.mapParallelOrdered(record -> {
+                Resource r;
+                try {
+                    r = rdfizer.apply(record);
+                } catch (Exception e) {
+                    logger.warn("Internal error; trying to continue", e);
+                    r = null;
+                }
+                return r;
+            }, parallelism));
+        return result;
+    }
 
     public static Flowable<ResourceInDataset> createResourceStreamFromRdf(Callable<InputStream> in, Lang lang, String baseIRI) {
 
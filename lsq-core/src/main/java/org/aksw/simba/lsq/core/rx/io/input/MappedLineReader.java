@@ -0,0 +1,130 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+/**
+ * Reads the lines of a byte range of a local file via memory mapping.
+ *
+ * Lines are scanned directly in the mapped memory and each line is decoded
+ * from UTF-8 exactly once. Because a single mapping is limited to 2 GB,
+ * the range is mapped as a sequence of windows; each window starts at the beginning of a line.
+ *
+ * Lines are terminated in the same way as with {@link java.io.BufferedReader#readLine()}:
+ * by '\n', '\r' or "\r\n".
+ *
+ * @author raven
+ *
+ */
+public class MappedLineReader
+    implements Closeable
+{
+    public static final int DEFAULT_WINDOW_SIZE = 128 * 1024 * 1024;
+
+    protected FileChannel channel;
+    protected long end;
+    protected int windowSize;
+
+    protected long windowStart;
+    protected MappedByteBuffer window;
+    protected int pos;
+
+    protected byte[] lineBuffer = new byte[8 * 1024];
+
+    public MappedLineReader(Path path, long start, long end) throws IOException {
+        this(path, start, end, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedLineReader(Path path, long start, long end, int windowSize) throws IOException {
+        super();
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.end = end;
+        this.windowSize = windowSize;
+        map(start, windowSize);
+    }
+
+    public static Flowable<String> createLineStream(Path path, long start, long end) {
+        Flowable<String> result = Flowable.generate(
+                () -> new MappedLineReader(path, start, end),
+                (reader, emitter) -> {
+                    String line = reader.readLine();
+                    if(line != null) {
+                        emitter.onNext(line);
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                MappedLineReader::close);
+        return result;
+    }
+
+    protected void map(long start, int size) throws IOException {
+        long length = Math.min(size, end - start);
+        windowStart = start;
+        window = channel.map(MapMode.READ_ONLY, start, length);
+        pos = 0;
+    }
+
+    /** Read the next line or return null if the end of the range was reached */
+    public String readLine() throws IOException {
+        String result = null;
+        int size = windowSize;
+        while (windowStart + pos < end) {
+            int limit = window.limit();
+            int i = pos;
+            byte b = 0;
+            while (i < limit && (b = window.get(i)) != '\n' && b != '\r') {
+                ++i;
+            }
+
+            boolean isWindowExhausted = i == limit || (b == '\r' && i + 1 == limit);
+            boolean isRangeExhausted = windowStart + limit >= end;
+            if (isWindowExhausted && !isRangeExhausted) {
+                // The line (or its "\r\n" terminator) spans beyond the window; remap starting at the line
+                if (pos == 0) {
+                    if (size >= Integer.MAX_VALUE / 2) {
+                        throw new IOException("Line at offset " + windowStart + " exceeds the maximum supported length");
+                    }
+                    size *= 2;
+                }
+                map(windowStart + pos, size);
+                continue;
+            }
+
+            result = decode(pos, i);
+
+            int next = i < limit ? i + 1 : i;
+            if (b == '\r' && next < limit && window.get(next) == '\n') {
+                ++next;
+            }
+            pos = next;
+            break;
+        }
+
+        return result;
+    }
+
+    protected String decode(int start, int end) {
+        int len = end - start;
+        if (lineBuffer.length < len) {
+            lineBuffer = new byte[Math.max(len, lineBuffer.length * 2)];
+        }
+        window.get(start, lineBuffer, 0, len);
+        String result = new String(lineBuffer, 0, len, StandardCharsets.UTF_8);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,275 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Splits a stream of SPARQL queries into the strings of the individual queries.
+ *
+ * The input is tokenized incrementally with awareness of nesting (braces, parentheses, brackets),
+ * string literals (including long strings), IRIs, variables and comments.
+ * A new query starts when a query form keyword (SELECT, CONSTRUCT, DESCRIBE, ASK) or
+ * a prologue keyword (PREFIX, BASE) appears at nesting depth 0 after the current query's
+ * query form has been seen. A ';' at depth 0 also separates statements.
+ *
+ * Only the current statement is held in memory; statements exceeding
+ * the configured maximum length cause an exception.
+ *
+ * No validation is performed; the returned strings still need to be parsed.
+ *
+ * @author raven
+ *
+ */
+public class SparqlQuerySplitter
+    extends AbstractIterator<String>
+    implements Closeable
+{
+    public static final int DEFAULT_MAX_STATEMENT_LENGTH = 64 * 1024 * 1024;
+
+    /** How far to look ahead to decide whether a '<' starts an IRI or is an operator */
+    protected static final int MAX_IRI_LOOKAHEAD = 16 * 1024;
+
+    protected static final Set<String> queryFormKeywords = new TreeSet<>(Arrays.asList(
+            "SELECT", "CONSTRUCT", "DESCRIBE", "ASK"));
+
+    protected static final Set<String> prologueKeywords = new TreeSet<>(Arrays.asList(
+            "PREFIX", "BASE"));
+
+    protected Reader reader;
+    protected int maxStatementLength;
+
+    protected char[] buf = new char[64 * 1024];
+    protected int pos = 0;
+    protected int limit = 0;
+    protected boolean eof = false;
+
+    protected StringBuilder stmt = new StringBuilder();
+
+    public SparqlQuerySplitter(Reader reader) {
+        this(reader, DEFAULT_MAX_STATEMENT_LENGTH);
+    }
+
+    public SparqlQuerySplitter(Reader reader, int maxStatementLength) {
+        super();
+        this.reader = reader;
+        this.maxStatementLength = maxStatementLength;
+    }
+
+    @Override
+    protected String computeNext() {
+        String result = null;
+        try {
+            while (result == null) {
+                boolean hasContent = readStatement();
+                if (hasContent) {
+                    result = stmt.toString();
+                } else if (peek(0) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return result != null ? result : endOfData();
+    }
+
+    /**
+     * Read the next statement into the buffer.
+     *
+     * @return true if the statement contains anything other than whitespace and comments
+     */
+    protected boolean readStatement() throws IOException {
+        stmt.setLength(0);
+
+        int depth = 0;
+        boolean hasContent = false;
+        boolean seenQueryForm = false;
+
+        int c;
+        while ((c = peek(0)) >= 0) {
+            char ch = (char)c;
+
+            if (Character.isWhitespace(ch)) {
+                consume(1);
+            } else if (ch == '#') {
+                consumeUntilEol();
+            } else if (ch == '"' || ch == '\'') {
+                consumeString(ch);
+                hasContent = true;
+            } else if (ch == '<') {
+                int n = iriLength();
+                consume(n > 0 ? n : 1);
+                hasContent = true;
+            } else if (ch == '?' || ch == '$' || ch == '@') {
+                // Variables and language tags are never keywords
+                consume(1);
+                consumeWord();
+                hasContent = true;
+            } else if (ch == ';' && depth == 0) {
+                pos += 1;
+                if (hasContent) {
+                    break;
+                }
+            } else if (isWordStart(ch)) {
+                int n = wordLength();
+                if (depth == 0) {
+                    String word = new String(buf, pos, n).toUpperCase(Locale.ROOT);
+                    boolean isQueryForm = queryFormKeywords.contains(word);
+                    if (isQueryForm || prologueKeywords.contains(word)) {
+                        if (seenQueryForm) {
+                            // The keyword starts the next statement
+                            break;
+                        }
+                        seenQueryForm = isQueryForm;
+                    }
+                }
+                consume(n);
+                hasContent = true;
+            } else {
+                if (ch == '{' || ch == '(' || ch == '[') {
+                    ++depth;
+                } else if ((ch == '}' || ch == ')' || ch == ']') && depth > 0) {
+                    --depth;
+                }
+                consume(1);
+                hasContent = true;
+            }
+        }
+
+        return hasContent;
+    }
+
+    protected static boolean isWordStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+
+    protected static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-';
+    }
+
+    protected int wordLength() throws IOException {
+        int n = 0;
+        int c;
+        while ((c = peek(n)) >= 0 && isWordPart((char)c)) {
+            ++n;
+        }
+        return n;
+    }
+
+    protected void consumeWord() throws IOException {
+        consume(wordLength());
+    }
+
+    protected void consumeUntilEol() throws IOException {
+        int c;
+        while ((c = peek(0)) >= 0 && c != '\n' && c != '\r') {
+            consume(1);
+        }
+    }
+
+    protected void consumeString(char quote) throws IOException {
+        boolean isLong = peek(1) == quote && peek(2) == quote;
+        if (isLong) {
+            consume(3);
+            int c;
+            while ((c = peek(0)) >= 0) {
+                if (c == '\\') {
+                    consume(peek(1) >= 0 ? 2 : 1);
+                } else if (c == quote && peek(1) == quote && peek(2) == quote) {
+                    consume(3);
+                    break;
+                } else {
+                    consume(1);
+                }
+            }
+        } else {
+            consume(1);
+            int c;
+            while ((c = peek(0)) >= 0) {
+                if (c == '\\') {
+                    consume(peek(1) >= 0 ? 2 : 1);
+                } else if (c == quote) {
+                    consume(1);
+                    break;
+                } else if (c == '\n' || c == '\r') {
+                    // Unterminated string; do not swallow the rest of the input
+                    break;
+                } else {
+                    consume(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * If the '<' at the current position starts an IRI then return the length of the IRI including the
+     * angle brackets. Otherwise return 0 - in that case the '<' is an operator.
+     */
+    protected int iriLength() throws IOException {
+        int result = 0;
+        for (int i = 1; i < MAX_IRI_LOOKAHEAD; ++i) {
+            int c = peek(i);
+            if (c < 0) {
+                break;
+            } else if (c == '>') {
+                result = i + 1;
+                break;
+            } else if (c <= 0x20 || c == '<' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Append the next n chars to the current statement */
+    protected void consume(int n) throws IOException {
+        peek(n - 1);
+        if (stmt.length() + n > maxStatementLength) {
+            throw new RuntimeException("SPARQL statement exceeds the maximum length of " + maxStatementLength + " characters");
+        }
+        stmt.append(buf, pos, n);
+        pos += n;
+    }
+
+    /** Return the char at the given offset relative to the current position or -1 if there is none */
+    protected int peek(int offset) throws IOException {
+        while (pos + offset >= limit && !eof) {
+            fill();
+        }
+        int result = pos + offset < limit ? buf[pos + offset] : -1;
+        return result;
+    }
+
+    protected void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+
+        int n = reader.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,48 @@
+package org.aksw.simba.lsq.core.rx.io.input;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.simba.lsq.core.ResourceParser;
+import org.aksw.simba.lsq.parser.Mapper;
+import org.aksw.simba.lsq.parser.WebLogRecord;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+/**
+ * A {@link ResourceParser} for line based web server log formats.
+ * Besides parsing into resources, this parser can yield the log entries as plain
+ * {@link WebLogRecord}s such that the cost of creating RDF can be avoided for
+ * log entries that are not relevant.
+ *
+ * @author raven
+ *
+ */
+public class WebLogResourceParser
+    implements ResourceParser
+{
+    protected Mapper mapper;
+
+    public WebLogResourceParser(Mapper mapper) {
+        super();
+        this.mapper = mapper;
+    }
+
+    public Mapper getMapper() {
+        return mapper;
+    }
+
+    @Override
+    public Flowable<ResourceInDataset> parse(Callable<InputStream> inSupp) {
+        return LsqRxIo.createResourceStreamFromMapper(inSupp, mapper);
+    }
+
+    public Flowable<WebLogRecord> parseRecords(Callable<InputStream> inSupp) {
+        return LsqRxIo.createWebLogRecordStream(inSupp, mapper);
+    }
+
+    public Flowable<WebLogRecord> parseLines(Flowable<String> lines) {
+        return LsqRxIo.createWebLogRecordStream(lines, mapper);
+    }
+}
@@ -0,0 +1,419 @@
+package org.aksw.simba.lsq.core.rx.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A stable external merge sort of items by a string key.
+ *
+ * Items are encoded into a compact binary form as they are added and collected in an in-memory run.
+ * Whenever a run exceeds its byte budget it is sorted and spilled to a file in the temporary directory
+ * on a background thread while the next run is being filled. Up to parallelism runs
+ * are sorted and written concurrently.
+ * {@link #finish()} yields the items in key order by means of a k-way merge of all runs.
+ * If there are more runs than the maximum fan-in then groups of runs are first merged into
+ * larger runs in intermediate passes such that the number of open files stays bounded.
+ * Items with equal keys retain their insertion order.
+ *
+ * If all items fit into a single run then nothing is written to disk.
+ *
+ * @author raven
+ *
+ * @param <T> The item type
+ */
+public class ExternalSorter<T>
+    implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ExternalSorter.class);
+
+    /** Estimated per-item overhead of an in-memory run entry in bytes */
+    protected static final int ENTRY_OVERHEAD = 64;
+
+    /** The default maximum number of runs that are merged at once */
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+
+    protected static class Entry {
+        protected String key;
+        protected long seq;
+        protected byte[] payload;
+
+        public Entry(String key, long seq, byte[] payload) {
+            super();
+            this.key = key;
+            this.seq = seq;
+            this.payload = payload;
+        }
+    }
+
+    protected static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .<Entry, String>comparing(e -> e.key)
+            .thenComparingLong(e -> e.seq);
+
+    protected Function<? super T, String> keyFn;
+    protected Function<? super T, byte[]> encoder;
+    protected Function<byte[], ? extends T> decoder;
+
+    protected Path tempDir;
+    protected long runBudget;
+    protected int parallelism;
+    protected int maxFanIn;
+
+    protected ExecutorService executorService;
+
+    protected List<Entry> currentRun = new ArrayList<>();
+    protected long currentRunBytes = 0;
+    protected long nextSeq = 0;
+
+    /** Runs that are being sorted and written */
+    protected Deque<Future<Path>> pendingRuns = new ArrayDeque<>();
+
+    /** All run files created so far - including those still being written */
+    protected List<Path> runFiles = new ArrayList<>();
+
+    protected List<DataInputStream> openReaders = new ArrayList<>();
+
+    /**
+     * @param keyFn The sort key of an item
+     * @param encoder Serializes an item
+     * @param decoder Deserializes an item
+     * @param tempDir The directory for spill files
+     * @param bufferSize The total number of bytes for in-memory runs
+     * @param parallelism The maximum number of runs that are sorted and written concurrently
+     */
+    public ExternalSorter(
+            Function<? super T, String> keyFn,
+            Function<? super T, byte[]> encoder,
+            Function<byte[], ? extends T> decoder,
+            Path tempDir,
+            long bufferSize,
+            int parallelism) {
+        this(keyFn, encoder, decoder, tempDir, bufferSize, parallelism, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * @param maxFanIn The maximum number of runs that are merged at once; at least 2
+     */
+    public ExternalSorter(
+            Function<? super T, String> keyFn,
+            Function<? super T, byte[]> encoder,
+            Function<byte[], ? extends T> decoder,
+            Path tempDir,
+            long bufferSize,
+            int parallelism,
+            int maxFanIn) {
+        super();
+        this.keyFn = keyFn;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.tempDir = tempDir;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxFanIn = Math.max(2, maxFanIn);
+        // The run being filled plus the runs being written share the buffer
+        this.runBudget = Math.max(1, bufferSize / (this.parallelism + 1));
+        this.executorService = Executors.newFixedThreadPool(this.parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("lsq-sort-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public void add(T item) {
+        String key = keyFn.apply(item);
+        byte[] payload = encoder.apply(item);
+
+        currentRun.add(new Entry(key, nextSeq++, payload));
+        currentRunBytes += payload.length + 2l * key.length() + ENTRY_OVERHEAD;
+
+        if (currentRunBytes >= runBudget) {
+            spill();
+        }
+    }
+
+    protected void spill() {
+        List<Entry> run = currentRun;
+        currentRun = new ArrayList<>();
+        currentRunBytes = 0;
+
+        // Bound the number of runs held in memory
+        while (pendingRuns.size() >= parallelism) {
+            awaitRun(pendingRuns.removeFirst());
+        }
+
+        Path file;
+        try {
+            file = Files.createTempFile(tempDir, "lsq-sort-", ".run");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        runFiles.add(file);
+
+        pendingRuns.addLast(executorService.submit(() -> {
+            run.sort(ENTRY_ORDER);
+            writeRun(file, run);
+            return file;
+        }));
+    }
+
+    protected static Path awaitRun(Future<Path> future) {
+        Path result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    protected static void writeRun(Path file, List<Entry> run) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            for (Entry e : run) {
+                writeEntry(out, e);
+            }
+            out.writeBoolean(false);
+        }
+    }
+
+    /** Write an entry; a sequence of entries is terminated by writing false */
+    protected static void writeEntry(DataOutputStream out, Entry e) throws IOException {
+        byte[] keyBytes = e.key.getBytes(StandardCharsets.UTF_8);
+        out.writeBoolean(true);
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(e.seq);
+        out.writeInt(e.payload.length);
+        out.write(e.payload);
+    }
+
+    /** Read the next entry; null if the end was reached */
+    protected static Entry readEntry(DataInputStream in) throws IOException {
+        Entry result = null;
+        if (in.readBoolean()) {
+            byte[] keyBytes = new byte[in.readInt()];
+            in.readFully(keyBytes);
+            long seq = in.readLong();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            result = new Entry(new String(keyBytes, StandardCharsets.UTF_8), seq, payload);
+        }
+        return result;
+    }
+
+    /** A cursor over the entries of a single run */
+    protected static class RunCursor {
+        protected Iterator<Entry> it;
+        protected Entry current;
+
+        public RunCursor(Iterator<Entry> it) {
+            super();
+            this.it = it;
+        }
+
+        public boolean advance() {
+            current = it.hasNext() ? it.next() : null;
+            return current != null;
+        }
+    }
+
+    /** Open a run file; the stream is added to the given list in order to be closed later */
+    protected static Iterator<Entry> openRun(Path file, List<DataInputStream> readers) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        readers.add(in);
+
+        return new Iterator<Entry>() {
+            protected Entry next = null;
+            protected boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        next = readEntry(in);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    done = next == null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Complete the input and return an iterator over all items in key order.
+     * The iterator is backed by the run files which are removed by {@link #close()}.
+     */
+    public Iterator<T> finish() throws IOException {
+        Iterator<Entry> entries;
+        if (runFiles.isEmpty()) {
+            currentRun.sort(ENTRY_ORDER);
+            entries = currentRun.iterator();
+        } else {
+            if (!currentRun.isEmpty()) {
+                spill();
+            }
+
+            while (!pendingRuns.isEmpty()) {
+                awaitRun(pendingRuns.removeFirst());
+            }
+
+            logger.info("Merging " + runFiles.size() + " sorted runs of " + nextSeq + " items");
+            reduceRuns();
+
+            List<Iterator<Entry>> runs = new ArrayList<>(runFiles.size());
+            for (Path file : runFiles) {
+                runs.add(openRun(file, openReaders));
+            }
+            entries = merge(runs);
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return decoder.apply(entries.next().payload);
+            }
+        };
+    }
+
+    /**
+     * Merge groups of at most maxFanIn runs into new runs until all remaining runs can be merged at once.
+     * Merged runs are deleted as soon as they have been consumed.
+     */
+    protected void reduceRuns() throws IOException {
+        while (runFiles.size() > maxFanIn) {
+            List<Path> inputs = new ArrayList<>(runFiles);
+            logger.info("Intermediate merge pass over " + inputs.size() + " runs with a fan-in of " + maxFanIn);
+            for (int i = 0; i < inputs.size(); i += maxFanIn) {
+                List<Path> group = inputs.subList(i, Math.min(i + maxFanIn, inputs.size()));
+                if (group.size() > 1) {
+                    Path file = Files.createTempFile(tempDir, "lsq-sort-", ".run");
+                    runFiles.add(file);
+                    mergeRuns(group, file);
+                    for (Path input : group) {
+                        Files.deleteIfExists(input);
+                        runFiles.remove(input);
+                    }
+                }
+            }
+        }
+    }
+
+    protected static void mergeRuns(List<Path> inputs, Path output) throws IOException {
+        List<DataInputStream> readers = new ArrayList<>(inputs.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            List<Iterator<Entry>> runs = new ArrayList<>(inputs.size());
+            for (Path input : inputs) {
+                runs.add(openRun(input, readers));
+            }
+            Iterator<Entry> it = merge(runs);
+            while (it.hasNext()) {
+                writeEntry(out, it.next());
+            }
+            out.writeBoolean(false);
+        } finally {
+            closeAll(readers);
+        }
+    }
+
+    /** A k-way merge of sorted runs; entries of equal key are ordered by their sequence number */
+    protected static Iterator<Entry> merge(List<Iterator<Entry>> runs) {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> ENTRY_ORDER.compare(a.current, b.current));
+        for (Iterator<Entry> run : runs) {
+            RunCursor cursor = new RunCursor(run);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                RunCursor cursor = queue.poll();
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+
+                Entry result = cursor.current;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+                return result;
+            }
+        };
+    }
+
+    protected static void closeAll(List<DataInputStream> readers) {
+        for (DataInputStream in : readers) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close run file", e);
+            }
+        }
+        readers.clear();
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+        currentRun = new ArrayList<>();
+
+        closeAll(openReaders);
+
+        for (Path file : runFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete run file " + file, e);
+            }
+        }
+        runFiles.clear();
+    }
+}
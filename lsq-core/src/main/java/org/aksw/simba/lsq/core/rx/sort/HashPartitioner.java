@@ -0,0 +1,273 @@
+package org.aksw.simba.lsq.core.rx.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.aksw.simba.lsq.core.rx.sort.ExternalSorter.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+/**
+ * Groups items by a string key without establishing a total order.
+ *
+ * In the first pass items are encoded and appended to one of a fixed number of bucket files
+ * based on the hash of their key. When writing is finished, buckets that exceed a given size are split
+ * into smaller ones with a different hash function, so the final number of buckets follows from the amount
+ * of data. In the second pass each bucket is loaded on its own in encoded form and its items
+ * are streamed grouped by key; only one group at a time is decoded. Groups appear in the order of the first
+ * occurrence of their key within the bucket; items within a group retain their insertion order.
+ *
+ * Buckets are independent of each other and can thus be processed concurrently.
+ *
+ * @author raven
+ *
+ * @param <T> The item type
+ */
+public class HashPartitioner<T>
+    implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(HashPartitioner.class);
+
+    /** The maximum number of parts a bucket is split into at once */
+    public static final int MAX_SPLIT_FAN_OUT = 64;
+
+    /** The size of a bucket file without entries - just the end marker */
+    protected static final long EMPTY_BUCKET_SIZE = 1;
+
+    protected Function<? super T, String> keyFn;
+    protected Function<? super T, byte[]> encoder;
+    protected Function<byte[], ? extends T> decoder;
+
+    protected Path tempDir;
+    protected List<Path> bucketFiles;
+    protected List<DataOutputStream> bucketOuts;
+
+    protected long nextSeq = 0;
+    protected long maxBucketSize = 0;
+
+    public HashPartitioner(
+            Function<? super T, String> keyFn,
+            Function<? super T, byte[]> encoder,
+            Function<byte[], ? extends T> decoder,
+            Path tempDir,
+            int numBuckets) throws IOException {
+        super();
+        this.keyFn = keyFn;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.tempDir = tempDir;
+
+        int n = Math.max(1, numBuckets);
+        this.bucketFiles = new ArrayList<>(n);
+        this.bucketOuts = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            Path file = Files.createTempFile(tempDir, "lsq-bucket-", ".bin");
+            bucketFiles.add(file);
+            bucketOuts.add(newOutputStream(file));
+        }
+    }
+
+    protected static DataOutputStream newOutputStream(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    public int getNumBuckets() {
+        return bucketFiles.size();
+    }
+
+    /** The size in bytes of the largest bucket file; only valid after {@link #finishWriting(long)} */
+    public long getMaxBucketSize() {
+        return maxBucketSize;
+    }
+
+    public static int bucketOf(String key, int numBuckets) {
+        return Math.floorMod(key.hashCode(), numBuckets);
+    }
+
+    /**
+     * The bucket of a key when splitting a bucket. The salt makes the result independent of
+     * {@link #bucketOf(String, int)}, under which all keys of the bucket being split collide.
+     */
+    public static int bucketOf(String key, int numBuckets, int salt) {
+        int h = key.hashCode() ^ (salt * 0x9E3779B9);
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, numBuckets);
+    }
+
+    public void add(T item) {
+        String key = keyFn.apply(item);
+        byte[] payload = encoder.apply(item);
+
+        DataOutputStream out = bucketOuts.get(bucketOf(key, bucketOuts.size()));
+        try {
+            ExternalSorter.writeEntry(out, new Entry(key, nextSeq++, payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Complete the first pass without limiting the bucket size */
+    public void finishWriting() throws IOException {
+        finishWriting(Long.MAX_VALUE);
+    }
+
+    /**
+     * Complete the first pass; must be called before reading any bucket.
+     * Buckets larger than the given number of bytes are split until they fit or until their keys
+     * cannot be separated any further - such as when a bucket consists of a single key. Empty buckets are removed.
+     */
+    public void finishWriting(long maxBucketBytes) throws IOException {
+        for (DataOutputStream out : bucketOuts) {
+            out.writeBoolean(false);
+            out.close();
+        }
+        bucketOuts.clear();
+
+        long limit = Math.max(1, maxBucketBytes);
+        int salt = 0;
+        int i = 0;
+        while (i < bucketFiles.size()) {
+            Path file = bucketFiles.get(i);
+            long size = Files.size(file);
+            if (size <= EMPTY_BUCKET_SIZE) {
+                bucketFiles.remove(i);
+                Files.deleteIfExists(file);
+            } else if (size > limit) {
+                int n = (int)Math.min(MAX_SPLIT_FAN_OUT, size / limit + 1);
+                splitBucket(i, n, ++salt);
+
+                long largestPart = 0;
+                for (int j = i; j < i + n; ++j) {
+                    largestPart = Math.max(largestPart, Files.size(bucketFiles.get(j)));
+                }
+
+                // Re-examine the parts unless the split did not separate anything
+                if (largestPart >= size) {
+                    i += n;
+                }
+            } else {
+                ++i;
+            }
+        }
+
+        maxBucketSize = 0;
+        for (Path file : bucketFiles) {
+            maxBucketSize = Math.max(maxBucketSize, Files.size(file));
+        }
+
+        logger.info("Partitioned " + nextSeq + " items into " + bucketFiles.size() + " buckets; largest bucket: " + maxBucketSize + " bytes");
+    }
+
+    /** Replace the i-th bucket with n buckets at the same position */
+    protected void splitBucket(int i, int n, int salt) throws IOException {
+        Path file = bucketFiles.get(i);
+        List<DataOutputStream> outs = new ArrayList<>(n);
+        try {
+            for (int j = 0; j < n; ++j) {
+                // Register the part right away such that close() removes it on failure
+                Path part = Files.createTempFile(tempDir, "lsq-bucket-", ".bin");
+                bucketFiles.add(i + 1 + j, part);
+                outs.add(newOutputStream(part));
+            }
+
+            try (DataInputStream in = newInputStream(file)) {
+                Entry e;
+                while ((e = ExternalSorter.readEntry(in)) != null) {
+                    ExternalSorter.writeEntry(outs.get(bucketOf(e.key, n, salt)), e);
+                }
+            }
+
+            for (DataOutputStream out : outs) {
+                out.writeBoolean(false);
+            }
+        } finally {
+            for (DataOutputStream out : outs) {
+                out.close();
+            }
+        }
+
+        bucketFiles.remove(i);
+        Files.deleteIfExists(file);
+    }
+
+    protected static DataInputStream newInputStream(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    /**
+     * Load the encoded items of a bucket grouped by key.
+     * The bucket's file is deleted afterwards.
+     */
+    protected Map<String, List<byte[]>> loadBucket(int bucket) throws IOException {
+        Path file = bucketFiles.get(bucket);
+
+        Map<String, List<byte[]>> result = new LinkedHashMap<>();
+        try (DataInputStream in = newInputStream(file)) {
+            Entry e;
+            while ((e = ExternalSorter.readEntry(in)) != null) {
+                result.computeIfAbsent(e.key, k -> new ArrayList<>()).add(e.payload);
+            }
+        }
+        Files.deleteIfExists(file);
+        return result;
+    }
+
+    /**
+     * Stream the items of a bucket grouped by key.
+     * The bucket is loaded in encoded form upon subscription; items are decoded as they are requested
+     * and each group is released once it has been emitted. Each bucket can be streamed only once.
+     * This method may be called concurrently for different buckets.
+     */
+    public Flowable<T> streamBucket(int bucket) {
+        return Flowable.<List<byte[]>, Iterator<List<byte[]>>>generate(
+                () -> loadBucket(bucket).values().iterator(),
+                (it, emitter) -> {
+                    if (it.hasNext()) {
+                        List<byte[]> group = it.next();
+                        it.remove();
+                        emitter.onNext(group);
+                    } else {
+                        emitter.onComplete();
+                    }
+                })
+            .concatMapIterable(group -> group, 1)
+            .<T>map(payload -> decoder.apply(payload));
+    }
+
+    @Override
+    public void close() {
+        for (DataOutputStream out : bucketOuts) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close bucket file", e);
+            }
+        }
+        bucketOuts.clear();
+
+        for (Path file : bucketFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete bucket file " + file, e);
+            }
+        }
+    }
+}
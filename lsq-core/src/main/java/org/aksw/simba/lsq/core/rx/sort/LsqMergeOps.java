@@ -0,0 +1,432 @@
+package org.aksw.simba.lsq.core.rx.sort;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.jenax.arq.dataset.orderaware.DatasetFactoryEx;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.model.RemoteExecution;
+import org.aksw.simba.lsq.model.RemoteExecutionHourCount;
+import org.aksw.simba.lsq.model.RemoteExecutionSummary;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+
+/**
+ * Merging of consecutive records that belong to the same query - either with bounded memory
+ * or by aggregating the remote executions.
+ *
+ * @author raven
+ *
+ */
+public class LsqMergeOps {
+
+    /**
+     * The default maximum number of records merged into a single output dataset.
+     * Only queries that occur more often are split into several chunks.
+     * 0 means unbounded, i.e. all records of a query are merged into a single dataset.
+     */
+    public static final int DEFAULT_MAX_RECORDS_PER_CHUNK = 10000;
+
+    /**
+     * Merge consecutive records with the same graph name into a single dataset.
+     *
+     * Once a group exceeds maxRecordsPerChunk records, the merged dataset is emitted and
+     * merging continues with a fresh dataset for the same graph.
+     * The triples that describe the query itself (its header - everything about the query resource
+     * except for the links to its remote executions) are only emitted with the first chunk;
+     * later chunks carry the remote executions and their links and are marked with {@link LSQ#chunkIndex}.
+     * Hence, the memory needed for merging does not depend on how often a query occurs.
+     * Consumers see the union of the chunks of a graph - e.g. TriG output contains several blocks for the same graph.
+     * Readers need to recombine the chunks with {@link #coalesceConsecutiveGraphs()} before processing a record.
+     */
+    public static FlowableTransformer<ResourceInDataset, ResourceInDataset> mergeConsecutiveBounded(int maxRecordsPerChunk) {
+        return upstream -> Flowable.defer(() -> {
+            ChunkedMerger merger = new ChunkedMerger(maxRecordsPerChunk);
+            return upstream
+                    .concatMapIterable(merger::accept)
+                    .concatWith(Flowable.fromIterable(() -> merger.flush().iterator()));
+        });
+    }
+
+    /** The state of merging the current group */
+    public static class ChunkedMerger {
+        protected int maxRecordsPerChunk;
+
+        protected String graphName = null;
+        protected Node root = null;
+        protected Dataset dataset = null;
+        protected int recordCount = 0;
+        protected int chunkCount = 0;
+
+        /** The header quads which have already been emitted with the first chunk of the current group */
+        protected Set<Quad> emittedHeader = null;
+
+        public ChunkedMerger(int maxRecordsPerChunk) {
+            super();
+            this.maxRecordsPerChunk = Math.max(1, maxRecordsPerChunk);
+        }
+
+        public List<ResourceInDataset> accept(ResourceInDataset rid) {
+            List<ResourceInDataset> result = new ArrayList<>(1);
+
+            String name = rid.getGraphName();
+            if (!name.equals(graphName)) {
+                result.addAll(flush());
+                graphName = name;
+                root = rid.asNode();
+                emittedHeader = null;
+                chunkCount = 0;
+            }
+
+            if (dataset == null) {
+                dataset = DatasetFactoryEx.createInsertOrderPreservingDataset();
+            }
+
+            DatasetGraph target = dataset.asDatasetGraph();
+            Iterator<Quad> it = rid.getDataset().asDatasetGraph().find();
+            while (it.hasNext()) {
+                Quad quad = it.next();
+                if (emittedHeader == null || !emittedHeader.contains(quad)) {
+                    target.add(quad);
+                }
+            }
+            ++recordCount;
+
+            if (recordCount >= maxRecordsPerChunk) {
+                result.add(emitChunk());
+            }
+
+            return result;
+        }
+
+        protected ResourceInDataset emitChunk() {
+            if (emittedHeader == null) {
+                emittedHeader = extractHeader(dataset.asDatasetGraph(), root);
+            } else {
+                // Mark the chunk as a continuation such that readers know to append it to the preceding one
+                dataset.asDatasetGraph().add(new Quad(NodeFactory.createURI(graphName), root,
+                        LSQ.chunkIndex.asNode(), NodeFactory.createLiteralByValue(chunkCount, XSDDatatype.XSDint)));
+            }
+            ++chunkCount;
+
+            ResourceInDataset result = new ResourceInDatasetImpl(dataset, graphName, root);
+            dataset = null;
+            recordCount = 0;
+            return result;
+        }
+
+        /** Emit the remainder of the current group */
+        public List<ResourceInDataset> flush() {
+            List<ResourceInDataset> result = new ArrayList<>(1);
+            if (dataset != null && recordCount > 0) {
+                result.add(emitChunk());
+            }
+            dataset = null;
+            recordCount = 0;
+            return result;
+        }
+    }
+
+    /**
+     * Append continuation chunks - datasets of a single named graph that are marked with {@link LSQ#chunkIndex} -
+     * to the preceding dataset of the same graph and remove the marker.
+     * This is the inverse of {@link #mergeConsecutiveBounded(int)}: It restores the complete record of a query
+     * - including the query header that only appears in the first chunk - before the record is processed.
+     * All other datasets are passed on as they are; in particular, separate records of the same graph
+     * as written with --no-merge are not combined.
+     */
+    public static FlowableTransformer<Dataset, Dataset> coalesceConsecutiveGraphs() {
+        return upstream -> Flowable.defer(() -> {
+            GraphCoalescer coalescer = new GraphCoalescer();
+            return upstream
+                    .concatMapIterable(coalescer::accept)
+                    .concatWith(Flowable.fromIterable(() -> coalescer.flush().iterator()));
+        });
+    }
+
+    /** The state of coalescing datasets of the same graph */
+    public static class GraphCoalescer {
+        protected Node graphName = null;
+        protected Dataset dataset = null;
+
+        public List<Dataset> accept(Dataset ds) {
+            List<Dataset> result = new ArrayList<>(1);
+
+            Node name = getSingleGraphName(ds);
+            boolean isContinuation = name != null && isContinuation(ds, name);
+            if (isContinuation) {
+                ds.asDatasetGraph().deleteAny(name, Node.ANY, LSQ.chunkIndex.asNode(), Node.ANY);
+            }
+
+            if (isContinuation && name.equals(graphName)) {
+                Iterator<Quad> it = ds.asDatasetGraph().find();
+                DatasetGraph target = dataset.asDatasetGraph();
+                while (it.hasNext()) {
+                    target.add(it.next());
+                }
+            } else {
+                result.addAll(flush());
+                if (name == null) {
+                    result.add(ds);
+                } else {
+                    // Retained until it is known whether continuation chunks follow
+                    graphName = name;
+                    dataset = ds;
+                }
+            }
+            return result;
+        }
+
+        public List<Dataset> flush() {
+            List<Dataset> result = dataset == null ? List.of() : List.of(dataset);
+            graphName = null;
+            dataset = null;
+            return result;
+        }
+
+        protected static boolean isContinuation(Dataset ds, Node graphName) {
+            return ds.asDatasetGraph().contains(graphName, Node.ANY, LSQ.chunkIndex.asNode(), Node.ANY);
+        }
+
+        /** The name of the only named graph of the dataset; null if the dataset has a non-empty default graph or several named graphs */
+        protected static Node getSingleGraphName(Dataset ds) {
+            DatasetGraph dsg = ds.asDatasetGraph();
+            Node result = null;
+            if (dsg.getDefaultGraph().isEmpty()) {
+                Iterator<Node> it = dsg.listGraphNodes();
+                if (it.hasNext()) {
+                    result = it.next();
+                    if (it.hasNext()) {
+                        result = null;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Merge consecutive records with the same graph name while replacing their remote executions
+     * with a {@link RemoteExecutionSummary}: the number of executions, the number of distinct (hashed) hosts,
+     * the first and last timestamp and the number of executions per hour.
+     *
+     * The summary is computed in a streaming way; per group only the merged triples that do
+     * not describe remote executions and the distinct host hashes are held in memory.
+     */
+    public static FlowableTransformer<ResourceInDataset, ResourceInDataset> summarizeConsecutive() {
+        return upstream -> Flowable.defer(() -> {
+            RemoteExecSummarizer summarizer = new RemoteExecSummarizer();
+            return upstream
+                    .concatMapIterable(summarizer::accept)
+                    .concatWith(Flowable.fromIterable(() -> summarizer.flush().iterator()));
+        });
+    }
+
+    protected static class RemoteExecSummarizer {
+        protected static final DateTimeFormatter HOUR_ID_FORMATTER = DateTimeFormatter
+                .ofPattern("yyyyMMdd'T'HH")
+                .withZone(ZoneOffset.UTC);
+
+        protected String graphName = null;
+        protected Node root = null;
+
+        /** The merged quads of the group without the remote executions */
+        protected Dataset dataset = null;
+
+        protected long execCount;
+        protected Set<String> hosts;
+        protected Calendar firstSeen;
+        protected Calendar lastSeen;
+        protected Map<Instant, Long> hourlyCounts;
+
+        public List<ResourceInDataset> accept(ResourceInDataset rid) {
+            List<ResourceInDataset> result = new ArrayList<>(1);
+
+            String name = rid.getGraphName();
+            if (!name.equals(graphName)) {
+                result.addAll(flush());
+                graphName = name;
+                root = rid.asNode();
+                dataset = DatasetFactoryEx.createInsertOrderPreservingDataset();
+                execCount = 0;
+                hosts = new HashSet<>();
+                firstSeen = null;
+                lastSeen = null;
+                hourlyCounts = new TreeMap<>();
+            }
+
+            Set<Node> execNodes = new HashSet<>();
+            for (RemoteExecution re : rid.as(LsqQuery.class).getRemoteExecutions()) {
+                execNodes.add(re.asNode());
+                addExec(re);
+            }
+
+            DatasetGraph src = rid.getDataset().asDatasetGraph();
+            Set<Node> execClosure = execOnlyClosure(src, execNodes, root);
+
+            DatasetGraph target = dataset.asDatasetGraph();
+            Iterator<Quad> it = src.find();
+            while (it.hasNext()) {
+                Quad quad = it.next();
+                boolean isExecLink = quad.getSubject().equals(root) && quad.getPredicate().equals(LSQ.hasRemoteExec.asNode());
+                if (!isExecLink && !execClosure.contains(quad.getSubject())) {
+                    target.add(quad);
+                }
+            }
+
+            return result;
+        }
+
+        protected void addExec(RemoteExecution re) {
+            ++execCount;
+
+            String host = re.getHostHash();
+            if (host == null) {
+                host = re.getHost();
+            }
+            if (host != null) {
+                hosts.add(host);
+            }
+
+            Calendar timestamp = re.getTimestamp();
+            if (timestamp != null) {
+                if (firstSeen == null || timestamp.compareTo(firstSeen) < 0) {
+                    firstSeen = timestamp;
+                }
+                if (lastSeen == null || timestamp.compareTo(lastSeen) > 0) {
+                    lastSeen = timestamp;
+                }
+
+                Instant hour = timestamp.toInstant().truncatedTo(ChronoUnit.HOURS);
+                hourlyCounts.merge(hour, 1l, Long::sum);
+            }
+        }
+
+        public List<ResourceInDataset> flush() {
+            List<ResourceInDataset> result = new ArrayList<>(1);
+            if (dataset != null) {
+                // Only queries that occurred in a log get a summary
+                if (execCount > 0) {
+                    Model model = dataset.getNamedModel(graphName);
+                    LsqQuery q = model.wrapAsResource(root).as(LsqQuery.class);
+
+                    String summaryIri = root.isURI() ? root.getURI() + "-remoteExecSummary" : null;
+                    RemoteExecutionSummary summary = model.createResource(summaryIri).as(RemoteExecutionSummary.class)
+                            .setExecCount(execCount)
+                            .setDistinctHostCount((long)hosts.size())
+                            .setFirstSeen(firstSeen)
+                            .setLastSeen(lastSeen);
+
+                    for (Entry<Instant, Long> e : hourlyCounts.entrySet()) {
+                        Instant hour = e.getKey();
+                        String hourIri = summaryIri == null ? null : summaryIri + "-" + HOUR_ID_FORMATTER.format(hour);
+                        RemoteExecutionHourCount bin = model.createResource(hourIri).as(RemoteExecutionHourCount.class)
+                                .setHour(GregorianCalendar.from(ZonedDateTime.ofInstant(hour, ZoneOffset.UTC)))
+                                .setExecCount(e.getValue());
+                        summary.getHourlyCounts().add(bin);
+                    }
+
+                    q.setRemoteExecSummary(summary);
+                }
+
+                result.add(new ResourceInDatasetImpl(dataset, graphName, root));
+            }
+            dataset = null;
+            return result;
+        }
+    }
+
+    /** The set of nodes reachable from the start nodes - without passing through the excluded node */
+    protected static Set<Node> closure(DatasetGraph dsg, Set<Node> start, Node excluded) {
+        Set<Node> result = new HashSet<>(start);
+        Deque<Node> open = new ArrayDeque<>(start);
+        while (!open.isEmpty()) {
+            Node node = open.removeFirst();
+            Iterator<Quad> it = dsg.find(Node.ANY, node, Node.ANY, Node.ANY);
+            while (it.hasNext()) {
+                Node o = it.next().getObject();
+                if ((o.isURI() || o.isBlank()) && !o.equals(excluded) && result.add(o)) {
+                    open.addLast(o);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The nodes that are only reachable via the given remote executions; these are the ones whose quads can be dropped
+     * once the executions are summarized. Resources that are also referenced from elsewhere in the record - such as
+     * from the query header - are retained together with everything reachable from them.
+     */
+    protected static Set<Node> execOnlyClosure(DatasetGraph dsg, Set<Node> execNodes, Node root) {
+        Set<Node> reachable = closure(dsg, execNodes, root);
+
+        // Start from all subjects that are not reachable from the executions - including the root
+        Set<Node> retained = new HashSet<>();
+        Iterator<Quad> it = dsg.find();
+        while (it.hasNext()) {
+            Node s = it.next().getSubject();
+            if (!reachable.contains(s)) {
+                retained.add(s);
+            }
+        }
+
+        Node hasRemoteExec = LSQ.hasRemoteExec.asNode();
+        Deque<Node> open = new ArrayDeque<>(retained);
+        while (!open.isEmpty()) {
+            Node node = open.removeFirst();
+            Iterator<Quad> jt = dsg.find(Node.ANY, node, Node.ANY, Node.ANY);
+            while (jt.hasNext()) {
+                Quad quad = jt.next();
+                Node o = quad.getObject();
+                boolean isExecLink = node.equals(root) && quad.getPredicate().equals(hasRemoteExec);
+                if (!isExecLink && !execNodes.contains(o) && (o.isURI() || o.isBlank()) && retained.add(o)) {
+                    open.addLast(o);
+                }
+            }
+        }
+
+        Set<Node> result = new HashSet<>(reachable);
+        result.removeAll(retained);
+        return result;
+    }
+
+    /** The quads about the root node except for the links to remote executions */
+    protected static Set<Quad> extractHeader(DatasetGraph dsg, Node root) {
+        Set<Quad> result = new HashSet<>();
+        Iterator<Quad> it = dsg.find(Node.ANY, root, Node.ANY, Node.ANY);
+        while (it.hasNext()) {
+            Quad quad = it.next();
+            if (!quad.getPredicate().equals(LSQ.hasRemoteExec.asNode())) {
+                result.add(quad);
+            }
+        }
+        return result;
+    }
+}
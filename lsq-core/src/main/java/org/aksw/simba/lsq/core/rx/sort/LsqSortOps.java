@@ -0,0 +1,216 @@
+package org.aksw.simba.lsq.core.rx.sort;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Flow operators that bring records of the same query together without resorting
+ * to external processes - either by sorting or by hash partitioning.
+ *
+ * @author raven
+ *
+ */
+public class LsqSortOps {
+
+    private static final Logger logger = LoggerFactory.getLogger(LsqSortOps.class);
+
+    /** The number of outputs a bucket may buffer ahead of the consumer */
+    public static final int BUCKET_PREFETCH = 128;
+
+    /**
+     * Sort records by their graph name - which is the IRI of the query the record
+     * belongs to - such that all records of a query become consecutive.
+     * Records with the same graph name retain their relative order.
+     *
+     * @param bufferSize The memory for in-memory runs such as "1G" or "50%"; see {@link #parseBufferSize(String)}
+     * @param temporaryDirectory The directory for spill files; null for the system default
+     * @param parallelism The number of runs that are sorted and written concurrently
+     */
+    public static FlowableTransformer<ResourceInDataset, ResourceInDataset> sortByGraphName(
+            String bufferSize, String temporaryDirectory, int parallelism) {
+        return sort(
+                ResourceInDataset::getGraphName,
+                ResourceInDatasetCodec::encode,
+                ResourceInDatasetCodec::decode,
+                parseBufferSize(bufferSize),
+                resolveTempDir(temporaryDirectory),
+                parallelism);
+    }
+
+    public static <T> FlowableTransformer<T, T> sort(
+            Function<? super T, String> keyFn,
+            Function<? super T, byte[]> encoder,
+            Function<byte[], ? extends T> decoder,
+            long bufferSize,
+            Path tempDir,
+            int parallelism) {
+        return upstream -> Flowable.using(
+                () -> new ExternalSorter<T>(keyFn, encoder, decoder, tempDir, bufferSize, parallelism),
+                sorter -> upstream
+                    .doOnNext(sorter::add)
+                    .ignoreElements()
+                    .andThen(Flowable.defer(() -> Flowable.fromIterable(() -> {
+                        try {
+                            return sorter.finish();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }))),
+                ExternalSorter::close);
+    }
+
+    /**
+     * Group records by their graph name by hash partitioning them into buckets on disk.
+     * The bucket processor is applied to the records of each bucket separately; buckets are processed
+     * concurrently as far as the buffer size permits. The outputs are emitted bucket by bucket.
+     * Records with the same graph name are consecutive within their bucket, but there is no global order.
+     *
+     * @param bufferSize The memory for loading buckets such as "1G" or "50%"; see {@link #parseBufferSize(String)}
+     * @param temporaryDirectory The directory for bucket files; null for the system default
+     * @param numBuckets The number of buckets of the first pass; larger buckets are split further
+     * @param parallelism The maximum number of buckets that are processed concurrently
+     * @param bucketProcessor The transformation applied to the grouped records of a bucket, such as a merge
+     */
+    public static <R> FlowableTransformer<ResourceInDataset, R> hashPartitionByGraphName(
+            String bufferSize, String temporaryDirectory, int numBuckets, int parallelism,
+            FlowableTransformer<ResourceInDataset, R> bucketProcessor) {
+        return hashPartition(
+                ResourceInDataset::getGraphName,
+                ResourceInDatasetCodec::encode,
+                ResourceInDatasetCodec::decode,
+                parseBufferSize(bufferSize),
+                resolveTempDir(temporaryDirectory),
+                numBuckets,
+                parallelism,
+                bucketProcessor);
+    }
+
+    /**
+     * Buckets are split such that parallelism of them fit into the buffer in encoded form.
+     * Buckets that cannot be split - such as those of a single very frequent key - reduce the number
+     * of buckets that are processed concurrently.
+     */
+    public static <T, R> FlowableTransformer<T, R> hashPartition(
+            Function<? super T, String> keyFn,
+            Function<? super T, byte[]> encoder,
+            Function<byte[], ? extends T> decoder,
+            long bufferSize,
+            Path tempDir,
+            int numBuckets,
+            int parallelism,
+            FlowableTransformer<T, R> bucketProcessor) {
+        int p = Math.max(1, parallelism);
+        return upstream -> Flowable.using(
+                () -> new HashPartitioner<T>(keyFn, encoder, decoder, tempDir, numBuckets),
+                partitioner -> upstream
+                    .doOnNext(partitioner::add)
+                    .ignoreElements()
+                    .andThen(Flowable.defer(() -> {
+                        partitioner.finishWriting(bufferSize / p);
+                        long concurrency = Math.min(p, bufferSize / Math.max(1, partitioner.getMaxBucketSize()));
+                        return processBuckets(partitioner, bucketProcessor, (int)Math.max(1, concurrency));
+                    })),
+                HashPartitioner::close);
+    }
+
+    /** Stream the processed buckets in bucket order while processing up to concurrency buckets on worker threads */
+    protected static <T, R> Flowable<R> processBuckets(HashPartitioner<T> partitioner, FlowableTransformer<T, R> bucketProcessor, int concurrency) {
+        Flowable<Integer> buckets = Flowable.range(0, partitioner.getNumBuckets());
+        Flowable<R> result;
+        if (concurrency <= 1) {
+            result = buckets.concatMap(bucket -> partitioner.streamBucket(bucket).compose(bucketProcessor));
+        } else {
+            logger.info("Processing " + partitioner.getNumBuckets() + " buckets using " + concurrency + " threads");
+            result = Flowable.using(
+                () -> Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                        .setNameFormat("lsq-bucket-%d")
+                        .setDaemon(true)
+                        .build()),
+                executorService -> {
+                    Scheduler scheduler = Schedulers.from(executorService);
+                    // The outputs of buckets other than the current one are buffered up to the prefetch
+                    return buckets.concatMapEager(bucket -> partitioner.streamBucket(bucket)
+                                .compose(bucketProcessor)
+                                .subscribeOn(scheduler),
+                            concurrency, BUCKET_PREFETCH);
+                },
+                ExecutorService::shutdownNow);
+        }
+        return result;
+    }
+
+    public static Path resolveTempDir(String temporaryDirectory) {
+        Path result = temporaryDirectory == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Paths.get(temporaryDirectory);
+        return result;
+    }
+
+    /**
+     * Parse a buffer size with {@link #parseByteSize(String)} and cap it at the maximum heap size
+     * because the buffer is held on the heap.
+     */
+    public static long parseBufferSize(String str) {
+        long result = parseByteSize(str);
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        if (result > maxMemory) {
+            logger.warn("Buffer size " + str + " exceeds the maximum heap size of " + maxMemory + " bytes - using the latter");
+            result = maxMemory;
+        }
+        return result;
+    }
+
+    /**
+     * Parse a byte size:
+     * A number of bytes with an optional suffix of b, K, M, G or T (powers of 1024) or
+     * a percentage of the maximum heap size such as "50%".
+     * Unlike with the sort command, a bare number denotes bytes rather than KiB.
+     */
+    public static long parseByteSize(String str) {
+        String s = str.trim();
+        if (s.isEmpty()) {
+            throw new IllegalArgumentException("Empty buffer size");
+        }
+
+        char last = Character.toUpperCase(s.charAt(s.length() - 1));
+        String numberPart = Character.isDigit(last) ? s : s.substring(0, s.length() - 1).trim();
+
+        long result;
+        if (last == '%') {
+            double percent = Double.parseDouble(numberPart);
+            result = (long)(Runtime.getRuntime().maxMemory() * percent / 100.0);
+        } else {
+            long factor;
+            switch (last) {
+            case 'B': factor = 1l; break;
+            case 'K': factor = 1l << 10; break;
+            case 'M': factor = 1l << 20; break;
+            case 'G': factor = 1l << 30; break;
+            case 'T': factor = 1l << 40; break;
+            default:
+                if (Character.isDigit(last)) {
+                    factor = 1l;
+                } else {
+                    throw new IllegalArgumentException(String.format(Locale.ROOT, "Unknown unit in buffer size: %s", str));
+                }
+            }
+            result = (long)(Double.parseDouble(numberPart) * factor);
+        }
+        return result;
+    }
+}
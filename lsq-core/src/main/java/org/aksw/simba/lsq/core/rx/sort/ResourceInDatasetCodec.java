@@ -0,0 +1,98 @@
+package org.aksw.simba.lsq.core.rx.sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.jenax.arq.dataset.orderaware.DatasetFactoryEx;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+
+/**
+ * Binary encoding of {@link ResourceInDataset} instances for spilling them to disk.
+ *
+ * The graph name and the resource node are written as a small header followed by the
+ * dataset in RDF Thrift. Blank node labels are retained and datasets are decoded
+ * into insert order preserving datasets so that a round trip does not change the
+ * serialization of a record.
+ *
+ * @author raven
+ *
+ */
+public class ResourceInDatasetCodec {
+
+    protected static final byte NODE_URI = 0;
+    protected static final byte NODE_BLANK = 1;
+
+    public static byte[] encode(ResourceInDataset rid) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            writeString(out, rid.getGraphName());
+
+            Node node = rid.asNode();
+            if (node.isBlank()) {
+                out.writeByte(NODE_BLANK);
+                writeString(out, node.getBlankNodeLabel());
+            } else {
+                out.writeByte(NODE_URI);
+                writeString(out, node.getURI());
+            }
+
+            out.flush();
+            RDFDataMgr.write(baos, rid.getDataset().asDatasetGraph(), RDFFormat.RDF_THRIFT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    public static ResourceInDataset decode(byte[] bytes) {
+        ResourceInDataset result;
+        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+        try (DataInputStream in = new DataInputStream(bais)) {
+            String graphName = readString(in);
+
+            byte nodeType = in.readByte();
+            String nodeStr = readString(in);
+            Node node = nodeType == NODE_BLANK
+                    ? NodeFactory.createBlankNode(nodeStr)
+                    : NodeFactory.createURI(nodeStr);
+
+            Dataset dataset = DatasetFactoryEx.createInsertOrderPreservingDataset();
+            RDFParser.source(bais)
+                .lang(Lang.RDFTHRIFT)
+                .labelToNode(LabelToNode.createUseLabelAsGiven())
+                .parse(dataset.asDatasetGraph());
+
+            result = new ResourceInDatasetImpl(dataset, graphName, node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /** Strings are length prefixed because IRIs and literals may exceed the limits of writeUTF */
+    protected static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
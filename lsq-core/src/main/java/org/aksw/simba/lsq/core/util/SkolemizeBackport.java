@@ -1,5 +1,6 @@
 package org.aksw.simba.lsq.core.util;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,6 +14,7 @@ import org.aksw.jenax.arq.util.node.NodeTransformLib2;
 import org.aksw.jenax.arq.util.var.Vars;
 import org.aksw.jenax.reprogen.core.MapperProxyUtils;
 import org.aksw.jenax.reprogen.hashid.HashIdCxt;
+import org.aksw.simba.lsq.model.util.LsqHashIdCodecs;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
@@ -128,6 +130,37 @@ public class SkolemizeBackport {
         return skolemize(root, staticModel, baseIri, cls, null);
     }
 
+    /**
+     * Compute the mapping of the nodes of the resource root and all relevant reachable resources
+     * to their skolem IRIs without modifying any model.
+     * A codec registered with {@link LsqHashIdCodecs} is used if it applies; otherwise the
+     * annotations of the view are processed reflectively.
+     */
+    public static <T extends RDFNode> Map<Node, Node> computeRenames(
+            Resource root,
+            String baseIri,
+            Class<T> cls) {
+        Map<Node, Node> result = Resource.class.isAssignableFrom(cls)
+                ? LsqHashIdCodecs.tryGetNodeMapping(root, baseIri, cls.asSubclass(Resource.class))
+                : null;
+
+        if (result == null) {
+            result = computeRenamesReflectively(root, baseIri, cls);
+        }
+        return result;
+    }
+
+    /** Compute the renames using only the annotations of the view */
+    public static <T extends RDFNode> Map<Node, Node> computeRenamesReflectively(
+            Resource root,
+            String baseIri,
+            Class<T> cls) {
+        T q = root.as(cls);
+        HashIdCxt hashIdCxt = MapperProxyUtils.getHashId(q);
+        Map<Node, Node> result = hashIdCxt.getNodeMapping(baseIri);
+        return result;
+    }
+
     /**
      * Skolemize the resource root and all relevant reachable resources.
      * The root's model is internally unioned with the staticModel (if non null).
@@ -149,6 +182,31 @@ public class SkolemizeBackport {
             String baseIri,
             Class<T> cls,
             BiConsumer<Resource, Map<Node, Node>> postProcessor) {
+        return skolemize(root, staticModel, baseIri, cls, null, postProcessor);
+    }
+
+    /** Return a new map with the entries of both maps; those of the second one take precedence */
+    protected static Map<Node, Node> merge(Map<Node, Node> a, Map<Node, Node> b) {
+        Map<Node, Node> result = new HashMap<>(a);
+        result.putAll(b);
+        return result;
+    }
+
+    /**
+     * Variant of {@link #skolemize(Resource, Model, String, Class, BiConsumer)} that additionally applies
+     * the given pending renames in the same node transform. Pending renames take precedence over the computed ones.
+     * They allow processing steps to only compute the IRIs of the resources they create - e.g. with a different
+     * IRI prefix - and to defer renaming to the single final skolemization pass.
+     *
+     * @param pendingRenames Additional renames; may be null
+     */
+    public static <T extends RDFNode> T skolemize(
+            Resource root,
+            Model staticModel,
+            String baseIri,
+            Class<T> cls,
+            Map<Node, Node> pendingRenames,
+            BiConsumer<Resource, Map<Node, Node>> postProcessor) {
 
         Graph staticGraph = staticModel != null ? staticModel.getGraph() : null;
 
@@ -158,8 +216,10 @@ public class SkolemizeBackport {
 
         T q = mergedRoot.as(cls);
 
-        HashIdCxt hashIdCxt = MapperProxyUtils.getHashId(q);
-        Map<Node, Node> renames = hashIdCxt.getNodeMapping(baseIri);
+        Map<Node, Node> computedRenames = computeRenames(q, baseIri, cls);
+        Map<Node, Node> renames = pendingRenames == null || pendingRenames.isEmpty()
+                ? computedRenames
+                : merge(computedRenames, pendingRenames);
 
         Set<Node> blockedRenames = staticGraph == null
                 ? Set.of()
@@ -0,0 +1,188 @@
+package org.aksw.simba.lsq;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.aksw.simba.lsq.core.rx.sort.ExternalSorter;
+import org.aksw.simba.lsq.core.rx.sort.HashPartitioner;
+import org.aksw.simba.lsq.core.rx.sort.LsqSortOps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+public class TestExternalSorter {
+
+    /** Sort "key:seq" strings by key; the expected order is that of a stable sort */
+    protected static List<String> sort(List<String> items, long bufferSize, Path tempDir) throws Exception {
+        return sort(items, bufferSize, tempDir, ExternalSorter.DEFAULT_MAX_FAN_IN);
+    }
+
+    protected static List<String> sort(List<String> items, long bufferSize, Path tempDir, int maxFanIn) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (ExternalSorter<String> sorter = new ExternalSorter<>(
+                str -> str.substring(0, str.indexOf(':')),
+                str -> str.getBytes(StandardCharsets.UTF_8),
+                bytes -> new String(bytes, StandardCharsets.UTF_8),
+                tempDir, bufferSize, 3, maxFanIn)) {
+            items.forEach(sorter::add);
+            Iterator<String> it = sorter.finish();
+            it.forEachRemaining(result::add);
+        }
+        return result;
+    }
+
+    protected static List<String> createItems(int n) {
+        Random random = new Random(0);
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            result.add("q" + random.nextInt(100) + ":" + i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testInMemorySortIsStable() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = createItems(1000);
+        List<String> expected = items.stream()
+                .sorted(Comparator.comparing(str -> str.substring(0, str.indexOf(':'))))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(expected, sort(items, 1l << 30, tempDir));
+        Assert.assertEquals(0l, Files.list(tempDir).count());
+    }
+
+    @Test
+    public void testSpillingSortIsStable() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = createItems(10000);
+        List<String> expected = items.stream()
+                .sorted(Comparator.comparing(str -> str.substring(0, str.indexOf(':'))))
+                .collect(Collectors.toList());
+
+        // A small buffer forces many runs
+        Assert.assertEquals(expected, sort(items, 16 * 1024, tempDir));
+
+        // Run files are removed on close
+        Assert.assertEquals(0l, Files.list(tempDir).count());
+    }
+
+    /** With a small fan-in the runs are merged in several intermediate passes */
+    @Test
+    public void testMultiPassMergeIsStable() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = createItems(10000);
+        List<String> expected = items.stream()
+                .sorted(Comparator.comparing(str -> str.substring(0, str.indexOf(':'))))
+                .collect(Collectors.toList());
+
+        for (int maxFanIn : new int[] { 2, 3, 7 }) {
+            Assert.assertEquals(expected, sort(items, 4 * 1024, tempDir, maxFanIn));
+            Assert.assertEquals(0l, Files.list(tempDir).count());
+        }
+    }
+
+    protected static List<String> hashPartition(List<String> items, Path tempDir, long maxBucketBytes) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (HashPartitioner<String> partitioner = new HashPartitioner<>(
+                str -> str.substring(0, str.indexOf(':')),
+                str -> str.getBytes(StandardCharsets.UTF_8),
+                bytes -> new String(bytes, StandardCharsets.UTF_8),
+                tempDir, 7)) {
+            items.forEach(partitioner::add);
+            partitioner.finishWriting(maxBucketBytes);
+            for (int i = 0; i < partitioner.getNumBuckets(); ++i) {
+                result.addAll(partitioner.streamBucket(i).toList().blockingGet());
+            }
+        }
+        return result;
+    }
+
+    /** Hash partitioning must make items with the same key consecutive while retaining their order */
+    @Test
+    public void testHashPartitionGroupsKeys() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = createItems(10000);
+
+        // Without a limit, and with a limit that requires splitting buckets
+        assertGrouped(items, hashPartition(items, tempDir, Long.MAX_VALUE));
+        assertGrouped(items, hashPartition(items, tempDir, 4 * 1024));
+        Assert.assertEquals(0l, Files.list(tempDir).count());
+    }
+
+    /** Buckets of a single key cannot be split and must be retained as a whole */
+    @Test
+    public void testHashPartitionSingleKey() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            items.add("q:" + i);
+        }
+
+        Assert.assertEquals(items, hashPartition(items, tempDir, 128));
+        Assert.assertEquals(0l, Files.list(tempDir).count());
+    }
+
+    /** The bucket processor sees the groups of each bucket; all groups are emitted */
+    @Test
+    public void testHashPartitionOps() throws Exception {
+        Path tempDir = Files.createTempDirectory("lsq-sort-test");
+        List<String> items = createItems(10000);
+
+        for (long bufferSize : new long[] { 1l << 30, 16 * 1024 }) {
+            List<String> actual = Flowable.fromIterable(items)
+                    .compose(LsqSortOps.<String, String>hashPartition(
+                            str -> str.substring(0, str.indexOf(':')),
+                            str -> str.getBytes(StandardCharsets.UTF_8),
+                            bytes -> new String(bytes, StandardCharsets.UTF_8),
+                            bufferSize, tempDir, 7, 4, upstream -> upstream))
+                    .toList()
+                    .blockingGet();
+            assertGrouped(items, actual);
+            Assert.assertEquals(0l, Files.list(tempDir).count());
+        }
+    }
+
+    protected static void assertGrouped(List<String> items, List<String> actual) {
+        Assert.assertEquals(items.size(), actual.size());
+
+        Map<String, List<String>> expectedGroups = items.stream()
+                .collect(Collectors.groupingBy(str -> str.substring(0, str.indexOf(':'))));
+        Set<String> seenKeys = new HashSet<>();
+        String lastKey = null;
+        int i = 0;
+        while (i < actual.size()) {
+            String key = actual.get(i).substring(0, actual.get(i).indexOf(':'));
+            Assert.assertNotEquals(key, lastKey);
+            Assert.assertTrue("Key occurs in more than one group: " + key, seenKeys.add(key));
+
+            List<String> group = expectedGroups.get(key);
+            Assert.assertEquals(group, actual.subList(i, i + group.size()));
+            i += group.size();
+            lastKey = key;
+        }
+    }
+
+    @Test
+    public void testParseByteSize() {
+        Assert.assertEquals(1l << 30, LsqSortOps.parseByteSize("1G"));
+        Assert.assertEquals(512l << 20, LsqSortOps.parseByteSize("512M"));
+        Assert.assertEquals(100l, LsqSortOps.parseByteSize("100"));
+        Assert.assertEquals(10l, LsqSortOps.parseByteSize("10b"));
+
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        Assert.assertEquals(maxMemory / 2, LsqSortOps.parseBufferSize("50%"));
+        Assert.assertEquals(maxMemory, LsqSortOps.parseBufferSize("1000T"));
+    }
+}
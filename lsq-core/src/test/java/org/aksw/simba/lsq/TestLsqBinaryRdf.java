@@ -0,0 +1,55 @@
+package org.aksw.simba.lsq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+public class TestLsqBinaryRdf {
+
+    protected static Dataset parseTrig(String str) {
+        Dataset result = DatasetFactory.create();
+        RDFDataMgr.read(result, new StringReader(str), null, Lang.TRIG);
+        return result;
+    }
+
+    /** Records must survive a round trip unchanged - including non-canonical lexical forms */
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Dataset> expected = List.of(
+                parseTrig("<urn:q1> { <urn:q1> <urn:p> \"01\"^^<http://www.w3.org/2001/XMLSchema#int> ; <urn:e> [ <urn:p> \"x\"@en ] }"),
+                parseTrig("<urn:q2> { <urn:q2> <urn:p> \"1.0\"^^<http://www.w3.org/2001/XMLSchema#double> }"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = LsqBinaryRdf.writeDatasets(Flowable.fromIterable(expected), out);
+        Assert.assertEquals(2l, count);
+
+        byte[] bytes = out.toByteArray();
+        Assert.assertTrue(LsqBinaryRdf.probe(() -> new ByteArrayInputStream(bytes)));
+
+        List<Dataset> actual = LsqBinaryRdf.createFlowableDatasets(() -> new ByteArrayInputStream(bytes))
+                .toList().blockingGet();
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertTrue(IsoMatcher.isomorphic(expected.get(i).asDatasetGraph(), actual.get(i).asDatasetGraph()));
+        }
+    }
+
+    @Test
+    public void testProbeRejectsText() {
+        byte[] bytes = "<urn:q1> { <urn:s> <urn:p> <urn:o> }".getBytes();
+        Assert.assertFalse(LsqBinaryRdf.probe(() -> new ByteArrayInputStream(bytes)));
+    }
+}
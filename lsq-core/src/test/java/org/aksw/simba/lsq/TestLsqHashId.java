@@ -1,13 +1,73 @@
 package org.aksw.simba.lsq;
 
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.aksw.simba.lsq.core.util.SkolemizeBackport;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.model.LsqStructuralFeatures;
+import org.aksw.simba.lsq.model.RemoteExecution;
+import org.aksw.simba.lsq.model.RemoteExecutionHeaders;
+import org.aksw.simba.lsq.model.util.LsqHashIdCodecs;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class TestLsqHashId {
 
+    protected static final String baseIri = "http://lsq.aksw.org/";
+
+    protected static LsqQuery createLogRecord() {
+        Model m = ModelFactory.createDefaultModel();
+
+        Calendar timestamp = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        timestamp.setTimeInMillis(1600000000000l);
+
+        RemoteExecution re = m.createResource().as(RemoteExecution.class)
+            .setHostHash("hostHash")
+            .setEndpointUrl("http://dbpedia.org/sparql")
+            .setTimestamp(timestamp)
+            .setSequenceId(1l);
+
+        re.addProperty(m.createProperty(LSQ.Terms.headers),
+                m.createResource().addLiteral(m.createProperty("http://example.org/userAgent"), "agent"));
+
+        LsqQuery q = m.createResource().as(LsqQuery.class);
+        q.setText("SELECT * { ?s ?p ?o }");
+        q.setHash("abc/def+ghi");
+        q.getRemoteExecutions().add(re);
+        return q;
+    }
+
+    /** The codec for log records must yield the same IRIs as the reflective implementation */
     @Test
-    public void testHashId() {
-//		Model m = ModelFactory.createDefaultModel();
-//		m.createResource().as(LocalExecution.class)
-//			.setQueryExec(queryExec)
+    public void testLogRecordCodecMatchesReflection() {
+        LsqQuery q = createLogRecord();
+
+        Map<Node, Node> expected = SkolemizeBackport.computeRenamesReflectively(q, baseIri, LsqQuery.class);
+        Map<Node, Node> actual = LsqHashIdCodecs.tryGetNodeMapping(q, baseIri, LsqQuery.class);
+
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected, actual);
+
+        RemoteExecutionHeaders headers = q.getRemoteExecutions().iterator().next().getHeaders();
+        Assert.assertTrue(actual.containsKey(headers.asNode()));
+    }
+
+    /** Records with additional resources are left to the reflective implementation */
+    @Test
+    public void testCodecFallback() {
+        LsqQuery q = createLogRecord();
+        q.setStructuralFeatures(q.getModel().createResource().as(LsqStructuralFeatures.class).setProjectVarCount(3));
+        Assert.assertNull(LsqHashIdCodecs.tryGetNodeMapping(q, baseIri, LsqQuery.class));
+
+        LsqQuery noHash = createLogRecord();
+        noHash.setHash(null);
+        Assert.assertNull(LsqHashIdCodecs.tryGetNodeMapping(noHash, baseIri, LsqQuery.class));
     }
 }
@@ -0,0 +1,207 @@
+package org.aksw.simba.lsq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.aksw.simba.lsq.core.io.input.BgzfInputStream;
+import org.aksw.simba.lsq.core.io.input.LsqInputStreams;
+import org.aksw.simba.lsq.core.io.input.ReadAheadInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLsqInputStreams {
+
+    protected static final byte[] data = IntStream.range(0, 5000)
+            .mapToObj(i -> "line " + i + " ä€")
+            .collect(Collectors.joining("\n", "", "\n"))
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** Write a single BGZF block; an empty array yields the EOF block */
+    protected static void writeBgzfBlock(OutputStream out, byte[] b, int off, int len) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] compressed = new byte[len + 1024];
+        int n;
+        try {
+            deflater.setInput(b, off, len);
+            deflater.finish();
+            n = deflater.deflate(compressed);
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(b, off, len);
+
+        int blockSize = BgzfInputStream.HEADER_LENGTH + n + 8;
+        byte[] header = new byte[] {
+                31, (byte)139, 8, 4, // gzip magic, deflate, FEXTRA
+                0, 0, 0, 0, 0, (byte)255, // mtime, xfl, os
+                6, 0, 'B', 'C', 2, 0, // xlen and the 'BC' subfield
+                (byte)(blockSize - 1), (byte)((blockSize - 1) >> 8)
+        };
+        out.write(header);
+        out.write(compressed, 0, n);
+        writeUInt32(out, crc.getValue());
+        writeUInt32(out, len);
+    }
+
+    protected static void writeUInt32(OutputStream out, long value) throws IOException {
+        for (int i = 0; i < 4; ++i) {
+            out.write((int)(value >> (8 * i)) & 0xff);
+        }
+    }
+
+    protected static byte[] createBgzf(byte[] content, int blockLength) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int off = 0; off < content.length; off += blockLength) {
+            writeBgzfBlock(out, content, off, Math.min(blockLength, content.length - off));
+        }
+        writeBgzfBlock(out, new byte[0], 0, 0);
+        return out.toByteArray();
+    }
+
+    protected static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream tmp = in) {
+            return tmp.readAllBytes();
+        }
+    }
+
+    @Test
+    public void testBgzfMultipleBlocks() throws Exception {
+        byte[] bgzf = createBgzf(data, 1000);
+
+        // The blocks must be valid gzip members
+        Assert.assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(bgzf))));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            for (int readAhead : new int[] { 1, 2, 16 }) {
+                Assert.assertArrayEquals(data, readAll(new BgzfInputStream(new ByteArrayInputStream(bgzf), executorService, readAhead)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Path file = Files.createTempFile("lsq-bgzf-", ".gz");
+        try {
+            Files.write(file, bgzf);
+            Assert.assertTrue(LsqInputStreams.isBgzf(file));
+            Assert.assertArrayEquals(data, readAll(LsqInputStreams.open(file.toString(), 4)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBgzfTruncated() throws Exception {
+        byte[] bgzf = createBgzf(data, 1000);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            readAll(new BgzfInputStream(new ByteArrayInputStream(bgzf, 0, bgzf.length - 100), executorService, 4));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /** Plain gzip files are not BGZF and are decompressed on the normal path */
+    @Test
+    public void testPlainGzip() throws Exception {
+        Path file = Files.createTempFile("lsq-gzip-", ".gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                out.write(data);
+            }
+            Assert.assertFalse(LsqInputStreams.isBgzf(file));
+            Assert.assertArrayEquals(data, readAll(LsqInputStreams.open(file.toString(), 4)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReadAheadEof() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            for (int chunkSize : new int[] { 1, 100, data.length, data.length * 2 }) {
+                try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), executorService, chunkSize, 2)) {
+                    Assert.assertArrayEquals(data, in.readAllBytes());
+                    Assert.assertEquals(-1, in.read());
+                    Assert.assertEquals(-1, in.read(new byte[10], 0, 10));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReadAheadProducerError() throws Exception {
+        InputStream failing = new InputStream() {
+            int n = 0;
+            @Override
+            public int read() throws IOException {
+                if (n >= 10) {
+                    throw new IOException("test failure");
+                }
+                return n++;
+            }
+        };
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (InputStream in = new ReadAheadInputStream(failing, executorService, 4, 2)) {
+            byte[] buffer = new byte[4];
+            int total = 0;
+            try {
+                int n;
+                while ((n = in.read(buffer, 0, buffer.length)) >= 0) {
+                    total += n;
+                }
+                Assert.fail("Producer error was not passed on");
+            } catch (IOException e) {
+                Assert.assertEquals("test failure", e.getMessage());
+            }
+            // The chunks read before the error are delivered
+            Assert.assertEquals(8, total);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /** Closing while the producer is blocked on the full queue must not hang */
+    @Test(timeout = 10000)
+    public void testReadAheadCloseDoesNotHang() throws Exception {
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'x';
+            }
+        };
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            InputStream in = new ReadAheadInputStream(endless, executorService, 16, 1);
+            Assert.assertEquals('x', in.read());
+            in.close();
+
+            executorService.shutdown();
+            Assert.assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
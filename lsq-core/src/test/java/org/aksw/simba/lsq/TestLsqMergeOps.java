@@ -0,0 +1,131 @@
+package org.aksw.simba.lsq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps.ChunkedMerger;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+public class TestLsqMergeOps {
+
+    /** A record of a query with a single remote execution in the graph of the query */
+    protected static ResourceInDataset createRecord(String queryIri, int execId) {
+        Node q = NodeFactory.createURI(queryIri);
+        Node re = NodeFactory.createURI(queryIri + "-re" + execId);
+
+        Dataset ds = DatasetFactory.create();
+        DatasetGraph dsg = ds.asDatasetGraph();
+        dsg.add(new Quad(q, q, LSQ.text.asNode(), NodeFactory.createLiteralString("SELECT * { ?s ?p ?o }")));
+        dsg.add(new Quad(q, q, LSQ.hasRemoteExec.asNode(), re));
+        dsg.add(new Quad(q, re, LSQ.sequenceId.asNode(), NodeFactory.createLiteralString("" + execId)));
+        return new ResourceInDatasetImpl(ds, queryIri, q);
+    }
+
+    protected static long count(Dataset ds, Node p) {
+        return Iter.count(ds.asDatasetGraph().find(Node.ANY, Node.ANY, p, Node.ANY));
+    }
+
+    @Test
+    public void testChunkedMerger() {
+        ChunkedMerger merger = new ChunkedMerger(2);
+        List<ResourceInDataset> out = new ArrayList<>();
+
+        for (int i = 1; i <= 5; ++i) {
+            List<ResourceInDataset> chunks = merger.accept(createRecord("urn:a", i));
+            // A chunk is emitted exactly when the chunk size is reached
+            Assert.assertEquals(i % 2 == 0 ? 1 : 0, chunks.size());
+            out.addAll(chunks);
+        }
+
+        // Switching to another graph emits the remainder of the previous one
+        List<ResourceInDataset> onSwitch = merger.accept(createRecord("urn:b", 1));
+        Assert.assertEquals(1, onSwitch.size());
+        out.addAll(onSwitch);
+
+        List<ResourceInDataset> remainder = merger.flush();
+        Assert.assertEquals(1, remainder.size());
+        out.addAll(remainder);
+
+        // Flushing again yields nothing
+        Assert.assertTrue(merger.flush().isEmpty());
+
+        Assert.assertEquals(List.of("urn:a", "urn:a", "urn:a", "urn:b"),
+                out.stream().map(ResourceInDataset::getGraphName).collect(Collectors.toList()));
+
+        Node text = LSQ.text.asNode();
+        Node link = LSQ.hasRemoteExec.asNode();
+
+        // The header is only part of the first chunk of a graph
+        Assert.assertEquals(1, count(out.get(0).getDataset(), text));
+        Assert.assertEquals(0, count(out.get(1).getDataset(), text));
+        Assert.assertEquals(0, count(out.get(2).getDataset(), text));
+        Assert.assertEquals(1, count(out.get(3).getDataset(), text));
+
+        // Only continuation chunks are marked
+        Node chunkIndex = LSQ.chunkIndex.asNode();
+        Assert.assertEquals(0, count(out.get(0).getDataset(), chunkIndex));
+        Assert.assertEquals(1, count(out.get(1).getDataset(), chunkIndex));
+        Assert.assertEquals(1, count(out.get(2).getDataset(), chunkIndex));
+        Assert.assertEquals(0, count(out.get(3).getDataset(), chunkIndex));
+
+        // No execution is lost
+        Assert.assertEquals(2, count(out.get(0).getDataset(), link));
+        Assert.assertEquals(2, count(out.get(1).getDataset(), link));
+        Assert.assertEquals(1, count(out.get(2).getDataset(), link));
+        Assert.assertEquals(1, count(out.get(3).getDataset(), link));
+    }
+
+    /** Readers must see all executions of a chunked query together with its header */
+    @Test
+    public void testCoalesceChunks() {
+        List<ResourceInDataset> records = new ArrayList<>();
+        for (int i = 1; i <= 5; ++i) {
+            records.add(createRecord("urn:a", i));
+        }
+        records.add(createRecord("urn:b", 1));
+
+        List<Dataset> datasets = Flowable.fromIterable(records)
+                .compose(LsqMergeOps.mergeConsecutiveBounded(2))
+                .map(ResourceInDataset::getDataset)
+                .compose(LsqMergeOps.coalesceConsecutiveGraphs())
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(2, datasets.size());
+        Assert.assertEquals(1, count(datasets.get(0), LSQ.text.asNode()));
+        Assert.assertEquals(5, count(datasets.get(0), LSQ.hasRemoteExec.asNode()));
+        Assert.assertEquals(0, count(datasets.get(0), LSQ.chunkIndex.asNode()));
+        Assert.assertEquals(1, count(datasets.get(1), LSQ.hasRemoteExec.asNode()));
+    }
+
+    /** Unmerged records of the same query - such as those written with --no-merge - must not be combined */
+    @Test
+    public void testCoalesceOnlyChunks() {
+        List<Dataset> datasets = Flowable.range(1, 3)
+                .map(i -> createRecord("urn:a", i).getDataset())
+                .compose(LsqMergeOps.coalesceConsecutiveGraphs())
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(3, datasets.size());
+        for (Dataset ds : datasets) {
+            Assert.assertEquals(1, count(ds, LSQ.text.asNode()));
+            Assert.assertEquals(1, count(ds, LSQ.hasRemoteExec.asNode()));
+        }
+    }
+}
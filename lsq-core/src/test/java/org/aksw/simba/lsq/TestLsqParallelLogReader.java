@@ -0,0 +1,120 @@
+package org.aksw.simba.lsq;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.aksw.simba.lsq.core.rx.io.input.LsqParallelLogReader;
+import org.aksw.simba.lsq.core.rx.io.input.LsqRxIo;
+import org.aksw.simba.lsq.core.rx.io.input.WebLogResourceParser;
+import org.aksw.simba.lsq.model.RemoteExecution;
+import org.aksw.simba.lsq.parser.Mapper;
+import org.aksw.simba.lsq.parser.WebLogRecord;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+/** The parallel reader must yield exactly the records and sequence ids of the sequential reader */
+public class TestLsqParallelLogReader {
+
+    /** Every line is a query except for those starting with '#' which fail to parse */
+    protected static final Mapper lineMapper = new Mapper() {
+        @Override
+        public int parse(Resource r, String lexicalForm) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int parse(WebLogRecord record, String lexicalForm) {
+            int result = 0;
+            if (!lexicalForm.startsWith("#")) {
+                record.setQuery(lexicalForm);
+                result = 1;
+            }
+            return result;
+        }
+
+        @Override
+        public String unparse(Resource r) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    protected static List<String> toStrings(Flowable<Resource> records) {
+        return records
+                .map(r -> r.as(RemoteExecution.class).getSequenceId() + ": " + r.getProperty(LSQ.query).getString())
+                .toList()
+                .blockingGet();
+    }
+
+    protected static void assertSameAsSequential(String content, long minRangeSize) throws Exception {
+        Path file = Files.createTempFile("lsq-parallel-", ".log");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            WebLogResourceParser parser = new WebLogResourceParser(lineMapper);
+
+            // The sequential reader is based on BufferedReader
+            List<String> expected = toStrings(LsqRxIo.createLogRecordResources(
+                    parser.parseRecords(() -> Files.newInputStream(file)), 1));
+
+            for (int parallelism : new int[] { 1, 2, 4 }) {
+                List<String> actual = toStrings(LsqParallelLogReader.createReader(file, parser, r -> r, parallelism, minRangeSize));
+                Assert.assertEquals("parallelism " + parallelism + ", min range size " + minRangeSize, expected, actual);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    protected static String createContent(String lineEnding, int lineCount) {
+        return IntStream.range(0, lineCount)
+                .mapToObj(i -> i % 7 == 3 ? "# comment " + i : "SELECT * { ?s ?p \"" + "x".repeat(i % 13) + "ä€" + i + "\" }")
+                .collect(Collectors.joining(lineEnding, "", lineEnding));
+    }
+
+    @Test
+    public void testLineEndings() throws Exception {
+        for (String lineEnding : new String[] { "\n", "\r", "\r\n" }) {
+            String content = createContent(lineEnding, 100);
+            for (long minRangeSize : new long[] { 1, 7, 64, 1 << 20 }) {
+                assertSameAsSequential(content, minRangeSize);
+            }
+        }
+    }
+
+    @Test
+    public void testMixedLineEndings() throws Exception {
+        String content = "a\nb\r\nc\rd\r\n\r\ne\n\nf";
+        for (long minRangeSize : new long[] { 1, 2, 3, 5 }) {
+            assertSameAsSequential(content, minRangeSize);
+        }
+    }
+
+    @Test
+    public void testEmptyLastLine() throws Exception {
+        for (long minRangeSize : new long[] { 1, 16 }) {
+            assertSameAsSequential(createContent("\n", 30) + "\n", minRangeSize);
+            assertSameAsSequential(createContent("\r\n", 30) + "\r\n", minRangeSize);
+        }
+    }
+
+    @Test
+    public void testMissingFinalNewline() throws Exception {
+        String content = createContent("\n", 30);
+        content = content.substring(0, content.length() - 1);
+        for (long minRangeSize : new long[] { 1, 16 }) {
+            assertSameAsSequential(content, minRangeSize);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        assertSameAsSequential("", 1);
+    }
+}
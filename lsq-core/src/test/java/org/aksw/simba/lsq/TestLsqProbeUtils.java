@@ -0,0 +1,57 @@
+package org.aksw.simba.lsq;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.aksw.simba.lsq.core.ResourceParser;
+import org.aksw.simba.lsq.core.io.input.registry.LsqInputFormatRegistry;
+import org.aksw.simba.lsq.core.rx.io.input.LsqProbeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Multimap;
+
+public class TestLsqProbeUtils {
+
+    /**
+     * The common format also matches combined log lines but yields fewer properties.
+     * Combined must win even if one of its early lines is broken.
+     */
+    @Test
+    public void testCombinedBeatsCommon() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            lines.add(i == 3
+                ? "127.0.0.1 - - [06/Nov/2016:05:12:49 +0100] \"GET /sparql?query=ASK%7B%7D HTTP/1.1\" 200"
+                : "127.0.0.1 - - [06/Nov/2016:05:12:" + String.format("%02d", i % 60) + " +0100] \"GET /sparql?query=SELECT+*+%7B%3Fs+%3Fp+%3Fo%7D HTTP/1.1\" 200 3623 \"http://localhost/\" \"Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:49.0) Gecko/20100101 Firefox/49.0\"");
+        }
+
+        Path file = Files.createTempFile("lsq-probe-", ".log");
+        try {
+            Files.write(file, lines);
+            Map<String, ResourceParser> registry = LsqInputFormatRegistry.createDefaultLogFmtRegistry();
+
+            // Repeat to catch dependencies on the order in which the formats complete
+            for (int i = 0; i < 5; ++i) {
+                Multimap<Double, String> report = LsqProbeUtils.probeLogFormatCore(registry, file.toString());
+                String best = report.entries().iterator().next().getValue();
+                Assert.assertEquals("combined", best);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testAchievableWeight() {
+        // 100 records with 5 properties each but no errors cannot exceed 5
+        Assert.assertEquals(5.0, LsqProbeUtils.achievableWeight(100, 500, 5), 1e-9);
+
+        // Erroneous records lower the bound but remaining records may still make up for it
+        double bound = LsqProbeUtils.achievableWeight(100, 99 * 6, 6);
+        Assert.assertTrue(bound > 5.0 && bound < 6.0);
+    }
+}
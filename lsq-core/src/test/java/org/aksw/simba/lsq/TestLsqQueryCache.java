@@ -0,0 +1,50 @@
+package org.aksw.simba.lsq;
+
+import java.util.function.Function;
+
+import org.aksw.jenax.stmt.core.SparqlStmt;
+import org.aksw.jenax.stmt.core.SparqlStmtParserImpl;
+import org.aksw.simba.lsq.core.LsqQueryCache;
+import org.aksw.simba.lsq.core.LsqQueryCache.CachedQuery;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.apache.jena.query.Syntax;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLsqQueryCache {
+
+    @Test
+    public void testRepeatedQueriesAreParsedOnce() {
+        int[] parseCount = {0};
+        Function<String, SparqlStmt> parser = SparqlStmtParserImpl.create(Syntax.syntaxARQ, true);
+        Function<String, SparqlStmt> countingParser = str -> {
+            ++parseCount[0];
+            return parser.apply(str);
+        };
+
+        LsqQueryCache cache = LsqQueryCache.create(countingParser);
+
+        String queryStr = "SELECT * { ?s ?p ?o }";
+        CachedQuery first = cache.apply(queryStr);
+        CachedQuery second = cache.apply(queryStr);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, parseCount[0]);
+        Assert.assertEquals(1, cache.getStats().hitCount());
+        Assert.assertEquals(1, cache.getStats().missCount());
+
+        Assert.assertTrue(first.isQuery());
+        Assert.assertNull(first.getParseError());
+        Assert.assertEquals(LsqQuery.createHash(first.getText()), first.getHash());
+    }
+
+    @Test
+    public void testParseErrorIsCached() {
+        LsqQueryCache cache = LsqQueryCache.create(SparqlStmtParserImpl.create(Syntax.syntaxARQ, true));
+
+        CachedQuery result = cache.apply("SELECT * { ?s ?p }");
+        Assert.assertTrue(result.isQuery());
+        Assert.assertNotNull(result.getParseError());
+        Assert.assertEquals("SELECT * { ?s ?p }", result.getText());
+    }
+}
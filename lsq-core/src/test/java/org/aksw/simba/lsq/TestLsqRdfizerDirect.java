@@ -0,0 +1,64 @@
+package org.aksw.simba.lsq;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+import java.util.function.Function;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.jenax.stmt.core.SparqlStmtParserImpl;
+import org.aksw.simba.lsq.core.LsqQueryCache;
+import org.aksw.simba.lsq.core.LsqRdfizer;
+import org.aksw.simba.lsq.parser.WebLogRecord;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLsqRdfizerDirect {
+
+    protected static final String baseIri = "http://lsq.aksw.org/";
+    protected static final String serviceUrl = "http://dbpedia.org/sparql";
+    protected static final Function<String, String> hostHashFn = str -> "hash-" + str.length();
+
+    protected static Resource createLogRecord() {
+        WebLogRecord record = new WebLogRecord()
+                .setHost("127.0.0.1")
+                .setTimestamp(1600000000000l)
+                .setTimeZone(TimeZone.getTimeZone("UTC"))
+                .setVerb("GET")
+                .setRequestPath("/sparql")
+                .setStatusCode(200)
+                .setQuery("SELECT * { ?s a ?o }");
+        return LsqRdfizer.createLogRecordResource(record, 1);
+    }
+
+    protected static String toTrigBlocks(Dataset dataset) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFDataMgr.write(out, dataset, RDFFormat.TRIG_BLOCKS);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** The direct path must produce exactly the output of rdfization followed by a copy into the graph of the query */
+    @Test
+    public void testDirectMatchesRegular() {
+        LsqQueryCache queryCache = LsqQueryCache.create(SparqlStmtParserImpl.create(Syntax.syntaxARQ, true));
+
+        Resource regular = LsqRdfizer.rdfizeLogRecord(queryCache, baseIri, "", serviceUrl, hostHashFn, createLogRecord())
+                .orElse(null);
+        Assert.assertNotNull(regular);
+        ResourceInDataset expected = ResourceInDatasetImpl.createFromCopyIntoResourceGraph(regular);
+
+        ResourceInDataset actual = LsqRdfizer.rdfizeLogRecordDirect(queryCache, baseIri, "", serviceUrl, hostHashFn, createLogRecord())
+                .orElse(null);
+        Assert.assertNotNull(actual);
+
+        Assert.assertEquals(expected.getGraphName(), actual.getGraphName());
+        Assert.assertEquals(expected.asNode(), actual.asNode());
+        Assert.assertEquals(toTrigBlocks(expected.getDataset()), toTrigBlocks(actual.getDataset()));
+    }
+}
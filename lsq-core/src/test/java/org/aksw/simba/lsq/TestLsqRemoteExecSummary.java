@@ -0,0 +1,97 @@
+package org.aksw.simba.lsq;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import org.aksw.jenax.arq.dataset.api.ResourceInDataset;
+import org.aksw.jenax.arq.dataset.impl.ResourceInDatasetImpl;
+import org.aksw.simba.lsq.core.rx.sort.LsqMergeOps;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.model.RemoteExecution;
+import org.aksw.simba.lsq.model.RemoteExecutionHourCount;
+import org.aksw.simba.lsq.model.RemoteExecutionSummary;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+public class TestLsqRemoteExecSummary {
+
+    protected static final String queryIri = "http://lsq.aksw.org/q-test";
+
+    protected static Calendar utc(String instant) {
+        Calendar result = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        result.setTimeInMillis(Instant.parse(instant).toEpochMilli());
+        return result;
+    }
+
+    /** A record with a single execution; the execution and the query header both refer to a shared resource */
+    protected static ResourceInDataset createRecord(int execId, String hostHash, String timestamp) {
+        Dataset ds = DatasetFactory.create();
+        Model m = ds.getNamedModel(queryIri);
+
+        Resource shared = m.createResource("http://lsq.aksw.org/shared").addProperty(RDFS.label, "shared");
+
+        LsqQuery q = m.createResource(queryIri).as(LsqQuery.class);
+        q.setText("SELECT * { ?s ?p ?o }");
+        q.addProperty(RDFS.seeAlso, shared);
+
+        RemoteExecution re = m.createResource(queryIri + "-re" + execId).as(RemoteExecution.class)
+                .setHostHash(hostHash)
+                .setTimestamp(utc(timestamp));
+        re.addProperty(RDFS.seeAlso, shared);
+        re.addProperty(m.createProperty(LSQ.Terms.headers),
+                m.createResource().addProperty(m.createProperty("http://example.org/userAgent"), "agent" + execId));
+        q.getRemoteExecutions().add(re);
+
+        return new ResourceInDatasetImpl(ds, queryIri, q.asNode());
+    }
+
+    @Test
+    public void testSummaryAcrossHourBoundary() {
+        List<ResourceInDataset> out = Flowable.just(
+                    createRecord(1, "h1", "2020-01-01T10:59:00Z"),
+                    createRecord(2, "h2", "2020-01-01T11:01:00Z"))
+                .compose(LsqMergeOps.summarizeConsecutive())
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(1, out.size());
+        Model m = out.get(0).getDataset().getNamedModel(queryIri);
+        LsqQuery q = m.createResource(queryIri).as(LsqQuery.class);
+
+        // The executions and the resources only they refer to are gone
+        Assert.assertTrue(q.getRemoteExecutions().isEmpty());
+        Assert.assertFalse(m.containsResource(m.createResource(queryIri + "-re1")));
+        Assert.assertFalse(m.contains(null, m.createProperty("http://example.org/userAgent"), (RDFNode)null));
+
+        // The header and the resources it shares with the executions survive
+        Assert.assertEquals("SELECT * { ?s ?p ?o }", q.getText());
+        Assert.assertTrue(m.contains(m.createResource("http://lsq.aksw.org/shared"), RDFS.label, "shared"));
+
+        RemoteExecutionSummary summary = q.getRemoteExecSummary();
+        Assert.assertEquals(2l, (long)summary.getExecCount());
+        Assert.assertEquals(2l, (long)summary.getDistinctHostCount());
+        Assert.assertEquals(Instant.parse("2020-01-01T10:59:00Z"), summary.getFirstSeen().toInstant());
+        Assert.assertEquals(Instant.parse("2020-01-01T11:01:00Z"), summary.getLastSeen().toInstant());
+
+        // UTC hour binning
+        Map<Instant, Long> bins = summary.getHourlyCounts().stream()
+                .collect(Collectors.toMap(b -> b.getHour().toInstant(), RemoteExecutionHourCount::getExecCount));
+        Assert.assertEquals(Map.of(
+                Instant.parse("2020-01-01T10:00:00Z"), 1l,
+                Instant.parse("2020-01-01T11:00:00Z"), 1l), bins);
+    }
+}
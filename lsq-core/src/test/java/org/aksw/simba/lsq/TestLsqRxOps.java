@@ -0,0 +1,97 @@
+package org.aksw.simba.lsq;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.aksw.simba.lsq.core.rx.LsqRxOps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+public class TestLsqRxOps {
+
+    protected static void sleepRandomly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Batches finish out of order but the items are emitted in the order of the input */
+    @Test(timeout = 30000)
+    public void testOrderRetained() {
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        List<Integer> actual = Flowable.range(0, 500)
+                .compose(LsqRxOps.<Integer, Integer>mapParallelOrdered(i -> {
+                    threadNames.add(Thread.currentThread().getName());
+                    sleepRandomly();
+                    return i * 2;
+                }, 4, 3))
+                .toList()
+                .blockingGet();
+
+        List<Integer> expected = IntStream.range(0, 500).map(i -> i * 2).boxed().collect(Collectors.toList());
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(threadNames.stream().allMatch(name -> name.startsWith("lsq-worker-")));
+    }
+
+    @Test(timeout = 30000)
+    public void testNullsDropped() {
+        for (int parallelism : new int[] { 1, 4 }) {
+            List<Integer> actual = Flowable.range(0, 100)
+                    .compose(LsqRxOps.<Integer, Integer>mapParallelOrdered(i -> i % 3 == 0 ? i : null, parallelism, 4))
+                    .toList()
+                    .blockingGet();
+
+            List<Integer> expected = IntStream.range(0, 100).filter(i -> i % 3 == 0).boxed().collect(Collectors.toList());
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    /** A failure in one batch must terminate the flow with that error and cancel the (otherwise endless) upstream */
+    @Test(timeout = 30000)
+    public void testErrorCancelsPipeline() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flowable.range(0, Integer.MAX_VALUE)
+                .doOnCancel(() -> cancelled.set(true))
+                .compose(LsqRxOps.<Integer, Integer>mapParallelOrdered(i -> {
+                    if (i == 100) {
+                        throw new IllegalStateException("test failure");
+                    }
+                    sleepRandomly();
+                    return i;
+                }, 4, 8))
+                .test()
+                .awaitDone(20, TimeUnit.SECONDS)
+                .assertError(e -> e instanceof IllegalStateException && "test failure".equals(e.getMessage()))
+                .assertNotComplete();
+
+        Assert.assertTrue(cancelled.get());
+    }
+
+    @Test
+    public void testSequentialOnCallingThread() {
+        Thread caller = Thread.currentThread();
+        for (int parallelism : new int[] { -1, 0, 1 }) {
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            List<Integer> actual = Flowable.range(0, 100)
+                    .compose(LsqRxOps.<Integer, Integer>mapParallelOrdered(i -> {
+                        threads.add(Thread.currentThread());
+                        return i;
+                    }, parallelism))
+                    .toList()
+                    .blockingGet();
+
+            Assert.assertEquals(100, actual.size());
+            Assert.assertEquals(Set.of(caller), threads);
+        }
+    }
+}
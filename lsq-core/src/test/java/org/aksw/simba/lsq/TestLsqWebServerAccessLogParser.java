@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 import org.aksw.simba.lsq.parser.Mapper;
 import org.aksw.simba.lsq.parser.StringMapper;
 import org.aksw.simba.lsq.parser.WebLogParser;
+import org.aksw.simba.lsq.parser.WebLogRecord;
 import org.aksw.simba.lsq.vocab.LSQ;
 import org.aksw.simba.lsq.vocab.PROV;
 import com.google.common.reflect.ClassPath;
@@ -68,6 +69,12 @@ public class TestLsqWebServerAccessLogParser {
     				Resource x = ModelFactory.createDefaultModel().createResource();
     				mapper.parse(x, line);
 
+    				// Parsing into a plain record must yield the same RDF
+    				WebLogRecord record = new WebLogRecord();
+    				mapper.parse(record, line);
+    				Resource y = record.copyInto(ModelFactory.createDefaultModel().createResource());
+    				Assert.assertTrue("Record based parsing differs for: " + line, x.getModel().isIsomorphicWith(y.getModel()));
+
 //    				RDFDataMgr.write(System.out, x.getModel(), RDFFormat.TURTLE);
 //
 //    				WebLogParser.extractQuery(x);
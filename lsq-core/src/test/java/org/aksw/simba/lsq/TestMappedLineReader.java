@@ -0,0 +1,94 @@
+package org.aksw.simba.lsq;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aksw.simba.lsq.core.rx.io.input.MappedLineReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Lines read with small mapping windows must be the same as those of {@link BufferedReader} */
+public class TestMappedLineReader {
+
+    protected static List<String> readExpected(String content) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    protected static List<String> readMapped(Path file, int windowSize) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, 0, Files.size(file), windowSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    protected static void assertSameAsBufferedReader(String content) throws Exception {
+        Path file = Files.createTempFile("lsq-mapped-", ".txt");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            List<String> expected = readExpected(content);
+            for (int windowSize : new int[] { 1, 2, 3, 4, 5, 7, 16 }) {
+                Assert.assertEquals("window size " + windowSize, expected, readMapped(file, windowSize));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLinesLongerThanWindow() throws Exception {
+        assertSameAsBufferedReader("a\n" + "b".repeat(50) + "\nc\n" + "d".repeat(100));
+    }
+
+    /** With the given window sizes some "\r\n" terminators are split across two windows */
+    @Test
+    public void testCrLfAcrossWindows() throws Exception {
+        assertSameAsBufferedReader("ab\r\ncd\r\n\r\nefg\r\nh\r\n");
+        assertSameAsBufferedReader("a\rb\r\r\nc\r");
+    }
+
+    /** Multi-byte characters must not be split where windows end */
+    @Test
+    public void testMultiByteAcrossWindows() throws Exception {
+        assertSameAsBufferedReader("ä€\n€€x\r\n𝄞a𝄞\rxä\n€");
+    }
+
+    @Test
+    public void testSubRange() throws Exception {
+        String content = "skip\nab\r\ncd€\nskip";
+        Path file = Files.createTempFile("lsq-mapped-", ".txt");
+        try {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            Files.write(file, bytes);
+            int start = "skip\n".length();
+            int end = bytes.length - "skip".length();
+            for (int windowSize : new int[] { 1, 3, 64 }) {
+                List<String> actual = new ArrayList<>();
+                try (MappedLineReader reader = new MappedLineReader(file, start, end, windowSize)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        actual.add(line);
+                    }
+                }
+                Assert.assertEquals(List.of("ab", "cd€"), actual);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.aksw.simba.lsq;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.aksw.simba.lsq.core.io.output.ShardedDatasetWriter;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+public class TestShardedDatasetWriter {
+
+    protected static Dataset createRecord(int i, int payloadLength) {
+        Node g = NodeFactory.createURI("http://lsq.aksw.org/q-" + i);
+        StringBuilder payload = new StringBuilder();
+        for (int j = 0; j < payloadLength; ++j) {
+            payload.append((char)('a' + (i * 31 + j * 17) % 26));
+        }
+
+        Dataset result = DatasetFactory.create();
+        result.asDatasetGraph().add(new Quad(g, g, NodeFactory.createURI("http://lsq.aksw.org/vocab#text"),
+                NodeFactory.createLiteralString(payload.toString())));
+        return result;
+    }
+
+    protected static List<Path> listFiles(Path folder) throws Exception {
+        try (var stream = Files.list(folder)) {
+            return stream.sorted().collect(Collectors.toList());
+        }
+    }
+
+    protected static InputStream open(Path file) throws Exception {
+        InputStream in = Files.newInputStream(file);
+        String name = file.getFileName().toString();
+        InputStream result = name.endsWith(".gz")
+                ? new GZIPInputStream(in)
+                : name.endsWith(".zst")
+                    ? new ZstdInputStream(in)
+                    : in;
+        return result;
+    }
+
+    /** Read back the records of a file; for RDF formats the whole file is read into a single dataset */
+    protected static List<Dataset> readShard(Path file, RDFFormat rdfFormat) throws Exception {
+        List<Dataset> result = new ArrayList<>();
+        if (rdfFormat == null) {
+            LsqBinaryRdf.iterateDatasets(open(file)).forEachRemaining(result::add);
+        } else {
+            Dataset ds = DatasetFactory.create();
+            try (InputStream in = open(file)) {
+                RDFDataMgr.read(ds, in, rdfFormat.getLang());
+            }
+            result.add(ds);
+        }
+        return result;
+    }
+
+    protected static int shardOfFile(Path file) {
+        // part-[shard]-[part].[ext]
+        return Integer.parseInt(file.getFileName().toString().substring(5, 10));
+    }
+
+    @Test
+    public void testShardOf() {
+        int numShards = 7;
+        int[] counts = new int[numShards];
+        for (int i = 0; i < 7000; ++i) {
+            String key = "http://lsq.aksw.org/q-" + i;
+            int shard = ShardedDatasetWriter.shardOf(key, numShards);
+            Assert.assertTrue(shard >= 0 && shard < numShards);
+            Assert.assertEquals(shard, ShardedDatasetWriter.shardOf(key, numShards));
+            ++counts[shard];
+        }
+
+        // Every shard receives a share of the keys
+        for (int count : counts) {
+            Assert.assertTrue(count > 0);
+        }
+
+        Assert.assertEquals(0, ShardedDatasetWriter.shardOf("anything", 1));
+    }
+
+    @Test
+    public void testParseShardSize() {
+        Assert.assertEquals(1000l, ShardedDatasetWriter.parseShardSize("1000"));
+        Assert.assertEquals(512l << 20, ShardedDatasetWriter.parseShardSize("512M"));
+        Assert.assertEquals(1l << 30, ShardedDatasetWriter.parseShardSize("1g"));
+        Assert.assertEquals(0l, ShardedDatasetWriter.parseShardSize("0"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> ShardedDatasetWriter.parseShardSize("50%"));
+    }
+
+    @Test
+    public void testRejectNonStreamingFormat() throws Exception {
+        Path folder = Files.createTempDirectory("lsq-shard-test");
+        Assert.assertFalse(ShardedDatasetWriter.isSupportedFormat(RDFFormat.TURTLE_PRETTY));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> new ShardedDatasetWriter(folder, 1, RDFFormat.TURTLE_PRETTY, null, 0));
+    }
+
+    /** A single shard with a small size limit must roll over into several parts without losing records */
+    @Test
+    public void testRollover() throws Exception {
+        Path folder = Files.createTempDirectory("lsq-shard-test");
+        int n = 200;
+
+        ShardedDatasetWriter writer = new ShardedDatasetWriter(folder, 1, RDFFormat.NQUADS, ShardedDatasetWriter.COMPRESSION_NONE, 100 * 1024);
+        try {
+            for (int i = 0; i < n; ++i) {
+                writer.write(createRecord(i, 10000));
+            }
+        } finally {
+            writer.close();
+        }
+
+        List<Path> files = listFiles(folder);
+        Assert.assertTrue(files.size() > 1);
+
+        long quadCount = 0;
+        for (Path file : files) {
+            Assert.assertEquals(0, shardOfFile(file));
+            for (Dataset ds : readShard(file, RDFFormat.NQUADS)) {
+                quadCount += Iter.count(ds.asDatasetGraph().find());
+            }
+        }
+        // Each record consists of a single quad
+        Assert.assertEquals(n, quadCount);
+    }
+
+    protected static void assertRoundTrip(RDFFormat rdfFormat, String compression) throws Exception {
+        Path folder = Files.createTempDirectory("lsq-shard-test");
+        int numShards = 3;
+        List<Dataset> records = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            records.add(createRecord(i, 100));
+        }
+
+        ShardedDatasetWriter writer = new ShardedDatasetWriter(folder, numShards, rdfFormat, compression, 0);
+        try {
+            records.forEach(writer::write);
+        } finally {
+            writer.close();
+        }
+
+        DatasetGraph expected = DatasetFactory.create().asDatasetGraph();
+        records.forEach(ds -> ds.asDatasetGraph().find().forEachRemaining(expected::add));
+
+        DatasetGraph actual = DatasetFactory.create().asDatasetGraph();
+        for (Path file : listFiles(folder)) {
+            int shard = shardOfFile(file);
+            for (Dataset ds : readShard(file, rdfFormat)) {
+                ds.asDatasetGraph().listGraphNodes().forEachRemaining(g ->
+                    Assert.assertEquals(shard, ShardedDatasetWriter.shardOf(g.toString(), numShards)));
+                ds.asDatasetGraph().find().forEachRemaining(actual::add);
+            }
+        }
+
+        Assert.assertTrue(IsoMatcher.isomorphic(expected, actual));
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        assertRoundTrip(RDFFormat.NQUADS, ShardedDatasetWriter.COMPRESSION_GZIP);
+        assertRoundTrip(RDFFormat.NQUADS, ShardedDatasetWriter.COMPRESSION_ZSTD);
+        assertRoundTrip(null, ShardedDatasetWriter.COMPRESSION_GZIP);
+        assertRoundTrip(null, ShardedDatasetWriter.COMPRESSION_ZSTD);
+    }
+}
@@ -0,0 +1,49 @@
+package org.aksw.simba.lsq;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aksw.simba.lsq.core.rx.io.input.SparqlQuerySplitter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSparqlQuerySplitter {
+
+    public static List<String> split(String str) {
+        List<String> result = new ArrayList<>();
+        new SparqlQuerySplitter(new StringReader(str)).forEachRemaining(s -> result.add(s.trim()));
+        return result;
+    }
+
+    @Test
+    public void testSplitQueries() {
+        List<String> expected = Arrays.asList(
+                "PREFIX ex: <http://ex.org/> SELECT * { ?s ex:p ?o }",
+                "ASK { ?s ?p \"SELECT }\" }",
+                "BASE <http://ex.org/>\nCONSTRUCT { ?s ?p ?o } WHERE { { SELECT ?s { ?s ?p ?o } } FILTER(?o < 5 && ?o >= 1) }",
+                "DESCRIBE ?select WHERE { ?select :ask '''multi\nline { SELECT''' } # SELECT in comment\nLIMIT 10",
+                "SELECT ?x { ?x <http://ex.org/a?b> ?y }");
+
+        String input = String.join("\n\n", expected);
+        Assert.assertEquals(expected, split(input));
+    }
+
+    @Test
+    public void testCommentsOnly() {
+        Assert.assertEquals(Arrays.asList(), split("# SELECT * { ?s ?p ?o }\n\n  # ASK {}\n"));
+    }
+
+    @Test
+    public void testSemicolonSeparator() {
+        Assert.assertEquals(
+                Arrays.asList("SELECT * { ?s ?p ?o }", "SELECT * { ?s ?p ?o ; ?q ?r }"),
+                split("SELECT * { ?s ?p ?o } ; ; SELECT * { ?s ?p ?o ; ?q ?r }"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMaxStatementLength() {
+        new SparqlQuerySplitter(new StringReader("SELECT * { ?s ?p ?o }"), 10).next();
+    }
+}
@@ -47,6 +47,8 @@ import org.aksw.jenax.reprogen.hashid.HashIdCxt;
 import org.aksw.jenax.sparql.query.rx.SparqlRx;
 import org.aksw.jenax.sparql.rx.op.FlowOfQuadsOps;
 import org.aksw.simba.lsq.core.util.SkolemizeBackport;
+import org.aksw.simba.lsq.enricher.core.LsqEnricherShell;
+import org.aksw.simba.lsq.enricher.core.LsqQueryContext;
 import org.aksw.simba.lsq.model.ExperimentConfig;
 import org.aksw.simba.lsq.model.ExperimentExec;
 import org.aksw.simba.lsq.model.ExperimentRun;
@@ -179,7 +181,7 @@ public class LsqBenchmarkProcessor {
            ExperimentConfig expConfig,
            ExperimentExec expExec,
            ExperimentRun expRun,
-           Function<Resource, Resource> enricher,
+           Function<LsqQuery, LsqQueryContext> enricher,
            SparqlQueryConnection benchmarkConn,
            RDFConnection indexConn) {
        Flowable<ResourceInDataset> flowable = processCore(rawQueryFlow, lsqBaseIri, expConfig, expExec, expRun, enricher, benchmarkConn, indexConn);
@@ -197,6 +199,8 @@ public class LsqBenchmarkProcessor {
      * @param expSuffix A suffix to be appended to the automatically derived query hashes
      *        in order to generate the full id used for database lookup (and possibly update)
      *        of benchmark information
+     * @param enricher Enricher that returns the context of the enriched query - such as {@link LsqEnricherShell#getContextual()} -
+     *        so that the query is not parsed again for benchmarking
      * @param benchmarkConn The connection on which to perform benchmarking
      */
     public static Flowable<ResourceInDataset> processCore(
@@ -205,7 +209,7 @@ public class LsqBenchmarkProcessor {
             ExperimentConfig expConfig,
             ExperimentExec expExec,
             ExperimentRun expRun,
-            Function<Resource, Resource> enricher,
+            Function<LsqQuery, LsqQueryContext> enricher,
             SparqlQueryConnection benchmarkConn,
             RDFConnection indexConn) {
 
@@ -234,12 +238,12 @@ public class LsqBenchmarkProcessor {
 
 //        Flowable<List<Set<LsqQuery>>> queryFlow = RDFDataMgrRx.createFlowableResources("../tmp/2020-06-27-wikidata-one-day.trig", Lang.TRIG, null)
 //                Flowable<List<Set<LsqQuery>>> queryFlow = RDFDataMgrRx.createFlowableResources("../tmp/saleem.trig", Lang.TRIG, null)
-        Flowable<List<Set<LsqQuery>>> queryFlow = rawQueryFlow
+        Flowable<List<Set<LsqQueryContext>>> queryFlow = rawQueryFlow
 //                .map(r -> r.as(LsqQuery.class))
 //                .skip(1)
 //                .take(1)
                 .concatMapMaybe(lsqQuery -> {
-                    Maybe<LsqQuery> r = safeMaybe(() -> enricher.apply(lsqQuery).as(LsqQuery.class));
+                    Maybe<LsqQueryContext> r = safeMaybe(() -> enricher.apply(lsqQuery));
                     return r;
                 })
                 /*
@@ -257,7 +261,7 @@ public class LsqBenchmarkProcessor {
                 //.flatMap(lsqQuery -> Flowable.fromIterable(extractAllQueries(lsqQuery)), false, 128)
                 //.map(lsqQuery -> extractAllQueries(lsqQuery))
                 //.map(batch -> benchmarkSecondaryQueries ? batch : Collections.singleton(batch.iterator().next()))
-                .map(lsqQuery -> benchmarkSecondaryQueries ? extractAllQueries(lsqQuery) : Collections.singleton(lsqQuery))
+                .map(cxt -> benchmarkSecondaryQueries ? extractAllQueryContexts(cxt) : Collections.singleton(cxt))
 //                .doAfterNext(lsqQuery -> lsqQuery.updateHash())
 //                .doOnNext(r -> ResourceUtils.renameResource(r, "http://lsq.aksw.org/q-" + r.getHash()).as(LsqQuery.class))
 //                .lift(OperatorObserveThroughput.create("throughput", 100))
@@ -279,12 +283,12 @@ public class LsqBenchmarkProcessor {
         });
 
         if (false) {
-            Iterable<List<Set<LsqQuery>>> batches = queryFlow.blockingIterable();
-            Iterator<List<Set<LsqQuery>>> itBatches = batches.iterator();
+            Iterable<List<Set<LsqQueryContext>>> batches = queryFlow.blockingIterable();
+            Iterator<List<Set<LsqQueryContext>>> itBatches = batches.iterator();
 
             // Create a database to ensure uniqueness of evaluation tasks
             while(itBatches.hasNext()) {
-                List<Set<LsqQuery>> batch = itBatches.next();
+                List<Set<LsqQueryContext>> batch = itBatches.next();
                 List<ResourceInDataset> items = processBatchOfQueries(
                         batch,
                         lsqBaseIri,
@@ -368,7 +372,7 @@ public class LsqBenchmarkProcessor {
     }
 
     public static List<ResourceInDataset> processBatchOfQueries(
-            List<Set<LsqQuery>> batch,
+            List<Set<LsqQueryContext>> batch,
             String lsqBaseIri,
             ExperimentConfig expConfig,
             ExperimentExec expExec,
@@ -383,10 +387,10 @@ public class LsqBenchmarkProcessor {
         // Combine the query hash and the exprRun id to form the benchmark task id.
         List<ResourceInDataset> result = new ArrayList<>();
 
-        Map<Node, LsqQuery> inputTasks = new HashMap<>();
-        for (Set<LsqQuery> queries : batch) {
-            for (LsqQuery query : queries) {
-                String taskIdStr = lsqQueryExecFn.apply(query);
+        Map<Node, LsqQueryContext> inputTasks = new HashMap<>();
+        for (Set<LsqQueryContext> queries : batch) {
+            for (LsqQueryContext query : queries) {
+                String taskIdStr = lsqQueryExecFn.apply(query.getLsqQuery());
                 Node taskId = NodeFactory.createURI(taskIdStr);
                 if (inputTasks.containsKey(taskId)) {
                     throw new RuntimeException("Task already exists: " + taskId);
@@ -403,19 +407,28 @@ public class LsqBenchmarkProcessor {
         // Obtain the set of query strings already in the store
         Set<String> completedTaskIds = taskIdToDataset.keySet();
 
-        Map<Node, LsqQuery> pendingTasks = inputTasks.entrySet().stream()// batch.stream()
+        Map<Node, LsqQueryContext> pendingTasks = inputTasks.entrySet().stream()// batch.stream()
             .filter(e -> !completedTaskIds.contains(e.getKey().toString()))
             .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
 
         List<Quad> inserts = new ArrayList<>();
 
-        for (Entry<Node, LsqQuery> task : pendingTasks.entrySet()) {
+        for (Entry<Node, LsqQueryContext> task : pendingTasks.entrySet()) {
             Node queryExecId = task.getKey();
             String queryExecIri = queryExecId.getURI();
 
-            LsqQuery lsqQuery = task.getValue();
+            LsqQueryContext cxt = task.getValue();
+            LsqQuery lsqQuery = cxt.getLsqQuery();
             String queryStr = lsqQuery.getText();
 
+            // Reuse the query parsed during enrichment; on failure the benchmark re-attempts parsing and skips the query
+            Query parsedQuery;
+            try {
+                parsedQuery = cxt.getQuery();
+            } catch (Exception e) {
+                parsedQuery = null;
+            }
+
             Model newModel = ModelFactory.createDefaultModel();
             LsqQuery newLsqQuery = lsqQuery.inModel(newModel).as(LsqQuery.class);
 
@@ -426,6 +439,7 @@ public class LsqBenchmarkProcessor {
             rdfizeQueryExecutionBenchmark(
                     benchmarkConn,
                     queryStr,
+                    parsedQuery,
                     newQueryExec,
                     expConfig.getConnectionTimeoutForRetrieval(),
                     expConfig.getExecutionTimeoutForRetrieval(),
@@ -465,7 +479,8 @@ public class LsqBenchmarkProcessor {
 
         // Txn.executeRead(indexConn, () -> System.out.println(ResultSetFormatter.asText(indexConn.query("SELECT ?s { ?s ?p ?o }").execSelect())));
 
-        for(Set<LsqQuery> pack : batch) {
+        for(Set<LsqQueryContext> cxtPack : batch) {
+            List<LsqQuery> pack = cxtPack.stream().map(LsqQueryContext::getLsqQuery).collect(Collectors.toList());
 
             logger.info("Processing pack of size: " + pack.size());
             // TODO Move all the code into a nice processPack method of a new class
@@ -591,6 +606,19 @@ public class LsqBenchmarkProcessor {
      * @param primaryQuery
      * @return
      */
+    /**
+     * Variant of {@link #extractAllQueries(LsqQuery)} that retains the context of the primary query.
+     * The secondary queries obtain fresh contexts.
+     */
+    public static Set<LsqQueryContext> extractAllQueryContexts(LsqQueryContext primaryCxt) {
+        LsqQuery primaryQuery = primaryCxt.getLsqQuery();
+        Set<LsqQueryContext> result = new LinkedHashSet<>();
+        for (LsqQuery q : extractAllQueries(primaryQuery)) {
+            result.add(q.equals(primaryQuery) ? primaryCxt : new LsqQueryContext(q));
+        }
+        return result;
+    }
+
     public static Set<LsqQuery> extractAllQueries(LsqQuery primaryQuery) {
         Set<LsqQuery> result = new LinkedHashSet<>();
 
@@ -698,6 +726,36 @@ public class LsqBenchmarkProcessor {
                Long rawMaxCount,
                Boolean rawMaxCountAffectsTp
                ) {
+           return rdfizeQueryExecutionBenchmark(conn, queryStr, null, result,
+                   rawConnectionTimeoutForRetrieval, rawExecutionTimeoutForRetrieval,
+                   rawMaxResultCountForCounting, rawMaxByteSizeForCounting,
+                   rawMaxResultCountForSerialization, rawMaxByteSizeForSerialization,
+                   rawConnectionTimeoutForCounting, rawExecutionTimeoutForCounting,
+                   rawMaxCount, rawMaxCountAffectsTp);
+       }
+
+       /**
+        * Variant that accepts an already parsed query - such as the one of a {@link org.aksw.simba.lsq.enricher.core.LsqQueryContext} -
+        * in order to avoid parsing the query string again.
+        *
+        * @param parsedQuery The parsed form of queryStr; parsed from queryStr if null. Not modified.
+        */
+       public static QueryExec rdfizeQueryExecutionBenchmark(
+               SparqlQueryConnection conn,
+               String queryStr,
+               Query parsedQuery,
+               QueryExec result,
+               BigDecimal rawConnectionTimeoutForRetrieval,
+               BigDecimal rawExecutionTimeoutForRetrieval,
+               Long rawMaxResultCountForCounting,
+               Long rawMaxByteSizeForCounting,
+               Long rawMaxResultCountForSerialization,
+               Long rawMaxByteSizeForSerialization,
+               BigDecimal rawConnectionTimeoutForCounting,
+               BigDecimal rawExecutionTimeoutForCounting,
+               Long rawMaxCount,
+               Boolean rawMaxCountAffectsTp
+               ) {
 
 
            long connectionTimeoutForRetrieval = Optional.ofNullable(rawConnectionTimeoutForRetrieval)
@@ -733,13 +791,15 @@ public class LsqBenchmarkProcessor {
 
            result.setTimestamp(xsdDateTime);
 
-           Query query;
+           Query query = parsedQuery;
 
-           try {
-               query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
-           } catch (Exception e) {
-               logger.warn("Skipping benchmark because query failed to parse", e);
-               return result;
+           if (query == null) {
+               try {
+                   query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
+               } catch (Exception e) {
+                   logger.warn("Skipping benchmark because query failed to parse", e);
+                   return result;
+               }
            }
 
            // TODO For COUNT queries add the LSQ.countValue to the output model
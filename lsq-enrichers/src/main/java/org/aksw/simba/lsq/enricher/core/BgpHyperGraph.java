@@ -0,0 +1,198 @@
+package org.aksw.simba.lsq.enricher.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * An in-memory directed hypergraph over the triple patterns of a basic graph pattern.
+ *
+ * Every distinct node of the BGP becomes a vertex with a dense integer id (in order of first appearance)
+ * and every triple pattern becomes an edge from its subject to its predicate and object.
+ * The degrees and the incidences (i.e. the triple patterns that mention a vertex) are computed in a single
+ * pass over the triple patterns and held in int arrays - so even BGPs with hundreds of triple patterns
+ * are analyzed in linear time without materializing the hypergraph as RDF.
+ *
+ * Degrees follow the conventions of the former RDF based hypergraph: the subject of a triple pattern
+ * has an out edge, its predicate and object have in edges - counted only once if predicate and object are equal.
+ *
+ * @author raven
+ *
+ */
+public class BgpHyperGraph {
+    protected Node[] vertexToNode;
+    protected Map<Node, Integer> nodeToVertex;
+
+    protected int[] inDegree;
+    protected int[] outDegree;
+
+    /** The triple patterns (edges) that mention a vertex are incidence[incidenceOffset[v] .. incidenceOffset[v + 1]) */
+    protected int[] incidenceOffset;
+    protected int[] incidence;
+
+    protected int edgeCount;
+
+    protected BgpHyperGraph() {
+        super();
+    }
+
+    public static BgpHyperGraph create(List<Triple> triples) {
+        int n = triples.size();
+        Map<Node, Integer> nodeToVertex = new HashMap<>(n * 2);
+
+        // Pass 1: Allocate vertex ids and count degrees and incidences
+        int[] spo = new int[n * 3];
+        int[] in = new int[n * 3];
+        int[] out = new int[n * 3];
+        int[] incidenceCount = new int[n * 3];
+        Node[] vertexToNode = new Node[n * 3];
+
+        for (int i = 0; i < n; ++i) {
+            Triple t = triples.get(i);
+            int s = vertexId(nodeToVertex, vertexToNode, t.getSubject());
+            int p = vertexId(nodeToVertex, vertexToNode, t.getPredicate());
+            int o = vertexId(nodeToVertex, vertexToNode, t.getObject());
+
+            spo[3 * i] = s;
+            spo[3 * i + 1] = p;
+            spo[3 * i + 2] = o;
+
+            ++out[s];
+            ++in[p];
+            if (o != p) {
+                ++in[o];
+            }
+
+            ++incidenceCount[s];
+            if (p != s) {
+                ++incidenceCount[p];
+            }
+            if (o != s && o != p) {
+                ++incidenceCount[o];
+            }
+        }
+
+        int vertexCount = nodeToVertex.size();
+
+        // Pass 2: Fill the incidence lists; each triple pattern appears at most once per vertex
+        int[] offset = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; ++v) {
+            offset[v + 1] = offset[v] + incidenceCount[v];
+        }
+
+        int[] incidence = new int[offset[vertexCount]];
+        int[] pos = Arrays.copyOf(offset, vertexCount);
+        for (int i = 0; i < n; ++i) {
+            int s = spo[3 * i];
+            int p = spo[3 * i + 1];
+            int o = spo[3 * i + 2];
+
+            incidence[pos[s]++] = i;
+            if (p != s) {
+                incidence[pos[p]++] = i;
+            }
+            if (o != s && o != p) {
+                incidence[pos[o]++] = i;
+            }
+        }
+
+        BgpHyperGraph result = new BgpHyperGraph();
+        result.vertexToNode = Arrays.copyOf(vertexToNode, vertexCount);
+        result.nodeToVertex = nodeToVertex;
+        result.inDegree = Arrays.copyOf(in, vertexCount);
+        result.outDegree = Arrays.copyOf(out, vertexCount);
+        result.incidenceOffset = offset;
+        result.incidence = incidence;
+        result.edgeCount = n;
+        return result;
+    }
+
+    protected static int vertexId(Map<Node, Integer> nodeToVertex, Node[] vertexToNode, Node node) {
+        Integer tmp = nodeToVertex.get(node);
+        int result;
+        if (tmp == null) {
+            result = nodeToVertex.size();
+            nodeToVertex.put(node, result);
+            vertexToNode[result] = node;
+        } else {
+            result = tmp;
+        }
+        return result;
+    }
+
+    public int getVertexCount() {
+        return vertexToNode.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public Node getNode(int vertex) {
+        return vertexToNode[vertex];
+    }
+
+    /** The vertex id of the given node; -1 if the node does not occur in the BGP */
+    public int getVertex(Node node) {
+        Integer tmp = nodeToVertex.get(node);
+        return tmp == null ? -1 : tmp;
+    }
+
+    public int getInDegree(int vertex) {
+        return inDegree[vertex];
+    }
+
+    public int getOutDegree(int vertex) {
+        return outDegree[vertex];
+    }
+
+    public int getDegree(int vertex) {
+        return inDegree[vertex] + outDegree[vertex];
+    }
+
+    /** Vertices that take part in more than one edge - and for consistency with the former implementation also isolated ones */
+    public boolean isJoinVertex(int vertex) {
+        return getDegree(vertex) != 1;
+    }
+
+    public Resource getJoinVertexType(int vertex) {
+        return QueryStatistics2.getJoinVertexType(inDegree[vertex], outDegree[vertex]);
+    }
+
+    /** The number of triple patterns that mention the given vertex */
+    public int getIncidenceCount(int vertex) {
+        return incidenceOffset[vertex + 1] - incidenceOffset[vertex];
+    }
+
+    /**
+     * The indices of the triple patterns that mention the given vertex - i.e. the vertex' sub-BGP -
+     * in the order of the triple patterns of the BGP.
+     */
+    public int[] getIncidentEdges(int vertex) {
+        return Arrays.copyOfRange(incidence, incidenceOffset[vertex], incidenceOffset[vertex + 1]);
+    }
+
+    /** The ids of all join vertices in ascending order */
+    public int[] getJoinVertices() {
+        int[] result = new int[getVertexCount()];
+        int n = 0;
+        for (int v = 0; v < result.length; ++v) {
+            if (isJoinVertex(v)) {
+                result[n++] = v;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** The degrees of all join vertices in ascending order */
+    public int[] getSortedJoinVertexDegrees() {
+        int[] result = Arrays.stream(getJoinVertices()).map(this::getDegree).toArray();
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package org.aksw.simba.lsq.enricher.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aksw.simba.lsq.spinx.model.Bgp;
+import org.aksw.simba.lsq.spinx.model.BgpNode;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+/**
+ * The {@link BgpHyperGraph}s of the bgps of a query.
+ *
+ * The hypergraph of a bgp is built once when its sub-bgps are created and is reused by the join vertex
+ * computation of the static analysis; the instance is shared via {@link LsqQueryContext#computeIfAbsent}.
+ * The entries refer to the bgps and bgp nodes by their nodes; as these resources are renamed in between,
+ * {@link #rename(Map)} has to be applied together with the renames of the model.
+ *
+ * @author raven
+ *
+ */
+public class BgpHyperGraphs {
+
+    /** The hypergraph of a bgp together with the triples it was built from and the bgp node of each vertex */
+    public static class Entry {
+        protected List<Triple> triples;
+        protected BgpHyperGraph hyperGraph;
+        protected Node[] vertexToBgpNode;
+
+        public Entry(List<Triple> triples, BgpHyperGraph hyperGraph, Node[] vertexToBgpNode) {
+            super();
+            this.triples = triples;
+            this.hyperGraph = hyperGraph;
+            this.vertexToBgpNode = vertexToBgpNode;
+        }
+
+        /** Create an entry; the bgp nodes must cover all nodes of the triples */
+        public static Entry create(List<Triple> triples, BgpHyperGraph hyperGraph, Map<Node, BgpNode> bgpNodes) {
+            Node[] vertexToBgpNode = new Node[hyperGraph.getVertexCount()];
+            for (int v = 0; v < vertexToBgpNode.length; ++v) {
+                BgpNode bgpNode = bgpNodes.get(hyperGraph.getNode(v));
+                vertexToBgpNode[v] = bgpNode == null ? null : bgpNode.asNode();
+            }
+            return new Entry(triples, hyperGraph, vertexToBgpNode);
+        }
+
+        public List<Triple> getTriples() {
+            return triples;
+        }
+
+        public BgpHyperGraph getHyperGraph() {
+            return hyperGraph;
+        }
+
+        /** The node of the bgp node resource of the given vertex */
+        public Node getBgpNode(int vertex) {
+            return vertexToBgpNode[vertex];
+        }
+    }
+
+    protected Map<Node, Entry> bgpToEntry = new HashMap<>();
+
+    /** The instance of the context; created on first demand */
+    public static BgpHyperGraphs get(LsqQueryContext cxt) {
+        return cxt.computeIfAbsent(BgpHyperGraphs.class, c -> new BgpHyperGraphs());
+    }
+
+    public Entry get(Bgp bgp) {
+        return bgpToEntry.get(bgp.asNode());
+    }
+
+    public void put(Bgp bgp, Entry entry) {
+        bgpToEntry.put(bgp.asNode(), entry);
+    }
+
+    /** Apply renames of bgp and bgp node resources to the entries */
+    public void rename(Map<Node, Node> renames) {
+        Map<Node, Entry> renamed = new HashMap<>(bgpToEntry.size());
+        for (Map.Entry<Node, Entry> e : bgpToEntry.entrySet()) {
+            Entry entry = e.getValue();
+            Node[] nodes = entry.vertexToBgpNode;
+            for (int v = 0; v < nodes.length; ++v) {
+                if (nodes[v] != null) {
+                    nodes[v] = renames.getOrDefault(nodes[v], nodes[v]);
+                }
+            }
+            renamed.put(renames.getOrDefault(e.getKey(), e.getKey()), entry);
+        }
+        bgpToEntry = renamed;
+    }
+}
@@ -6,4 +6,28 @@ import org.aksw.simba.lsq.model.LsqQuery;
 public interface LsqEnricher
     extends SerializableFunction<LsqQuery, LsqQuery> //LsqQuery, LsqQuery?
 {
+    /**
+     * Enrich the query of the given context. Enrichers that make use of the
+     * parsed query should override this method in order to reuse the context's parse result.
+     */
+    default LsqQuery enrich(LsqQueryContext cxt) {
+        return apply(cxt.getLsqQuery());
+    }
+
+    /** Create an enricher from a function that operates on a {@link LsqQueryContext} */
+    public static LsqEnricher of(SerializableFunction<LsqQueryContext, LsqQuery> fn) {
+        return new LsqEnricher() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public LsqQuery apply(LsqQuery lsqQuery) {
+                return fn.apply(new LsqQueryContext(lsqQuery));
+            }
+
+            @Override
+            public LsqQuery enrich(LsqQueryContext cxt) {
+                return fn.apply(cxt);
+            }
+        };
+    }
 }
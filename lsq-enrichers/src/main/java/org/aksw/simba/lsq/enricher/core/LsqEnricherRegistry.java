@@ -1,7 +1,9 @@
 package org.aksw.simba.lsq.enricher.core;import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /** A registry for {@link LsqEnricherFactory} instances. */
 public class LsqEnricherRegistry {
@@ -9,6 +11,9 @@ public class LsqEnricherRegistry {
     // Synchronized and insert-order-retaining
     protected Map<String, LsqEnricherFactory> registry = new ConcurrentSkipListMap<>();
 
+    /** Enrichers that only run when explicitly requested */
+    protected Set<String> optionalKeys = new ConcurrentSkipListSet<>();
+
     private static LsqEnricherRegistry INSTANCE = null;
 
     /** Return the global instance */
@@ -24,7 +29,16 @@ public class LsqEnricherRegistry {
     }
 
     public void register(String name, LsqEnricherFactory factory) {
+        register(name, factory, false);
+    }
+
+    public void register(String name, LsqEnricherFactory factory, boolean isOptional) {
         registry.put(name, factory);
+        if (isOptional) {
+            optionalKeys.add(name);
+        } else {
+            optionalKeys.remove(name);
+        }
     }
 
     public LsqEnricherFactory get(String name) {
@@ -43,6 +57,13 @@ public class LsqEnricherRegistry {
         return Collections.unmodifiableSet(registry.keySet());
     }
 
+    /** The keys of the enrichers that run unless excluded - i.e. all keys except for the optional ones */
+    public Set<String> getDefaultKeys() {
+        Set<String> result = new LinkedHashSet<>(registry.keySet());
+        result.removeAll(optionalKeys);
+        return Collections.unmodifiableSet(result);
+    }
+
     public static LsqEnricherRegistry createDefault() {
         LsqEnricherRegistry result = new LsqEnricherRegistry();
         initDefaults(result);
@@ -51,9 +72,12 @@ public class LsqEnricherRegistry {
 
     public static LsqEnricherRegistry initDefaults(LsqEnricherRegistry registry) {
         registry.register("none", () -> lsqQuery -> lsqQuery); // Identity mapping
-        registry.register("spin", () -> LsqEnrichments::enrichWithFullSpinModelCore);
-        registry.register("static", () -> LsqEnrichments::enrichWithStaticAnalysis);
-        registry.register("bbox", () -> LsqEnrichments::enrichWithBBox);
+        // The structural model (bgps, triple patterns, bgp nodes) needed by static analysis
+        registry.register("spin", () -> LsqEnricher.of(LsqEnrichments::enrichWithStructuralModelCore));
+        // Additionally attaches the complete SPIN representation of the query; slow
+        registry.register("spin-full", () -> LsqEnricher.of(LsqEnrichments::enrichWithFullSpinModelCore), true);
+        registry.register("static", () -> LsqEnricher.of(LsqEnrichments::enrichWithStaticAnalysis));
+        registry.register("bbox", () -> LsqEnricher.of(LsqEnrichments::enrichWithBBox));
         return registry;
     }
 }
@@ -1,12 +1,15 @@
 package org.aksw.simba.lsq.enricher.core;
 
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.aksw.commons.lambda.serializable.SerializableSupplier;
 import org.aksw.simba.lsq.core.util.SkolemizeBackport;
 import org.aksw.simba.lsq.model.LsqQuery;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
 import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,23 +51,42 @@ public class LsqEnricherShell
         };
     }
 
+    /** Wrap a context based enricher to log any exception */
+    public static <T> Function<LsqQueryContext, T> safeContextEnricher(Function<LsqQueryContext, T> enricher) {
+        return in -> {
+            T r = null;
+            try {
+                r = enricher.apply(in);
+            } catch (Exception e) {
+                logger.warn(String.format("Enrichment of %s failed", in.getLsqQuery().getText()), e);
+            }
+            return r;
+        };
+    }
+
     @Override
     public Function<Resource, Resource> get() {
+        Function<LsqQuery, LsqQueryContext> fn = getContextual();
+        return in -> fn.apply(in.as(LsqQuery.class)).getLsqQuery();
+    }
+
+    /**
+     * Return a function that enriches and skolemizes a query and returns a context for the skolemized query.
+     * The context carries over the parse result of the enrichers so that subsequent stages -
+     * such as benchmarking - do not need to parse the query again.
+     */
+    public Function<LsqQuery, LsqQueryContext> getContextual() {
         LsqEnricherRegistry registry = registrySupplier.get();
 
-        return in -> {
+        return q -> {
             // TODO Implement support for blacklisting
 
-             LsqQuery q = in.as(LsqQuery.class);
-             // TODO Parse query here only once
-             // Store it in a context object that gets passed to the enrichers?
-
+             Query parsedQuery = null;
              if (q.getParseError() == null) {
-                 for (String name : enricherNames) {
-                     LsqEnricherFactory f = registry.getOrThrow(name);
-                     LsqEnricher enricher = f.get();
-                     safeEnricher(enricher).apply(q);
-                 }
+                 // The query is parsed at most once and shared by all enrichers
+                 LsqQueryContext cxt = new LsqQueryContext(q);
+                 applyEnrichers(registry, cxt);
+                 parsedQuery = cxt.getQueryIfParsed();
 
                  // TODO Given enrichers a name
                  // TODO Track failed enrichments in the output? qualify error with enricher name?
@@ -75,9 +97,42 @@ public class LsqEnricherShell
 //                     safeEnricher(LsqEnrichments::enrichWithBBox).apply(q);
              }
 
-             // TODO createLsqRdfFlow already performs skolemize; duplicated effort
-             Resource out = SkolemizeBackport.skolemize(in, baseIri, LsqQuery.class, null);
-             return out.as(LsqQuery.class);
+             // TODO createLsqRdfFlow already performs skolemize; duplicated effort - see getDeferred()
+             LsqQuery out = SkolemizeBackport.skolemize(q, baseIri, LsqQuery.class, null);
+             return new LsqQueryContext(out, parsedQuery);
+        };
+    }
+
+    /**
+     * Return a function that enriches a not yet skolemized query and returns the renames of the resources
+     * created by the enrichers. The query and the renames are meant to be passed to a single final skolemization pass,
+     * such as the one of {@link org.aksw.simba.lsq.core.LsqRdfizer#rdfizeLogRecord(org.aksw.simba.lsq.core.LsqQueryCache, String, String, String, Function, Resource, Function)}.
+     */
+    public Function<LsqQuery, Map<Node, Node>> getDeferred() {
+        LsqEnricherRegistry registry = registrySupplier.get();
+
+        return q -> {
+            Map<Node, Node> result = Map.of();
+            if (q.getParseError() == null) {
+                LsqQueryContext cxt = new LsqQueryContext(q).setSkolemizationDeferred(true);
+
+                // The IRI that the query will obtain by skolemization
+                if (q.getHash() != null) {
+                    cxt.setQueryIri(baseIri + q.getStringId(null));
+                }
+
+                applyEnrichers(registry, cxt);
+                result = cxt.getPendingRenames();
+            }
+            return result;
         };
     }
+
+    protected void applyEnrichers(LsqEnricherRegistry registry, LsqQueryContext cxt) {
+        for (String name : enricherNames) {
+            LsqEnricherFactory f = registry.getOrThrow(name);
+            LsqEnricher enricher = f.get();
+            safeContextEnricher(enricher::enrich).apply(cxt);
+        }
+    }
 }
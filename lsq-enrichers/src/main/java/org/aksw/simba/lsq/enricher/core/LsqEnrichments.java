@@ -2,7 +2,10 @@ package org.aksw.simba.lsq.enricher.core;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -20,7 +23,6 @@ import org.aksw.jena_sparql_api.sparql.ext.geosparql.GeometryWrapperUtils;
 import org.aksw.jenax.arq.util.node.NodeTransformCollectNodes;
 import org.aksw.jenax.arq.util.syntax.ElementUtils;
 import org.aksw.jenax.arq.util.syntax.QueryUtils;
-import org.aksw.jenax.arq.util.triple.TripleUtils;
 import org.aksw.jenax.arq.util.var.Vars;
 import org.aksw.jenax.model.geosparql.HasGeometry;
 import org.aksw.jenax.reprogen.core.MapperProxyUtils;
@@ -39,34 +41,34 @@ import org.aksw.simba.lsq.spinx.model.LsqTriplePattern;
 import org.aksw.simba.lsq.spinx.model.SpinQueryEx;
 import org.aksw.simba.lsq.spinx.model.TpInBgp;
 import org.aksw.simba.lsq.util.ElementVisitorFeatureExtractor;
-import org.aksw.simba.lsq.util.NestedResource;
 import org.aksw.simba.lsq.vocab.LSQ;
 import org.apache.jena.geosparql.implementation.GeometryWrapper;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.out.NodeFmtLib;
 import org.apache.jena.shared.PrefixMapping;
 import org.apache.jena.sparql.algebra.Algebra;
 import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.BasicPattern;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.expr.ExprVar;
 import org.apache.jena.sparql.graph.NodeTransformLib;
 import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementService;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
 import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
 import org.apache.jena.sparql.util.FmtUtils;
 import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.RDFS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spinrdf.model.TriplePattern;
@@ -81,10 +83,15 @@ public class LsqEnrichments {
     private static final Logger logger = LoggerFactory.getLogger(LsqEnrichments.class);
 
     public static void enrichSpinBgpWithTpInBgp(Bgp bgp) {
+        enrichSpinBgpWithTpInBgp(bgp, bgp.getTriplePatterns());
+    }
+
+    /** Variant that takes the triple patterns of the bgp as an argument rather than reading them from the model */
+    public static void enrichSpinBgpWithTpInBgp(Bgp bgp, List<LsqTriplePattern> tps) {
         Map<LsqTriplePattern, TpInBgp> tpToTpInBgp = bgp.indexTps();
 
         Collection<TpInBgp> tpInBgps = bgp.getTpInBgp();
-        for(LsqTriplePattern tp : bgp.getTriplePatterns()) {
+        for(LsqTriplePattern tp : tps) {
             TpInBgp tpInBgp = tpToTpInBgp.get(tp);
             if(tpInBgp == null) {
                 tpInBgp = bgp.getModel().createResource().as(TpInBgp.class)
@@ -92,58 +99,86 @@ public class LsqEnrichments {
                     .setTriplePattern(tp);
 
                 tpInBgps.add(tpInBgp);
+                tpToTpInBgp.put(tp, tpInBgp);
             }
 
         }
     }
 
+    /**
+     * Create the tpInBgps, the extension queries and the sub-bgps of every bgp node.
+     *
+     * The triple patterns of a bgp are read from the model only once; the sub-bgp of a node is obtained from
+     * the incidences of a {@link BgpHyperGraph} rather than by testing every triple pattern.
+     * Bgps and sub-bgps with the same triple patterns share a single extension query.
+     */
     public static void enrichSpinBgpNodesWithSubBgpsAndQueries(BgpInfo bgpInfo, PrefixMapping prefixMapping) {
+        enrichSpinBgpNodesWithSubBgpsAndQueries(bgpInfo, prefixMapping, null);
+    }
+
+    /**
+     * @param hyperGraphs If not null then the hypergraph of each bgp is registered with it for reuse by
+     *        {@link #setUpJoinVertices(Bgp, BgpHyperGraphs)}
+     */
+    public static void enrichSpinBgpNodesWithSubBgpsAndQueries(BgpInfo bgpInfo, PrefixMapping prefixMapping, BgpHyperGraphs hyperGraphs) {
 
             boolean createQueryResources = true;
+
+            // Extension queries by the triples of (sub-)bgps - e.g. in a bgp with a single
+            // triple pattern, the bgp and the sub-bgps of all its nodes are the same
+            Map<List<Triple>, LsqQuery> extensionQueries = new HashMap<>();
+
+            // The content of the sub-bgps seen so far - a sub-bgp of a node that is shared between bgps
+            // is appended to once per bgp
+            Map<Node, List<LsqTriplePattern>> subBgpToTps = new HashMap<>();
+            Map<Node, List<Triple>> subBgpToTriples = new HashMap<>();
+
             for(Bgp bgp : bgpInfo.getBgps()) {
+                List<LsqTriplePattern> tps = new ArrayList<>(bgp.getTriplePatterns());
+                List<Triple> triples = tps.stream()
+                        .map(SpinCoreUtils::toJenaTriple)
+                        .collect(Collectors.toList());
 
-                LsqEnrichments.enrichSpinBgpWithTpInBgp(bgp);
+                BgpHyperGraph hyperGraph = BgpHyperGraph.create(triples);
+
+                LsqEnrichments.enrichSpinBgpWithTpInBgp(bgp, tps);
 
                 if(createQueryResources) {
-                    LsqEnrichments.enrichSpinBgpWithQuery(bgp, prefixMapping);
+                    LsqEnrichments.enrichSpinBgpWithQuery(bgp, triples, prefixMapping, extensionQueries);
                 }
 
                 // Enrich the bpg's triple patterns with extension queries
                 if(createQueryResources) {
-                    for(TriplePattern tp : bgp.getTriplePatterns()) {
-
-                        LsqTriplePattern ltp = tp.as(LsqTriplePattern.class);
+                    for(int i = 0; i < tps.size(); ++i) {
+                        LsqTriplePattern ltp = tps.get(i);
 
-                        Triple jenaTriple = ltp.toJenaTriple();
+                        Triple jenaTriple = triples.get(i);
                         ltp.setLabel(NodeFmtLib.str(jenaTriple));
-//                        if(jenaTriple.isConcrete()) {
-//                            System.out.println("Concrete triple: " + jenaTriple);
-//                        }
 
                         LsqQuery extensionQuery = ltp.getExtensionQuery();
                         if(extensionQuery == null) {
                             extensionQuery = ltp.getModel().createResource().as(LsqQuery.class);
 
-                            Query query = QueryUtils.elementToQuery(ElementUtils.createElementTriple(ltp.toJenaTriple()));
+                            Query query = QueryUtils.elementToQuery(ElementUtils.createElementTriple(jenaTriple));
                             if(prefixMapping != null) {
                                 query.setPrefixMapping(prefixMapping);
                                 QueryUtils.optimizePrefixes(query);
                             }
                             extensionQuery.setQueryAndHash(query);
                             ltp.setExtensionQuery(extensionQuery);
-
-                            // TODO The validation should not be necessary
-//                            LsqQuery test = ltp.getExtensionQuery();
-//                            Objects.requireNonNull(test);
-//                            System.out.println("Set: " + test);
                         }
                     }
                 }
 
                 Map<Node, BgpNode> bgpNodeMap = bgp.indexBgpNodes();
 
-                for(BgpNode bgpNode : bgpNodeMap.values()) {
-                    Node jenaNode = bgpNode.toJenaNode();
+                if(hyperGraphs != null) {
+                    hyperGraphs.put(bgp, BgpHyperGraphs.Entry.create(triples, hyperGraph, bgpNodeMap));
+                }
+
+                for(Entry<Node, BgpNode> e : bgpNodeMap.entrySet()) {
+                    Node jenaNode = e.getKey();
+                    BgpNode bgpNode = e.getValue();
 
                     // TODO Allow blank nodes?
 //                    if (jenaNode.isVariable()) {
@@ -154,7 +189,7 @@ public class LsqEnrichments {
                             if(extensionQuery == null) {
                                 extensionQuery = bgp.getModel().createResource().as(LsqQuery.class);
 
-                                Query query = QueryUtils.elementToQuery(new ElementTriplesBlock(bgp.toBasicPattern()));
+                                Query query = QueryUtils.elementToQuery(new ElementTriplesBlock(BasicPattern.wrap(triples)));
                                 query.setQueryResultStar(false);
                                 query.setDistinct(true);
                                 query.getProject().clear();
@@ -172,9 +207,16 @@ public class LsqEnrichments {
                             }
                         }
 
-                        List<LsqTriplePattern> subBgpTps = bgp.getTriplePatterns().stream()
-                                .filter(tp -> TripleUtils.streamNodes(SpinCoreUtils.toJenaTriple(tp)).collect(Collectors.toSet()).contains(jenaNode))
-                                .collect(Collectors.toList());
+                        int vertex = hyperGraph.getVertex(jenaNode);
+                        int[] edges = vertex < 0 ? new int[0] : hyperGraph.getIncidentEdges(vertex);
+
+                        List<LsqTriplePattern> subBgpTps = new ArrayList<>(edges.length);
+                        List<Triple> subBgpTriples = new ArrayList<>(edges.length);
+                        for(int edge : edges) {
+                            subBgpTps.add(tps.get(edge));
+                            subBgpTriples.add(triples.get(edge));
+                        }
+
                         // Do not generate empty subBgps
     //                    if(!subBgpTps.isEmpty()) {
 
@@ -183,17 +225,29 @@ public class LsqEnrichments {
                             if(subBgp == null) {
                                 subBgp = bgpNode.getModel().createResource().as(Bgp.class);
                                 bgpNode.setSubBgp(subBgp);
+                                subBgp.getTriplePatterns().addAll(subBgpTps);
+                            } else {
+                                // Append to a prior sub-bgp; only one that was not created here is read from the model
+                                Bgp priorSubBgp = subBgp;
+                                List<LsqTriplePattern> priorTps = subBgpToTps.computeIfAbsent(subBgp.asNode(),
+                                        n -> new ArrayList<>(priorSubBgp.getTriplePatterns()));
+                                List<Triple> priorTriples = subBgpToTriples.computeIfAbsent(subBgp.asNode(),
+                                        n -> new ArrayList<>(priorSubBgp.toBasicPattern().getList()));
+
+                                subBgp.getTriplePatterns().addAll(subBgpTps);
+                                priorTps.addAll(subBgpTps);
+                                priorTriples.addAll(subBgpTriples);
+
+                                subBgpTps = new ArrayList<>(priorTps);
+                                subBgpTriples = new ArrayList<>(priorTriples);
                             }
+                            subBgpToTps.putIfAbsent(subBgp.asNode(), new ArrayList<>(subBgpTps));
+                            subBgpToTriples.putIfAbsent(subBgp.asNode(), new ArrayList<>(subBgpTriples));
 
-                            Collection<LsqTriplePattern> dest = subBgp.getTriplePatterns();
-                            for(LsqTriplePattern tp : subBgpTps) {
-                                dest.add(tp);
-                            }
-
-                            LsqEnrichments.enrichSpinBgpWithTpInBgp(subBgp);
+                            LsqEnrichments.enrichSpinBgpWithTpInBgp(subBgp, subBgpTps);
 
                             if(createQueryResources && jenaNode.isVariable()) {
-                                LsqEnrichments.enrichSpinBgpWithQuery(subBgp, prefixMapping);
+                                LsqEnrichments.enrichSpinBgpWithQuery(subBgp, subBgpTriples, prefixMapping, extensionQueries);
                             }
                         }
 //                }
@@ -345,21 +399,38 @@ public class LsqEnrichments {
         }
 
     public static void enrichSpinBgpWithQuery(Bgp bgp, PrefixMapping prefixMapping) {
+        enrichSpinBgpWithQuery(bgp, bgp.toBasicPattern().getList(), prefixMapping, null);
+    }
+
+    /**
+     * Set the label and the extension query of a bgp with the given triples.
+     *
+     * @param extensionQueries An optional memo of extension queries by the triples of bgps; if present, the
+     *        extension query is shared with all other bgps having the same triples.
+     */
+    public static void enrichSpinBgpWithQuery(Bgp bgp, List<Triple> triples, PrefixMapping prefixMapping, Map<List<Triple>, LsqQuery> extensionQueries) {
         LsqQuery extensionQuery = bgp.getExtensionQuery();
         if(extensionQuery == null) {
-            extensionQuery = bgp.getModel().createResource().as(LsqQuery.class);
-
-            Element elt = new ElementTriplesBlock(bgp.toBasicPattern());
+            Element elt = new ElementTriplesBlock(BasicPattern.wrap(triples));
 
             // TODO Use a prefixed form?
             bgp.setLabel(elt.toString());
-            Query query = QueryUtils.elementToQuery(elt);
-            if(prefixMapping != null) {
-                query.setPrefixMapping(prefixMapping);
-                QueryUtils.optimizePrefixes(query);
-            }
 
-            extensionQuery.setQueryAndHash(query);
+            extensionQuery = extensionQueries == null ? null : extensionQueries.get(triples);
+            if(extensionQuery == null) {
+                extensionQuery = bgp.getModel().createResource().as(LsqQuery.class);
+
+                Query query = QueryUtils.elementToQuery(elt);
+                if(prefixMapping != null) {
+                    query.setPrefixMapping(prefixMapping);
+                    QueryUtils.optimizePrefixes(query);
+                }
+
+                extensionQuery.setQueryAndHash(query);
+                if(extensionQueries != null) {
+                    extensionQueries.put(triples, extensionQuery);
+                }
+            }
             bgp.setExtensionQuery(extensionQuery);
         }
     }
@@ -384,7 +455,12 @@ public class LsqEnrichments {
 //    }
 
     public static LsqQuery enrichWithFullSpinModelCore(LsqQuery lsqQuery) {
+        return enrichWithFullSpinModelCore(new LsqQueryContext(lsqQuery));
+    }
+
+    public static LsqQuery enrichWithFullSpinModelCore(LsqQueryContext cxt) {
     //        Maybe<LsqQuery> result;
+            LsqQuery lsqQuery = cxt.getLsqQuery();
 
             // Query query = QueryFactory.create("SELECT * {  { ?s a ?x ; ?p ?o } UNION { ?s ?j ?k } }");
             String queryStr = lsqQuery.getText();
@@ -392,7 +468,7 @@ public class LsqEnrichments {
 
             Query query;
             try {
-                query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
+                query = cxt.getQuery();
             } catch (Exception e) {
                 logger.error("Dumping LsqQuery with non-parseable sparql query string:");
                 // TODO Write to logger
@@ -417,7 +493,7 @@ public class LsqEnrichments {
 
             enrichSpinModelWithBgps(spinRes);
             enrichSpinBgpsWithNodes(spinRes);
-            enrichSpinBgpNodesWithSubBgpsAndQueries(spinRes, prefixMapping);
+            enrichSpinBgpNodesWithSubBgpsAndQueries(spinRes, prefixMapping, BgpHyperGraphs.get(cxt));
 
 
             // Add tpInBgp resources
@@ -460,10 +536,7 @@ public class LsqEnrichments {
 //                }
 //            }
 
-            String lsqBaseIri = "http://lsq.aksw.org/spin-";
-            HashIdCxt hashIdCxt = MapperProxyUtils.getHashId(spinRes);//.getHash(bgp);
-            Map<RDFNode, String> renames = hashIdCxt.getStringIdMapping();
-            ResourceUtils.renameResources(lsqBaseIri, renames);
+            renameSpinResources(cxt, spinRes);
 
 
     //        RDFDataMgr.write(System.out, lsqQuery.getModel(), RDFFormat.TURTLE_FLAT);
@@ -477,6 +550,64 @@ public class LsqEnrichments {
     }
 
 
+    public static LsqQuery enrichWithStructuralModelCore(LsqQuery lsqQuery) {
+        return enrichWithStructuralModelCore(new LsqQueryContext(lsqQuery));
+    }
+
+    /**
+     * Attach the bgps, triple patterns, tpInBgps and bgp nodes of the query - the parts of the
+     * spin model used by the static analysis - without creating the full spin model.
+     * The structure is built directly from the query's syntax tree with {@link LsqStructureBuilder};
+     * the resulting IRIs are obtained in the same way as in {@link #enrichWithFullSpinModelCore(LsqQueryContext)}.
+     */
+    public static LsqQuery enrichWithStructuralModelCore(LsqQueryContext cxt) {
+        LsqQuery lsqQuery = cxt.getLsqQuery();
+
+        Query query;
+        try {
+            query = cxt.getQuery();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("An LsqQuery with a non-parsable sparql query string was provided.", e);
+        }
+
+        PrefixMapping prefixMapping = query.getPrefixMapping();
+
+        String queryIri = cxt.getQueryIri();
+        String rootIri = queryIri == null ? null : queryIri + "-structure";
+        SpinQueryEx spinRes = lsqQuery.getModel().createResource(rootIri).as(SpinQueryEx.class);
+        LsqStructureBuilder.build(spinRes, query);
+
+        lsqQuery.setSpinQuery(spinRes);
+
+        enrichSpinBgpsWithNodes(spinRes);
+        enrichSpinBgpNodesWithSubBgpsAndQueries(spinRes, prefixMapping, BgpHyperGraphs.get(cxt));
+
+        renameSpinResources(cxt, spinRes);
+
+        return lsqQuery;
+    }
+
+    /**
+     * Assign IRIs to the resources reachable from a spin model root based on their hash ids.
+     * If skolemization is deferred then the renames are only registered with the context.
+     * Otherwise the {@link BgpHyperGraphs} of the context are renamed along with the model.
+     */
+    public static void renameSpinResources(LsqQueryContext cxt, Resource spinRes) {
+        String lsqBaseIri = "http://lsq.aksw.org/spin-";
+        HashIdCxt hashIdCxt = MapperProxyUtils.getHashId(spinRes);
+        if (cxt.isSkolemizationDeferred()) {
+            cxt.addPendingRenames(hashIdCxt.getNodeMapping(lsqBaseIri));
+        } else {
+            Map<RDFNode, String> renames = hashIdCxt.getStringIdMapping();
+            ResourceUtils.renameResources(lsqBaseIri, renames);
+
+            BgpHyperGraphs hyperGraphs = cxt.get(BgpHyperGraphs.class);
+            if (hyperGraphs != null) {
+                hyperGraphs.rename(hashIdCxt.getNodeMapping(lsqBaseIri));
+            }
+        }
+    }
+
     public static Resource skolemizeSpin(Resource spinQuery) {
         return skolemizeSpin(spinQuery, "http://lsq.aksw.org/spin-");
     }
@@ -512,10 +643,12 @@ public class LsqEnrichments {
     }
 
     public static LsqQuery enrichWithBBox(LsqQuery lsqQuery) {
-        String queryStr = lsqQuery.getText();
-        // TODO Avoid repeated parse
-        Query query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
-        enrichResourceWithBBox(lsqQuery, query);
+        return enrichWithBBox(new LsqQueryContext(lsqQuery));
+    }
+
+    public static LsqQuery enrichWithBBox(LsqQueryContext cxt) {
+        LsqQuery lsqQuery = cxt.getLsqQuery();
+        enrichResourceWithBBox(lsqQuery, cxt.getOp());
         return lsqQuery;
     }
 
@@ -527,6 +660,18 @@ public class LsqEnrichments {
      * @param query
      */
     public static void enrichResourceWithBBox(Resource resource, Query query) {
+        // Use algebra form to detect spatial literals
+        Op op = Algebra.compile(query);
+        enrichResourceWithBBox(resource, op);
+    }
+
+    /**
+     * Variant of {@link #enrichResourceWithBBox(Resource, Query)} for an already compiled query.
+     *
+     * @param resource
+     * @param op
+     */
+    public static void enrichResourceWithBBox(Resource resource, Op op) {
         Collector<Binding, ?, GeometryWrapper> collector = GeoSparqlExAggregators.aggGeometryWrapperCollection(new ExprVar(Vars.x), false).asCollector();
         NodeTransformCollectNodes n = new NodeTransformCollectNodes();
 
@@ -534,8 +679,6 @@ public class LsqEnrichments {
         // ElementTransform e = new ElementTransformSubst2(n);
         // QueryTransformOps.transform(query, e);
 
-        // Use algebra form to detect spatial literals
-        Op op = Algebra.compile(query);
         NodeTransformLib.transform(n, op);
         Set<Node> nodes = n.getNodes();
 
@@ -634,9 +777,13 @@ public class LsqEnrichments {
 
     // Requires the spin model to exist on the argument
     public static LsqQuery enrichWithStaticAnalysis(LsqQuery queryRes) {
-        String queryStr = queryRes.getText();
-        // TODO Avoid repeated parse
-        Query query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
+        return enrichWithStaticAnalysis(new LsqQueryContext(queryRes));
+    }
+
+    // Requires the spin model to exist on the argument
+    public static LsqQuery enrichWithStaticAnalysis(LsqQueryContext cxt) {
+        LsqQuery queryRes = cxt.getLsqQuery();
+        Query query = cxt.getQuery();
 
 
         LsqStructuralFeatures featureRes = queryRes.getStructuralFeatures();
@@ -697,8 +844,9 @@ public class LsqEnrichments {
          * join vertex computation
          */
 
+        BgpHyperGraphs hyperGraphs = cxt.get(BgpHyperGraphs.class);
         List<Integer> sortedJoinVertexDegrees = bgpInfo.getBgps().stream()
-                .flatMap(bgp -> setUpJoinVertices(bgp).stream()).sorted()
+                .flatMap(bgp -> setUpJoinVertices(bgp, hyperGraphs).stream()).sorted()
                 .collect(Collectors.toList());
 
         int n = sortedJoinVertexDegrees.size();
@@ -723,6 +871,13 @@ public class LsqEnrichments {
         Set<Resource> serviceUris = spinModel.listStatements(null, SP.serviceURI, (RDFNode)null)
                 .mapWith(stmt -> stmt.getObject().asResource()).toSet();
 
+        // The structural model does not capture service clauses - so also read them from the query
+        for(Node serviceNode : getServiceNodes(query)) {
+            if(serviceNode.isURI()) {
+                serviceUris.add(spinModel.wrapAsResource(serviceNode));
+            }
+        }
+
         for(Resource serviceUri : serviceUris) {
             featureRes.addProperty(LSQ.usesService, serviceUri);
         }
@@ -743,98 +898,70 @@ public class LsqEnrichments {
     }
 
 
-    public static List<Integer> setUpJoinVertices(Bgp bgp) {
-
-//        BasicPattern bgp = bgpRes.toBasicPattern();
-        // int bgpHash = (new HashSet<>(bgp.getList())).hashCode();
-
-        // Create the hypergraph model over all bgps
-        // (Could be changed if individual stats are desired)
-        //Model hyperGraph = ModelFactory.createDefaultModel();
-//        Model hyperGraph = bgp.getModel();
-
-        // for(BasicPattern bgp : bgps) {
-        enrichModelWithHyperGraphData(bgp);
-
-        // System.out.println("HYPER");
-        // hyperGraph.write(System.out, "TURTLE");
-
-        Set<Resource> rawJoinVertices = bgp.getBgpNodes().stream()
-            .filter(x -> x.hasProperty(RDF.type, LSQ.Vertex))
-            .collect(Collectors.toSet());
-
-//        Set<Resource> rawJoinVertices = hyperGraph.listResourcesWithProperty(RDF.type, LSQ.Vertex).toSet();
-
-        Map<Resource, Integer> joinVertexToDegree = rawJoinVertices.stream()
-                .collect(Collectors.toMap(r -> r, r -> QueryStatistics2.propertyDegree(r, LSQ.out, LSQ.in)));
-
-        // .filter(x -> x != 1) // Remove vertices that do not join
-        joinVertexToDegree = joinVertexToDegree.entrySet().stream()
-                .filter(e -> e.getValue() != 1)
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
-
-        Set<Resource> joinVertices = joinVertexToDegree.keySet();
-
-        List<Integer> degrees = joinVertexToDegree.values().stream().sorted().collect(Collectors.toList());
-
-        // list.add(value);
-        // stats = stats + " lsqv:triplePatterns "+totalTriplePatterns +" ; ";
-        // stats = stats + " lsqv:joinVertices "+joinVertices.size() +" ; ";
-        // stats = stats + " lsqv:meanJoinVerticesDegree 0 . ";
-
-        // stats = stats+ "\nlsqr:sf-q"+(LogRDFizer.queryHash)+"
-        // lsqv:mentionsObject ";
-        // stats = stats + "\nlsqr:sf-q"+(LogRDFizer.queryHash)+"
-        // lsqv:mentionsSubject ";
-        // stats = stats+ "\nlsqr:sf-q"+(LogRDFizer.queryHash)+"
-        // lsqv:mentionsPredicate ";
-        // stats = stats + getMentionsTuple(predicates); // subjects and objects
-        // ModelUtils.
-        // ResourceUtils.
-        NestedResource joinVertexNres = new NestedResource(bgp);
-
-        for (Resource v : joinVertices) {
-            // TODO Allocate a resource for the join vertex
-            // Resource queryRes = null;
-            Statement t = v.getProperty(RDFS.label);
-            RDFNode o = t.getObject();
-            String name = "" + QueryStatistics2.toPrettyString(o);
-
-            // System.out.println(name);
-//            Resource joinVertexRes = joinVertexNres.nest("-jv-" + name).get();// lsqr:sf-q"+(LogRDFizer.queryHash)+"-"+joinVertex
-            Resource joinVertexRes = v;
-
-//            bgpRes.addProperty(LSQ.joinVertex, joinVertexRes);
+    /** The service nodes of the query's service clauses, including those of sub-queries */
+    public static Set<Node> getServiceNodes(Query query) {
+        Set<Node> result = new LinkedHashSet<>();
+        Element pattern = query.getQueryPattern();
+        if(pattern != null) {
+            ElementWalker.walk(pattern, new ElementVisitorBase() {
+                @Override
+                public void visit(ElementService el) {
+                    result.add(el.getServiceNode());
+                }
 
-            Resource joinVertexType = QueryStatistics2.getJoinVertexType(v);
-            int degree = joinVertexToDegree.get(v);
+                @Override
+                public void visit(ElementSubQuery el) {
+                    result.addAll(getServiceNodes(el.getQuery()));
+                }
+            });
+        }
+        return result;
+    }
 
-            //rdfNodeToNode = v.getProperty(LSQ.proxyFor).getObject();
+    /**
+     * Compute the join vertices of the bgp with a {@link BgpHyperGraph} and annotate the
+     * corresponding bgp nodes with their degree and type.
+     *
+     * @return The degrees of the join vertices in ascending order
+     */
+    public static List<Integer> setUpJoinVertices(Bgp bgp) {
+        return setUpJoinVertices(bgp, null);
+    }
 
-//            Node proxyNode = v.getProperty(LSQ.proxyFor).getObject().asNode();
-//            RDFNode proxyRdfNode = nodeToModel.get(proxyNode);
+    /**
+     * @param hyperGraphs If not null then the hypergraph registered for the bgp is used;
+     *        otherwise it is built from the bgp's triple patterns
+     */
+    public static List<Integer> setUpJoinVertices(Bgp bgp, BgpHyperGraphs hyperGraphs) {
+        BgpHyperGraphs.Entry entry = hyperGraphs == null ? null : hyperGraphs.get(bgp);
+        if (entry == null) {
+            List<Triple> triples = bgp.getTriplePatterns().stream()
+                    .map(SpinCoreUtils::toJenaTriple)
+                    .collect(Collectors.toList());
+
+            entry = BgpHyperGraphs.Entry.create(triples, BgpHyperGraph.create(triples), bgp.indexBgpNodes());
+        }
 
-//            if(proxyRdfNode == null) {
-//                throw new NullPointerException("Should not happen");
-//            }
+        BgpHyperGraph hyperGraph = entry.getHyperGraph();
+        Model model = bgp.getModel();
 
+        for (int v : hyperGraph.getJoinVertices()) {
+            BgpNode joinVertexRes = model.wrapAsResource(entry.getBgpNode(v)).as(BgpNode.class);
             joinVertexRes
-                .addLiteral(LSQ.joinVertexDegree, degree)
-                .addProperty(LSQ.joinVertexType, joinVertexType)
-//                .addProperty(LSQ.proxyFor, proxyRdfNode)
-            // .addProperty(LSQ.proxyFor,
-            // v)//v.getPropertyResourceValue(LSQ.proxyFor))
-            ;
-
+                .addLiteral(LSQ.joinVertexDegree, hyperGraph.getDegree(v))
+                .addProperty(LSQ.joinVertexType, hyperGraph.getJoinVertexType(v));
         }
 
-        return degrees;
+        List<Integer> result = Arrays.stream(hyperGraph.getSortedJoinVertexDegrees()).boxed()
+                .collect(Collectors.toList());
+        return result;
     }
 
 
 
     /**
      * Creates a hypergraph model.
+     * No longer used by the static analysis which relies on {@link BgpHyperGraph} instead.
      *
      *
      *
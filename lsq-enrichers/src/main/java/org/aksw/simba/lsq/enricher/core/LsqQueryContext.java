@@ -0,0 +1,141 @@
+package org.aksw.simba.lsq.enricher.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+
+/**
+ * Processing context for a single {@link LsqQuery} that is passed from enricher to enricher.
+ *
+ * The query string is parsed only once (on first demand) and the compiled algebra
+ * as well as any further derived structures are shared between the enrichers.
+ * Enrichers must treat the parsed query and algebra as read-only.
+ *
+ * @author raven
+ *
+ */
+public class LsqQueryContext {
+    protected LsqQuery lsqQuery;
+
+    protected Query query = null;
+    protected Op op = null;
+
+    /** Derived structures keyed by an arbitrary key - typically the class that computes them */
+    protected Map<Object, Object> attributes = null;
+
+    /**
+     * If true then enrichers do not rename the resources they create but register the renames
+     * with {@link #addPendingRenames(Map)}. They are applied by a single final skolemization pass.
+     */
+    protected boolean skolemizationDeferred = false;
+    protected Map<Node, Node> pendingRenames = null;
+
+    /** The IRI the query will have once it is skolemized; only needed if it is not an IRI yet */
+    protected String queryIri = null;
+
+    public LsqQueryContext(LsqQuery lsqQuery) {
+        super();
+        this.lsqQuery = lsqQuery;
+    }
+
+    /** Create a context with an already parsed query; the query may be null in which case it is parsed on demand */
+    public LsqQueryContext(LsqQuery lsqQuery, Query query) {
+        this(lsqQuery);
+        this.query = query;
+    }
+
+    public LsqQuery getLsqQuery() {
+        return lsqQuery;
+    }
+
+    /**
+     * Return the parsed query. The query text of the {@link LsqQuery} is parsed on the first call.
+     *
+     * @throws org.apache.jena.query.QueryParseException if the text is not a valid query
+     */
+    public Query getQuery() {
+        if (query == null) {
+            String queryStr = lsqQuery.getText();
+            Objects.requireNonNull(queryStr, "Query string must not be null");
+            query = QueryFactory.create(queryStr, Syntax.syntaxARQ);
+        }
+        return query;
+    }
+
+    /** Return the parsed query if it has been parsed or set already; null otherwise. Never parses. */
+    public Query getQueryIfParsed() {
+        return query;
+    }
+
+    /** Return the algebra of the query; it is compiled on the first call */
+    public Op getOp() {
+        if (op == null) {
+            op = Algebra.compile(getQuery());
+        }
+        return op;
+    }
+
+    public boolean isSkolemizationDeferred() {
+        return skolemizationDeferred;
+    }
+
+    public LsqQueryContext setSkolemizationDeferred(boolean skolemizationDeferred) {
+        this.skolemizationDeferred = skolemizationDeferred;
+        return this;
+    }
+
+    /** The (future) IRI of the query; null if unknown */
+    public String getQueryIri() {
+        String result = queryIri != null
+                ? queryIri
+                : lsqQuery.isURIResource() ? lsqQuery.getURI() : null;
+        return result;
+    }
+
+    public LsqQueryContext setQueryIri(String queryIri) {
+        this.queryIri = queryIri;
+        return this;
+    }
+
+    public void addPendingRenames(Map<Node, Node> renames) {
+        if (pendingRenames == null) {
+            pendingRenames = new HashMap<>();
+        }
+        pendingRenames.putAll(renames);
+    }
+
+    /** The renames registered by enrichers in deferred mode; never null */
+    public Map<Node, Node> getPendingRenames() {
+        return pendingRenames == null ? Map.of() : pendingRenames;
+    }
+
+    /** Return the derived structure for the given key; null if it has not been computed */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key) {
+        return attributes == null ? null : (T)attributes.get(key);
+    }
+
+    /** Return the derived structure for the given key; compute it if it does not exist yet */
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(Object key, Function<? super LsqQueryContext, T> fn) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+
+        T result = (T)attributes.get(key);
+        if (result == null) {
+            result = fn.apply(this);
+            attributes.put(key, result);
+        }
+        return result;
+    }
+}
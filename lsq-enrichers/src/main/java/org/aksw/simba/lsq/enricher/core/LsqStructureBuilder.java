@@ -0,0 +1,248 @@
+package org.aksw.simba.lsq.enricher.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.aksw.commons.util.string.StringUtils;
+import org.aksw.jenax.arq.util.expr.ExprUtils;
+import org.aksw.simba.lsq.spinx.model.Bgp;
+import org.aksw.simba.lsq.spinx.model.BgpInfo;
+import org.aksw.simba.lsq.spinx.model.LsqTriplePattern;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.PathBlock;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementAssign;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementDataset;
+import org.apache.jena.sparql.syntax.ElementExists;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementLateral;
+import org.apache.jena.sparql.syntax.ElementMinus;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementNotExists;
+import org.apache.jena.sparql.syntax.ElementOptional;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementService;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementUnion;
+import org.apache.jena.sparql.syntax.ElementVisitor;
+import org.spinrdf.vocabulary.SP;
+
+/**
+ * Builds the structural model of a query - its {@link Bgp}s and {@link LsqTriplePattern}s - directly
+ * from the syntax tree, without creating and re-reading a full SPIN model.
+ *
+ * The BGPs are the same as those found by {@link SpinAccessUtils#indexBasicPatterns2(Model)} on the SPIN
+ * model: all plain triples of a group form one BGP, regardless of filters, optionals or property paths
+ * between them. Groups nested in unions, optionals, minus, graph, service, lateral, sub-queries and
+ * (not) exists expressions yield BGPs of their own.
+ * Equal triples share the same triple pattern resource and each variable is represented by a single
+ * resource with an sp:varName attribute - which is what SPIN skolemization used to produce.
+ *
+ * Unlike ARQ2SPIN, literals in subject position are supported.
+ *
+ * @author raven
+ *
+ */
+public class LsqStructureBuilder
+    implements ElementVisitor
+{
+    protected BgpInfo bgpInfo;
+    protected Model model;
+
+    /** Prefix for variable IRIs; null to represent variables as blank nodes */
+    protected String varIriPrefix;
+
+    protected Map<Triple, LsqTriplePattern> tpIndex = new HashMap<>();
+    protected Map<Node, RDFNode> varIndex = new HashMap<>();
+
+    public LsqStructureBuilder(BgpInfo bgpInfo) {
+        super();
+        this.bgpInfo = bgpInfo;
+        this.model = bgpInfo.getModel();
+        this.varIriPrefix = bgpInfo.isURIResource() ? bgpInfo.getURI() + "-var-" : null;
+    }
+
+    /** Add the BGPs of the query to the given resource */
+    public static BgpInfo build(BgpInfo bgpInfo, Query query) {
+        new LsqStructureBuilder(bgpInfo).addQuery(query);
+        return bgpInfo;
+    }
+
+    public void addQuery(Query query) {
+        // E.g. DESCRIBE <x> has no query pattern
+        Element pattern = query.getQueryPattern();
+        if (pattern != null) {
+            pattern.visit(this);
+        }
+    }
+
+    protected void addBgp(List<Triple> triples) {
+        if (!triples.isEmpty()) {
+            Bgp bgp = model.createResource().as(Bgp.class);
+            List<LsqTriplePattern> tps = triples.stream()
+                    .map(this::getOrCreateTriplePattern)
+                    .collect(Collectors.toList());
+            bgp.getTriplePatterns().addAll(tps);
+            bgpInfo.getBgps().add(bgp);
+        }
+    }
+
+    protected LsqTriplePattern getOrCreateTriplePattern(Triple triple) {
+        return tpIndex.computeIfAbsent(triple, t -> model.createResource()
+                .addProperty(SP.subject, toRDFNode(t.getSubject()))
+                .addProperty(SP.predicate, toRDFNode(t.getPredicate()))
+                .addProperty(SP.object, toRDFNode(t.getObject()))
+                .as(LsqTriplePattern.class));
+    }
+
+    /** Variables become resources with sp:varName; all other nodes are used as they are */
+    protected RDFNode toRDFNode(Node node) {
+        RDFNode result = node.isVariable()
+                ? varIndex.computeIfAbsent(node, v -> {
+                    String varName = v.getName();
+                    Resource r = varIriPrefix == null
+                            ? model.createResource()
+                            : model.createResource(varIriPrefix + StringUtils.urlEncode(varName));
+                    return r.addLiteral(SP.varName, varName);
+                })
+                : model.asRDFNode(node);
+        return result;
+    }
+
+    protected static void collectTriples(PathBlock pathBlock, List<Triple> out) {
+        for (TriplePath tp : pathBlock.getList()) {
+            if (tp.isTriple()) {
+                out.add(tp.asTriple());
+            }
+        }
+    }
+
+    /** Visit the graph patterns of exists and not exists expressions */
+    protected void addExpr(Expr baseExpr) {
+        List<Expr> exprs = ExprUtils.linearizePrefix(baseExpr, Collections.emptySet()).collect(Collectors.toList());
+        for (Expr expr : exprs) {
+            if (expr instanceof ExprFunctionOp) {
+                Element elt = ((ExprFunctionOp)expr).getElement();
+                if (elt != null) {
+                    elt.visit(this);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visit(ElementGroup el) {
+        List<Triple> triples = new ArrayList<>();
+        for (Element member : el.getElements()) {
+            if (member instanceof ElementPathBlock) {
+                collectTriples(((ElementPathBlock)member).getPattern(), triples);
+            } else if (member instanceof ElementTriplesBlock) {
+                triples.addAll(((ElementTriplesBlock)member).getPattern().getList());
+            } else {
+                member.visit(this);
+            }
+        }
+        addBgp(triples);
+    }
+
+    /** Only reached for blocks that are not a direct member of a group */
+    @Override
+    public void visit(ElementPathBlock el) {
+        List<Triple> triples = new ArrayList<>();
+        collectTriples(el.getPattern(), triples);
+        addBgp(triples);
+    }
+
+    /** Only reached for blocks that are not a direct member of a group */
+    @Override
+    public void visit(ElementTriplesBlock el) {
+        addBgp(el.getPattern().getList());
+    }
+
+    @Override
+    public void visit(ElementFilter el) {
+        addExpr(el.getExpr());
+    }
+
+    @Override
+    public void visit(ElementAssign el) {
+        addExpr(el.getExpr());
+    }
+
+    @Override
+    public void visit(ElementBind el) {
+        addExpr(el.getExpr());
+    }
+
+    @Override
+    public void visit(ElementData el) {
+    }
+
+    @Override
+    public void visit(ElementUnion el) {
+        for (Element member : el.getElements()) {
+            member.visit(this);
+        }
+    }
+
+    @Override
+    public void visit(ElementOptional el) {
+        el.getOptionalElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementLateral el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementDataset el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementNamedGraph el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementExists el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementNotExists el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementMinus el) {
+        el.getMinusElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementService el) {
+        el.getElement().visit(this);
+    }
+
+    @Override
+    public void visit(ElementSubQuery el) {
+        addQuery(el.getQuery());
+    }
+}
@@ -348,6 +348,11 @@ public class QueryStatistics2 {
         int indeg = propertyDegree(r, LSQ.in);
         int outdeg = propertyDegree(r, LSQ.out);
 
+        Resource result = getJoinVertexType(indeg, outdeg);
+        return result;
+    }
+
+    public static Resource getJoinVertexType(int indeg, int outdeg) {
         Resource result;
         if (indeg == 0) { // && outdeg > 0
             result = LSQ.star;
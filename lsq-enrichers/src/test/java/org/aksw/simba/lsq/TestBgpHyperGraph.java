@@ -0,0 +1,64 @@
+package org.aksw.simba.lsq;
+
+import java.util.List;
+
+import org.aksw.simba.lsq.enricher.core.BgpHyperGraph;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Var;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBgpHyperGraph {
+
+    protected static final Node p = NodeFactory.createURI("urn:p");
+    protected static final Node q = NodeFactory.createURI("urn:q");
+
+    @Test
+    public void testJoinVertices() {
+        Var s = Var.alloc("s");
+        Var o = Var.alloc("o");
+        Var x = Var.alloc("x");
+
+        // ?s p ?o . ?s q ?x . ?o p ?x
+        BgpHyperGraph graph = BgpHyperGraph.create(List.of(
+                Triple.create(s, p, o),
+                Triple.create(s, q, x),
+                Triple.create(o, p, x)));
+
+        Assert.assertEquals(5, graph.getVertexCount());
+
+        int sv = graph.getVertex(s);
+        Assert.assertEquals(0, graph.getInDegree(sv));
+        Assert.assertEquals(2, graph.getOutDegree(sv));
+        Assert.assertEquals(LSQ.star, graph.getJoinVertexType(sv));
+
+        int ov = graph.getVertex(o);
+        Assert.assertEquals(LSQ.path, graph.getJoinVertexType(ov));
+
+        int xv = graph.getVertex(x);
+        Assert.assertEquals(LSQ.sink, graph.getJoinVertexType(xv));
+
+        // q only occurs once and hence is no join vertex
+        Assert.assertFalse(graph.isJoinVertex(graph.getVertex(q)));
+
+        Assert.assertArrayEquals(new int[] { 0, 1 }, graph.getIncidentEdges(sv));
+        Assert.assertArrayEquals(new int[] { 0, 2 }, graph.getIncidentEdges(graph.getVertex(p)));
+        Assert.assertArrayEquals(new int[] { 2, 2, 2, 2 }, graph.getSortedJoinVertexDegrees());
+    }
+
+    /** A node in predicate and object position of the same triple pattern only has a single in edge */
+    @Test
+    public void testRepeatedNode() {
+        Var s = Var.alloc("s");
+        Var v = Var.alloc("v");
+        BgpHyperGraph graph = BgpHyperGraph.create(List.of(Triple.create(s, v, v)));
+
+        int vv = graph.getVertex(v);
+        Assert.assertEquals(1, graph.getInDegree(vv));
+        Assert.assertArrayEquals(new int[] { 0 }, graph.getIncidentEdges(vv));
+        Assert.assertEquals(-1, graph.getVertex(p));
+    }
+}
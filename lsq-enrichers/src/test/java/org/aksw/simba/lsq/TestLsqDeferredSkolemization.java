@@ -0,0 +1,81 @@
+package org.aksw.simba.lsq;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.aksw.jenax.stmt.core.SparqlStmtParserImpl;
+import org.aksw.simba.lsq.core.LsqQueryCache;
+import org.aksw.simba.lsq.core.LsqRdfizer;
+import org.aksw.simba.lsq.enricher.core.LsqEnricherRegistry;
+import org.aksw.simba.lsq.enricher.core.LsqEnricherShell;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.parser.WebLogRecord;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.util.graph.GraphUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Deferred skolemization must yield the same IRIs as rdfization followed by enrichment and a second skolemization -
+ * both for raw log records and for records of RDF input.
+ */
+public class TestLsqDeferredSkolemization {
+
+    protected static final String baseIri = "http://lsq.aksw.org/";
+    protected static final String serviceUrl = "http://dbpedia.org/sparql";
+    protected static final Function<String, String> hostHashFn = str -> "hash-" + str.length();
+
+    protected static Resource rdfize(Function<? super LsqQuery, Map<Node, Node>> enricher) {
+        WebLogRecord record = new WebLogRecord()
+                .setHost("127.0.0.1")
+                .setTimestamp(1600000000000l)
+                .setTimeZone(TimeZone.getTimeZone("UTC"))
+                .setVerb("GET")
+                .setRequestPath("/sparql")
+                .setQuery("SELECT * { ?s a <urn:T> ; <urn:p> ?o OPTIONAL { ?o <urn:q> ?x } }");
+
+        LsqQueryCache queryCache = LsqQueryCache.create(SparqlStmtParserImpl.create(Syntax.syntaxARQ, true));
+        Resource x = LsqRdfizer.createLogRecordResource(record, 1);
+        Resource result = LsqRdfizer.rdfizeLogRecord(queryCache, baseIri, "", serviceUrl, hostHashFn, x, enricher)
+                .orElse(null);
+        Assert.assertNotNull(result);
+        return result;
+    }
+
+    protected static Set<String> getIris(Model model) {
+        return Iter.asStream(GraphUtils.allNodes(model.getGraph()))
+                .filter(Node::isURI)
+                .map(Node::getURI)
+                .collect(Collectors.toSet());
+    }
+
+    protected static void assertSameOutput(Resource expected, Resource actual) {
+        Assert.assertEquals(expected.getURI(), actual.getURI());
+        Assert.assertEquals(getIris(expected.getModel()), getIris(actual.getModel()));
+        Assert.assertTrue(expected.getModel().isIsomorphicWith(actual.getModel()));
+    }
+
+    @Test
+    public void testDeferredMatchesTwoPass() {
+        LsqEnricherShell shell = new LsqEnricherShell(baseIri, List.of("spin", "static"), LsqEnricherRegistry::get);
+
+        // Default mode: rdfize, enrich and skolemize again
+        Resource expected = shell.get().apply(rdfize(null));
+
+        // Deferred mode on a raw log record
+        Resource deferredLog = rdfize(shell.getDeferred());
+        assertSameOutput(expected, deferredLog);
+
+        // Deferred mode on an already rdfized record such as those of RDF input
+        Resource deferredRdf = LsqRdfizer.enrichAndSkolemize(rdfize(null), baseIri, shell.getDeferred());
+        assertSameOutput(expected, deferredRdf);
+    }
+}
@@ -0,0 +1,66 @@
+package org.aksw.simba.lsq;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.aksw.simba.lsq.enricher.core.LsqEnrichments;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.spinx.model.Bgp;
+import org.aksw.simba.lsq.spinx.model.BgpNode;
+import org.aksw.simba.lsq.spinx.model.SpinQueryEx;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLsqExtensionQueries {
+
+    protected static Bgp createBgp(String queryStr) {
+        LsqQuery q = ModelFactory.createDefaultModel().createResource("http://lsq.aksw.org/q-test").as(LsqQuery.class);
+        q.setText(queryStr);
+        LsqEnrichments.enrichWithStructuralModelCore(q);
+
+        Set<Bgp> bgps = q.getSpinQuery().as(SpinQueryEx.class).getBgps();
+        Assert.assertEquals(1, bgps.size());
+        return bgps.iterator().next();
+    }
+
+    /** The bgp and the sub-bgps of all its variables have the same triples and hence share a single extension query */
+    @Test
+    public void testIdenticalSubBgpsShareExtensionQuery() {
+        Bgp bgp = createBgp("SELECT * { ?s <urn:p> ?o . ?s <urn:q> ?o }");
+
+        Set<LsqQuery> extensionQueries = new HashSet<>();
+        extensionQueries.add(bgp.getExtensionQuery());
+
+        int subBgpCount = 0;
+        for (BgpNode bgpNode : bgp.getBgpNodes()) {
+            if (bgpNode.toJenaNode().isVariable()) {
+                Bgp subBgp = bgpNode.getSubBgp();
+                Assert.assertEquals(2, subBgp.getTriplePatterns().size());
+                extensionQueries.add(subBgp.getExtensionQuery());
+                ++subBgpCount;
+            }
+        }
+
+        Assert.assertEquals(2, subBgpCount);
+        Assert.assertEquals(1, extensionQueries.size());
+        Assert.assertNotNull(extensionQueries.iterator().next());
+    }
+
+    /** Sub-bgps with different triples get extension queries of their own */
+    @Test
+    public void testDistinctSubBgps() {
+        Bgp bgp = createBgp("SELECT * { ?s <urn:p> ?o . ?o <urn:q> ?x }");
+
+        Set<LsqQuery> extensionQueries = new HashSet<>();
+        extensionQueries.add(bgp.getExtensionQuery());
+        for (BgpNode bgpNode : bgp.getBgpNodes()) {
+            if (bgpNode.toJenaNode().isVariable()) {
+                extensionQueries.add(bgpNode.getSubBgp().getExtensionQuery());
+            }
+        }
+
+        // The bgp, {?s p ?o} and {?o q ?x} - the sub-bgp of ?o is the bgp itself
+        Assert.assertEquals(3, extensionQueries.size());
+    }
+}
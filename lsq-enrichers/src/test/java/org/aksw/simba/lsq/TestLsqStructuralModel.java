@@ -0,0 +1,100 @@
+package org.aksw.simba.lsq;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.aksw.simba.lsq.enricher.core.LsqEnrichments;
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.model.LsqStructuralFeatures;
+import org.aksw.simba.lsq.spinx.model.BgpNode;
+import org.aksw.simba.lsq.spinx.model.LsqTriplePattern;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The structural model must yield the same bgps, triple patterns and join vertex statistics
+ * as the full spin model.
+ */
+public class TestLsqStructuralModel {
+
+    protected static LsqQuery analyze(String queryStr, Function<LsqQuery, LsqQuery> structureEnricher) {
+        Model model = ModelFactory.createDefaultModel();
+        LsqQuery q = model.createResource("http://lsq.aksw.org/q-test").as(LsqQuery.class);
+        q.setText(queryStr);
+
+        q = structureEnricher.apply(q);
+        q = LsqEnrichments.enrichWithStaticAnalysis(q);
+        return q;
+    }
+
+    /** The triple patterns of each bgp as a sorted string; the bgps in sorted order */
+    protected static List<String> getBgps(LsqStructuralFeatures features) {
+        return features.getBgps().stream()
+                .map(bgp -> bgp.getTriplePatterns().stream()
+                        .map(LsqTriplePattern::toJenaTriple)
+                        .map(Object::toString)
+                        .sorted()
+                        .collect(Collectors.joining(" . ")))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /** The values of a join vertex property by the node of the bgp node */
+    protected static List<String> getJoinVertexAnnotations(Model model, Property p) {
+        return model.listStatements(null, p, (RDFNode)null).toList().stream()
+                .map(stmt -> stmt.getSubject().as(BgpNode.class).toJenaNode() + " " + stmt.getObject())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    protected static void assertSameStructure(String queryStr) {
+        LsqQuery expected = analyze(queryStr, LsqEnrichments::enrichWithFullSpinModelCore);
+        LsqQuery actual = analyze(queryStr, LsqEnrichments::enrichWithStructuralModelCore);
+
+        LsqStructuralFeatures e = expected.getStructuralFeatures();
+        LsqStructuralFeatures a = actual.getStructuralFeatures();
+
+        Assert.assertEquals(queryStr, getBgps(e), getBgps(a));
+        Assert.assertEquals(queryStr, e.getBgpCount(), a.getBgpCount());
+        Assert.assertEquals(queryStr, e.getTpCount(), a.getTpCount());
+        Assert.assertEquals(queryStr, e.getTpInBgpCountMin(), a.getTpInBgpCountMin());
+        Assert.assertEquals(queryStr, e.getTpInBgpCountMax(), a.getTpInBgpCountMax());
+
+        Assert.assertEquals(queryStr, e.getJoinVertexCount(), a.getJoinVertexCount());
+        Assert.assertEquals(queryStr, e.getJoinVertexDegreeMean(), a.getJoinVertexDegreeMean());
+        Assert.assertEquals(queryStr, e.getJoinVertexDegreeMedian(), a.getJoinVertexDegreeMedian());
+
+        Assert.assertEquals(queryStr,
+                getJoinVertexAnnotations(expected.getModel(), LSQ.joinVertexDegree),
+                getJoinVertexAnnotations(actual.getModel(), LSQ.joinVertexDegree));
+        Assert.assertEquals(queryStr,
+                getJoinVertexAnnotations(expected.getModel(), LSQ.joinVertexType),
+                getJoinVertexAnnotations(actual.getModel(), LSQ.joinVertexType));
+    }
+
+    @Test
+    public void testOptional() {
+        assertSameStructure("SELECT * { ?s a <urn:T> ; <urn:p> ?o OPTIONAL { ?o <urn:q> ?x . ?x <urn:r> ?s } }");
+    }
+
+    @Test
+    public void testFilter() {
+        assertSameStructure("SELECT * { ?s <urn:p> ?o . ?o <urn:q> ?x FILTER(?x > 5) ?x <urn:r> \"y\" }");
+    }
+
+    @Test
+    public void testUnion() {
+        assertSameStructure("SELECT * { ?s <urn:p> ?o { ?s <urn:q> ?x . ?x <urn:q> ?o } UNION { ?o <urn:r> ?s } }");
+    }
+
+    @Test
+    public void testSubSelect() {
+        assertSameStructure("SELECT ?s (COUNT(?o) AS ?c) { ?s <urn:p> ?x { SELECT ?x ?o { ?x <urn:q> ?o . ?o a ?x } LIMIT 10 } } GROUP BY ?s");
+    }
+}
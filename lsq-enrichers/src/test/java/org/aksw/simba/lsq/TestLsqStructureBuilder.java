@@ -0,0 +1,51 @@
+package org.aksw.simba.lsq;
+
+import java.util.Set;
+
+import org.aksw.simba.lsq.enricher.core.LsqStructureBuilder;
+import org.aksw.simba.lsq.spinx.model.Bgp;
+import org.aksw.simba.lsq.spinx.model.SpinQueryEx;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spinrdf.vocabulary.SP;
+
+public class TestLsqStructureBuilder {
+
+    protected static SpinQueryEx build(String queryStr) {
+        Model model = ModelFactory.createDefaultModel();
+        Query query = QueryFactory.create(queryStr);
+        SpinQueryEx result = model.createResource("http://lsq.aksw.org/q-test-structure").as(SpinQueryEx.class);
+        LsqStructureBuilder.build(result, query);
+        return result;
+    }
+
+    /** All plain triples of a group form one bgp; nested groups yield bgps of their own */
+    @Test
+    public void testBgps() {
+        SpinQueryEx root = build("SELECT * { ?s a ?t FILTER(?t != <urn:x>) ?s <urn:p>/<urn:q> ?o . ?s <urn:p> ?o "
+                + "{ ?s <urn:p> ?o } UNION { ?s <urn:q> ?o } FILTER NOT EXISTS { ?o a ?t } }");
+
+        Set<Bgp> bgps = root.getBgps();
+        Assert.assertEquals(4, bgps.size());
+
+        int tpCount = bgps.stream().mapToInt(bgp -> bgp.getTriplePatterns().size()).sum();
+        Assert.assertEquals(5, tpCount);
+
+        // Equal triples share the triple pattern resource and variables are only created once
+        Model model = root.getModel();
+        Assert.assertEquals(4, model.listSubjectsWithProperty(SP.subject).toList().size());
+        Assert.assertEquals(3, model.listSubjectsWithProperty(SP.varName).toList().size());
+    }
+
+    /** Literals in subject position are supported */
+    @Test
+    public void testLiteralSubject() {
+        SpinQueryEx root = build("SELECT * { \"x\" <urn:p> ?o }");
+        Bgp bgp = root.getBgps().iterator().next();
+        Assert.assertTrue(bgp.getTriplePatterns().get(0).toJenaTriple().getSubject().isLiteral());
+    }
+}
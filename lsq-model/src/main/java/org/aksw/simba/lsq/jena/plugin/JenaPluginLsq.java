@@ -14,6 +14,8 @@ import org.aksw.simba.lsq.model.QualifiedFeature;
 import org.aksw.simba.lsq.model.QueryExec;
 import org.aksw.simba.lsq.model.RemoteExecution;
 import org.aksw.simba.lsq.model.RemoteExecutionHeaders;
+import org.aksw.simba.lsq.model.RemoteExecutionHourCount;
+import org.aksw.simba.lsq.model.RemoteExecutionSummary;
 import org.aksw.simba.lsq.spinx.model.Bgp;
 import org.aksw.simba.lsq.spinx.model.BgpExec;
 import org.aksw.simba.lsq.spinx.model.BgpInfo;
@@ -69,6 +71,8 @@ public class JenaPluginLsq
                 QueryExec.class,
                 RemoteExecution.class,
                 RemoteExecutionHeaders.class,
+                RemoteExecutionHourCount.class,
+                RemoteExecutionSummary.class,
 
                 Bgp.class,
                 BgpExec.class,
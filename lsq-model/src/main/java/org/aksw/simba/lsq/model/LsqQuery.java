@@ -91,6 +91,10 @@ public interface LsqQuery
     @Iri(LSQ.Terms.hasRemoteExec)
     Set<RemoteExecution> getRemoteExecutions();
 
+    @Iri(LSQ.Terms.hasRemoteExecSummary)
+    RemoteExecutionSummary getRemoteExecSummary();
+    LsqQuery setRemoteExecSummary(Resource r);
+
     @StringId
     default String getStringId(HashIdCxt cxt) {
         String prefix = StringUtils.toLowerCamelCase(LsqQuery.class.getSimpleName());
@@ -0,0 +1,28 @@
+package org.aksw.simba.lsq.model;
+
+import java.util.Calendar;
+
+import org.aksw.jenax.annotation.reprogen.Iri;
+import org.aksw.jenax.annotation.reprogen.ResourceView;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * A bin of the per-hour histogram of a {@link RemoteExecutionSummary}.
+ *
+ * @author raven
+ *
+ */
+@ResourceView
+public interface RemoteExecutionHourCount
+    extends Resource
+{
+    /** The start of the hour */
+    @Iri(LSQ.Terms.hour)
+    Calendar getHour();
+    RemoteExecutionHourCount setHour(Calendar calendar);
+
+    @Iri(LSQ.Terms.execCount)
+    Long getExecCount();
+    RemoteExecutionHourCount setExecCount(Long count);
+}
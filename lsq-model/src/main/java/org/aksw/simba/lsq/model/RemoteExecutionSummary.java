@@ -0,0 +1,42 @@
+package org.aksw.simba.lsq.model;
+
+import java.util.Calendar;
+import java.util.Set;
+
+import org.aksw.jenax.annotation.reprogen.Iri;
+import org.aksw.jenax.annotation.reprogen.ResourceView;
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * Aggregated information about the occurrences of a query in logs.
+ * Used in place of the individual {@link RemoteExecution} resources when only
+ * workload statistics are needed.
+ *
+ * @author raven
+ *
+ */
+@ResourceView
+public interface RemoteExecutionSummary
+    extends Resource
+{
+    @Iri(LSQ.Terms.execCount)
+    Long getExecCount();
+    RemoteExecutionSummary setExecCount(Long count);
+
+    @Iri(LSQ.Terms.distinctHostCount)
+    Long getDistinctHostCount();
+    RemoteExecutionSummary setDistinctHostCount(Long count);
+
+    @Iri(LSQ.Terms.firstSeen)
+    Calendar getFirstSeen();
+    RemoteExecutionSummary setFirstSeen(Calendar calendar);
+
+    @Iri(LSQ.Terms.lastSeen)
+    Calendar getLastSeen();
+    RemoteExecutionSummary setLastSeen(Calendar calendar);
+
+    /** The number of executions per hour - only hours with executions are present */
+    @Iri(LSQ.Terms.hasHourlyExecCount)
+    Set<RemoteExecutionHourCount> getHourlyCounts();
+}
@@ -0,0 +1,24 @@
+package org.aksw.simba.lsq.model.util;
+
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * Specialized computation of the skolem IRIs of a resource view and the resources it reaches.
+ * Codecs read the relevant properties directly instead of reflecting over the
+ * {@code @HashId} / {@code @StringId} annotations of the view.
+ *
+ * A codec must either produce exactly the node mapping that
+ * {@code MapperProxyUtils.getHashId(root).getNodeMapping(baseIri)} would produce, or return null
+ * in which case the caller falls back to the reflective implementation.
+ *
+ * @author raven
+ *
+ * @param <T> The resource view
+ */
+@FunctionalInterface
+public interface HashIdCodec<T extends Resource> {
+    Map<Node, Node> getNodeMapping(T root, String baseIri);
+}
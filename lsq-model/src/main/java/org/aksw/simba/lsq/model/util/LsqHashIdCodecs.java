@@ -0,0 +1,104 @@
+package org.aksw.simba.lsq.model.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aksw.simba.lsq.model.LsqQuery;
+import org.aksw.simba.lsq.model.RemoteExecution;
+import org.aksw.simba.lsq.model.RemoteExecutionHeaders;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Registry of {@link HashIdCodec}s for the LSQ resource views.
+ *
+ * The codec for {@link LsqQuery} covers the shape of freshly rdfized log records - a query with a known hash,
+ * its remote executions and their headers - which is what skolemization has to deal with for every record.
+ * The string ids are obtained from the views' own {@code @StringId} methods, which for this shape do not depend
+ * on any computed hash; so the IRIs are the same as with the reflective implementation.
+ * Any other shape, such as an already enriched query, is left to the reflective implementation.
+ *
+ * @author raven
+ *
+ */
+public class LsqHashIdCodecs {
+    protected static final Map<Class<?>, HashIdCodec<?>> registry = new ConcurrentHashMap<>();
+
+    static {
+        register(LsqQuery.class, LsqHashIdCodecs::getLogRecordNodeMapping);
+    }
+
+    public static <T extends Resource> void register(Class<T> cls, HashIdCodec<? super T> codec) {
+        registry.put(cls, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Resource> HashIdCodec<T> get(Class<T> cls) {
+        return (HashIdCodec<T>)registry.get(cls);
+    }
+
+    /**
+     * Compute the node mapping of root viewed as cls with the registered codec.
+     *
+     * @return The node mapping or null if there is no codec or the codec does not apply
+     */
+    public static <T extends Resource> Map<Node, Node> tryGetNodeMapping(Resource root, String baseIri, Class<T> cls) {
+        HashIdCodec<T> codec = get(cls);
+        Map<Node, Node> result = codec == null ? null : codec.getNodeMapping(root.as(cls), baseIri);
+        return result;
+    }
+
+    /**
+     * Node mapping for a not yet skolemized log record.
+     *
+     * @return The node mapping or null if the model of the query contains anything besides
+     *   the query, its remote executions and their headers as blank nodes.
+     */
+    public static Map<Node, Node> getLogRecordNodeMapping(LsqQuery q, String baseIri) {
+        if (!q.isAnon() || q.getHash() == null) {
+            return null;
+        }
+
+        Map<Node, String> stringIds = new HashMap<>();
+        stringIds.put(q.asNode(), q.getStringId(null));
+
+        for (RemoteExecution re : q.getRemoteExecutions()) {
+            if (!re.isAnon()) {
+                return null;
+            }
+            stringIds.put(re.asNode(), re.getStringId(null));
+
+            RemoteExecutionHeaders headers = re.getHeaders();
+            if (headers != null) {
+                if (!headers.isAnon()) {
+                    return null;
+                }
+                stringIds.put(headers.asNode(), headers.getStringId(null));
+            }
+        }
+
+        // Any other resource in the record would be visited by the reflective implementation
+        Graph graph = q.getModel().getGraph();
+        ExtendedIterator<Triple> it = graph.find();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                Node o = t.getObject();
+                if (!stringIds.containsKey(t.getSubject()) || (o.isBlank() && !stringIds.containsKey(o))) {
+                    return null;
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        Map<Node, Node> result = new HashMap<>();
+        stringIds.forEach((node, stringId) -> result.put(node, NodeFactory.createURI(baseIri + stringId)));
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package org.aksw.simba.lsq.parser;
+
+/**
+ * Matcher for a single field of a log line.
+ * Matching works on offsets into the line such that the remainder of the
+ * line never needs to be copied.
+ *
+ * Implementations must be stateless (and thus thread-safe) because a
+ * {@link StringMapper} may be shared among threads.
+ *
+ * @author raven
+ *
+ */
+public interface FieldMatcher {
+
+    /**
+     * Attempt to match a field in the given string starting from the given offset.
+     * Whether the match must start exactly at the offset depends on whether
+     * the underlying pattern is anchored.
+     *
+     * @param str The string to match against
+     * @param offset The offset in str from which to start matching
+     * @param span An array of length 2 into which the start and end offsets of the match are written
+     * @return true if the field was matched
+     */
+    boolean find(String str, int offset, int[] span);
+}
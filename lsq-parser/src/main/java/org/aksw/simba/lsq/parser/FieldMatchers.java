@@ -0,0 +1,237 @@
+package org.aksw.simba.lsq.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Factory for {@link FieldMatcher} instances.
+ *
+ * The field patterns used by the web server log formats are mostly literals
+ * (separators such as '"' or ' ') and runs of characters such as '\S+' or '[^"]*'.
+ * For those, hand-written matchers are created which scan the line without
+ * involving the regex engine. Any other pattern is matched with
+ * {@link Matcher#region(int, int)} which also avoids copying the remainder of the line.
+ *
+ * The matchers created here behave exactly like
+ * <code>pattern.matcher(str.substring(offset)).find()</code>.
+ *
+ * @author raven
+ *
+ */
+public class FieldMatchers {
+
+    public static FieldMatcher compile(Pattern pattern) {
+        FieldMatcher result = null;
+        if (pattern.flags() == 0) {
+            String str = pattern.pattern();
+            result = tryCreateLiteralMatcher(str);
+            if (result == null) {
+                result = tryCreateCharRunMatcher(str);
+            }
+        }
+
+        if (result == null) {
+            result = new RegexFieldMatcher(pattern);
+        }
+        return result;
+    }
+
+    /** Create a matcher for patterns created with {@link Pattern#quote(String)} */
+    public static FieldMatcher tryCreateLiteralMatcher(String patternStr) {
+        FieldMatcher result = null;
+        if (patternStr.startsWith("\\Q") && patternStr.endsWith("\\E")) {
+            String literal = patternStr.substring(2, patternStr.length() - 2);
+            // Quoted strings that contain '\E' are split into multiple quoted sections
+            if (!literal.contains("\\E") && !literal.isEmpty()) {
+                result = new LiteralFieldMatcher(literal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create a matcher for patterns of the form [^]CLASS[*+] where CLASS is one of
+     * '\s', '\S', or a negated character class '[^...]' composed of plain characters and '\s'.
+     */
+    public static FieldMatcher tryCreateCharRunMatcher(String patternStr) {
+        FieldMatcher result = null;
+
+        int n = patternStr.length();
+        int i = 0;
+
+        boolean anchored = n > 0 && patternStr.charAt(0) == '^';
+        if (anchored) {
+            ++i;
+        }
+
+        if (n - i >= 2) {
+            char quantifier = patternStr.charAt(n - 1);
+            boolean allowEmpty = quantifier == '*';
+            if (allowEmpty || quantifier == '+') {
+                String charClass = patternStr.substring(i, n - 1);
+                CharClass cc = parseCharClass(charClass);
+                if (cc != null) {
+                    result = new CharRunFieldMatcher(cc, anchored, allowEmpty);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** Whitespace as defined by the regex character class '\s' */
+    public static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    static CharClass parseCharClass(String str) {
+        CharClass result = null;
+        if (str.equals("\\s")) {
+            result = new CharClass(true, false, "");
+        } else if (str.equals("\\S")) {
+            result = new CharClass(true, true, "");
+        } else if (str.startsWith("[^") && str.endsWith("]") && str.length() > 3) {
+            String members = str.substring(2, str.length() - 1);
+            boolean whitespace = false;
+            StringBuilder chars = new StringBuilder();
+            int n = members.length();
+            for (int i = 0; i < n; ++i) {
+                char c = members.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 < n && members.charAt(i + 1) == 's') {
+                        whitespace = true;
+                        ++i;
+                    } else {
+                        // Unsupported escape
+                        return null;
+                    }
+                } else if (c == '[' || c == '&' || c == '-' || c == '^' || (c == ']' && i != 0)) {
+                    // Unsupported class syntax
+                    return null;
+                } else {
+                    chars.append(c);
+                }
+            }
+            result = new CharClass(whitespace, true, chars.toString());
+        }
+        return result;
+    }
+
+    /**
+     * A set of characters composed of (optionally) whitespace and a set of individual characters.
+     * If negated, the class matches any character NOT in the set.
+     */
+    static class CharClass {
+        protected boolean whitespace;
+        protected boolean negated;
+        protected String chars;
+
+        public CharClass(boolean whitespace, boolean negated, String chars) {
+            super();
+            this.whitespace = whitespace;
+            this.negated = negated;
+            this.chars = chars;
+        }
+
+        public boolean test(char c) {
+            boolean isMember = (whitespace && isRegexWhitespace(c)) || chars.indexOf(c) >= 0;
+            return isMember != negated;
+        }
+    }
+
+    public static class LiteralFieldMatcher
+        implements FieldMatcher
+    {
+        protected String literal;
+
+        public LiteralFieldMatcher(String literal) {
+            super();
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean find(String str, int offset, int[] span) {
+            int start = str.indexOf(literal, offset);
+            boolean result = start >= 0;
+            if (result) {
+                span[0] = start;
+                span[1] = start + literal.length();
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return Pattern.quote(literal);
+        }
+    }
+
+    public static class CharRunFieldMatcher
+        implements FieldMatcher
+    {
+        protected CharClass charClass;
+        protected boolean anchored;
+        protected boolean allowEmpty;
+
+        CharRunFieldMatcher(CharClass charClass, boolean anchored, boolean allowEmpty) {
+            super();
+            this.charClass = charClass;
+            this.anchored = anchored;
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public boolean find(String str, int offset, int[] span) {
+            int n = str.length();
+            int start = offset;
+
+            // An unanchored 'x+' skips to the first matching char; 'x*' always matches at the offset
+            if (!anchored && !allowEmpty) {
+                while (start < n && !charClass.test(str.charAt(start))) {
+                    ++start;
+                }
+            }
+
+            int end = start;
+            while (end < n && charClass.test(str.charAt(end))) {
+                ++end;
+            }
+
+            boolean result = allowEmpty || end > start;
+            if (result) {
+                span[0] = start;
+                span[1] = end;
+            }
+            return result;
+        }
+    }
+
+    public static class RegexFieldMatcher
+        implements FieldMatcher
+    {
+        protected Pattern pattern;
+
+        public RegexFieldMatcher(Pattern pattern) {
+            super();
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean find(String str, int offset, int[] span) {
+            // With the default anchoring bounds '^' matches at the start of the region
+            Matcher m = pattern.matcher(str);
+            m.region(offset, str.length());
+            boolean result = m.find();
+            if (result) {
+                span[0] = m.start();
+                span[1] = m.end();
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return pattern.toString();
+        }
+    }
+}
@@ -13,6 +13,7 @@ public class FieldSpec {
     protected boolean isOptional;
 
     protected Pattern pattern;
+    protected FieldMatcher matcher;
 
     protected Converter<String, String> normalizer;
     protected RDFDatatype rdfTypeMapper;
@@ -52,9 +53,15 @@ public class FieldSpec {
 
     public FieldSpec setPattern(Pattern pattern) {
         this.pattern = pattern;
+        this.matcher = pattern == null ? null : FieldMatchers.compile(pattern);
         return this;
     }
 
+    /** The matcher compiled from the pattern */
+    public FieldMatcher getMatcher() {
+        return matcher;
+    }
+
     public Converter<String, String> getNormalizer() {
         return normalizer;
     }
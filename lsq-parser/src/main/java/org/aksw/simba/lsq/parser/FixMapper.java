@@ -37,6 +37,17 @@ public class FixMapper
         return result;
     }
 
+    @Override
+    public int parse(WebLogRecord record, String lexicalForm) {
+        boolean isAccepted = lexicalForm.startsWith(prefix) && lexicalForm.endsWith(suffix);
+
+        int result = isAccepted && delegate != null
+                ? delegate.parse(record, lexicalForm.substring(prefix.length(), lexicalForm.length() - suffix.length()))
+                : 0;
+
+        return result;
+    }
+
     @Override
     public String unparse(Resource r) {
         StringBuilder sb = new StringBuilder();
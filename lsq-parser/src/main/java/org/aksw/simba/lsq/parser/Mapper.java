@@ -18,5 +18,16 @@ public interface Mapper {
 	 * @return The number of properties parsed from the string
 	 */
     int parse(Resource r, String lexicalForm);
+
+    /**
+     * Parse the given string into a plain Java record without involving any RDF objects.
+     * The record can be turned into RDF later using {@link WebLogRecord#copyInto(Resource)}.
+     *
+     * @param record The record into which to parse the given string
+     * @param lexicalForm
+     * @return The number of properties parsed from the string
+     */
+    int parse(WebLogRecord record, String lexicalForm);
+
     String unparse(Resource r);
 }
\ No newline at end of file
@@ -21,6 +21,13 @@ public class MapperConverter
         return result;
     }
 
+    @Override
+    public int parse(WebLogRecord record, String lexicalForm) {
+        String str = converter.convert(lexicalForm);
+        int result = super.parse(record, str);
+        return result;
+    }
+
     @Override
     public String unparse(Resource r) {
         String str = super.unparse(r);
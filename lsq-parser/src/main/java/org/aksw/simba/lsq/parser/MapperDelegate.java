@@ -18,6 +18,12 @@ public class MapperDelegate
         return result;
     }
 
+    @Override
+    public int parse(WebLogRecord record, String lexicalForm) {
+        int result = delegate.parse(record, lexicalForm);
+        return result;
+    }
+
     @Override
     public String unparse(Resource r) {
         String result = delegate.unparse(r);
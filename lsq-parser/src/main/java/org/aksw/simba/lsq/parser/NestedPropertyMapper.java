@@ -31,6 +31,13 @@ public class NestedPropertyMapper
         return result;
     }
 
+    @Override
+    public int parse(WebLogRecord record, String lexicalForm) {
+        WebLogRecord subRecord = record.getOrCreateNested(property);
+        int result = super.parse(subRecord, lexicalForm);
+        return result;
+    }
+
     @Override
     public String unparse(Resource r) {
         String result;
@@ -0,0 +1,82 @@
+package org.aksw.simba.lsq.parser;
+
+import java.util.regex.Pattern;
+
+/**
+ * Diagnostic for a log line that did not match a {@link StringMapper}.
+ *
+ * Failures are frequent - especially when probing a log against all known formats -
+ * so creating a failure must be cheap: It only captures references to the field and the input
+ * together with the offset at which matching failed. The message is built on demand.
+ * Only in detailed mode (debug logging of {@link StringMapper}) the message includes the pattern and the
+ * unmatched remainder of the input, and a stack trace is captured.
+ *
+ * @author raven
+ *
+ */
+public class ParseFailure {
+    /** The maximum number of chars of the unmatched input included in detailed messages */
+    public static final int MAX_REMAINDER_LENGTH = 256;
+
+    protected String fieldId;
+    protected Pattern pattern;
+    protected String input;
+    protected int offset;
+    protected boolean detailed;
+
+    /** Only captured in detailed mode */
+    protected Throwable trace;
+
+    protected String message = null;
+
+    public ParseFailure(String fieldId, Pattern pattern, String input, int offset, boolean detailed) {
+        super();
+        this.fieldId = fieldId;
+        this.pattern = pattern;
+        this.input = input;
+        this.offset = offset;
+        this.detailed = detailed;
+        this.trace = detailed ? new Throwable("Parse failure trace") : null;
+    }
+
+    public String getFieldId() {
+        return fieldId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /** The stack trace at the point of failure; null unless detailed mode was active */
+    public Throwable getTrace() {
+        return trace;
+    }
+
+    public String getMessage() {
+        if (message == null) {
+            if (detailed) {
+                String remainder = input.length() - offset > MAX_REMAINDER_LENGTH
+                        ? input.substring(offset, offset + MAX_REMAINDER_LENGTH) + "..."
+                        : input.substring(offset);
+
+                message = getSubject() + " with pattern '" + pattern + "' does not match '" + remainder + "' at offset " + offset;
+            } else {
+                message = getSubject() + " does not match at offset " + offset;
+            }
+        }
+        return message;
+    }
+
+    /** Constant string parts (separators) have no field id */
+    protected String getSubject() {
+        String result = fieldId == null
+                ? "Separator"
+                : "Field '" + fieldId + "'";
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -30,6 +30,13 @@ public class PropertyMapper
         //return r;
     }
 
+    public int parse(WebLogRecord record, String lexicalForm) {
+        Object value = rdfDatatype.parse(lexicalForm);
+        record.set(property, value);
+
+        return 1;
+    }
+
     public String unparse(Resource r) {
         String result;
         if(r.hasProperty(property)) {
@@ -0,0 +1,153 @@
+package org.aksw.simba.lsq.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts the value of a single parameter from a URL query string
+ * (application/x-www-form-urlencoded) without splitting the string into all of its parameters.
+ *
+ * The string is scanned once for the requested key and only the matching value is decoded.
+ * Decoding uses a per-thread byte buffer which is reused across calls.
+ * Decoding follows {@link java.net.URLDecoder} with UTF-8: '+' becomes a space and
+ * sequences of %XX escapes are decoded as UTF-8 bytes. Malformed escapes yield null.
+ *
+ * @author raven
+ *
+ */
+public class QueryParamExtractor {
+
+    protected static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8 * 1024]);
+
+    /**
+     * Extract a parameter from a request path such as "/sparql?query=...".
+     * Returns null if the path has no query string or the parameter is absent.
+     */
+    public static String extractFromPath(String path, String name) {
+        String result = null;
+        if (path != null) {
+            int offset = path.indexOf('?');
+            if (offset >= 0) {
+                result = extract(path, offset + 1, path.length(), name);
+            }
+        }
+        return result;
+    }
+
+    /** Extract a parameter from a query string (without leading '?') or a form encoded body */
+    public static String extract(String queryString, String name) {
+        String result = queryString == null
+                ? null
+                : extract(queryString, 0, queryString.length(), name);
+        return result;
+    }
+
+    /**
+     * Return the decoded value of the first parameter with the given name in the range [start, end) of str.
+     *
+     * @return The decoded value or null if there is no such parameter (or it has no value or a malformed encoding)
+     */
+    public static String extract(String str, int start, int end, String name) {
+        String result = null;
+        int i = start;
+        while (i < end) {
+            int paramEnd = str.indexOf('&', i);
+            if (paramEnd < 0 || paramEnd > end) {
+                paramEnd = end;
+            }
+
+            int eq = str.indexOf('=', i);
+            int keyEnd = eq < 0 || eq > paramEnd ? paramEnd : eq;
+
+            if (isKey(str, i, keyEnd, name)) {
+                result = keyEnd < paramEnd
+                        ? decode(str, keyEnd + 1, paramEnd)
+                        : null;
+                break;
+            }
+
+            i = paramEnd + 1;
+        }
+        return result;
+    }
+
+    protected static boolean isKey(String str, int start, int end, String name) {
+        boolean result;
+        if (end - start == name.length() && str.regionMatches(start, name, 0, name.length())) {
+            result = true;
+        } else {
+            // Only decode keys that contain escapes; e.g. "qu%65ry" is rare but legal
+            int escape = indexOfEscape(str, start, end);
+            result = escape >= 0 && name.equals(decode(str, start, end));
+        }
+        return result;
+    }
+
+    protected static int indexOfEscape(String str, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            char c = str.charAt(i);
+            if (c == '%' || c == '+') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** URL-decode the range [start, end) of str; returns null on malformed escapes */
+    public static String decode(String str, int start, int end) {
+        if (indexOfEscape(str, start, end) < 0) {
+            return str.substring(start, end);
+        }
+
+        byte[] buf = buffers.get();
+        // Each char expands to at most 4 bytes (surrogate pairs take two chars for 4 bytes)
+        int required = (end - start) * 3;
+        if (buf.length < required) {
+            buf = new byte[Math.max(required, buf.length * 2)];
+            buffers.set(buf);
+        }
+
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            char c = str.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end) {
+                    return null;
+                }
+                int hi = Character.digit(str.charAt(i + 1), 16);
+                int lo = Character.digit(str.charAt(i + 2), 16);
+                if (hi < 0 || lo < 0) {
+                    return null;
+                }
+                buf[n++] = (byte)((hi << 4) | lo);
+                i += 3;
+            } else if (c == '+') {
+                buf[n++] = ' ';
+                ++i;
+            } else if (c < 0x80) {
+                buf[n++] = (byte)c;
+                ++i;
+            } else {
+                // Characters that were not escaped are passed through as UTF-8
+                int cp = str.codePointAt(i);
+                i += Character.charCount(cp);
+                if (cp < 0x800) {
+                    buf[n++] = (byte)(0xc0 | (cp >> 6));
+                    buf[n++] = (byte)(0x80 | (cp & 0x3f));
+                } else if (cp < 0x10000) {
+                    buf[n++] = (byte)(0xe0 | (cp >> 12));
+                    buf[n++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+                    buf[n++] = (byte)(0x80 | (cp & 0x3f));
+                } else {
+                    buf[n++] = (byte)(0xf0 | (cp >> 18));
+                    buf[n++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+                    buf[n++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+                    buf[n++] = (byte)(0x80 | (cp & 0x3f));
+                }
+            }
+        }
+
+        String result = new String(buf, 0, n, StandardCharsets.UTF_8);
+        return result;
+    }
+}
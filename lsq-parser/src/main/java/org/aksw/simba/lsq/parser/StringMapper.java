@@ -3,6 +3,7 @@ package org.aksw.simba.lsq.parser;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -187,34 +188,76 @@ public class StringMapper
         addField(fieldName, pat, m, optional);
     }
 
+    /**
+     * Parse the given string by scanning it field by field.
+     * The fields are matched against offsets of the string using the
+     * {@link FieldMatcher}s that were compiled when the fields were added;
+     * the remainder of the line is never copied.
+     */
     public int parse(Resource r, String str) {
+        int result = parseFields(str, (mapper, contrib) -> mapper.parse(r, contrib), failure -> {
+            if (logger.isDebugEnabled()) {
+                logger.debug(failure.getMessage(), failure.getTrace());
+            }
+        });
+        return result;
+    }
 
-        String remaining = str;
+    /**
+     * Like {@link #parse(Resource, String)} but without creating any RDF objects.
+     * If the string does not match then 0 is returned and a {@link ParseFailure} is set on the record.
+     */
+    @Override
+    public int parse(WebLogRecord record, String str) {
+        int result = parseFields(str, (mapper, contrib) -> mapper.parse(record, contrib), record::setParseFailure);
+        return result;
+    }
+
+    /**
+     * Scan the fields of the given string and pass each matched value together with
+     * the field's mapper to the given sink.
+     *
+     * A mismatch does not raise an exception: Instead, a {@link ParseFailure} is passed to the failure sink
+     * and 0 is returned. Detailed failures are only created if debug logging is enabled.
+     *
+     * @return 1 if the string matched, 0 otherwise
+     */
+    protected int parseFields(String str, BiConsumer<Mapper, String> sink, Consumer<ParseFailure> failureSink) {
+
+        int offset = 0;
+        int[] span = new int[2];
+        boolean isTraceEnabled = logger.isTraceEnabled();
 
         for(FieldSpec fieldSpec : fieldSpecs) { //String fieldValue : pattern) {
             String fieldId = fieldSpec.getFieldId();
 
-            String contrib = null;
             //boolean isField = fieldToPattern.containsKey(fieldValue);
             //if(isField) {
                 //Pattern pattern = fieldToPattern.get(fieldValue);
-            Pattern pattern = fieldSpec.getPattern();
-            Matcher m = pattern.matcher(remaining);
-            if(m.find()) {
-                contrib = m.group();
+            FieldMatcher matcher = fieldSpec.getMatcher();
+            if(matcher.find(str, offset, span)) {
+                Mapper mapper = fieldSpec.getMapper();
 
-                logger.trace("Contribution: " + fieldId + " -> " + contrib);
+                // Only materialize the matched string if it is needed
+                if(mapper != null || isTraceEnabled) {
+                    String contrib = str.substring(span[0], span[1]);
 
-                Mapper mapper = fieldSpec.getMapper();
-                if(mapper != null) {
-                    mapper.parse(r, contrib);
+                    if(isTraceEnabled) {
+                        logger.trace("Contribution: " + fieldId + " -> " + contrib);
+                    }
+
+                    if(mapper != null) {
+                        sink.accept(mapper, contrib);
+                    }
                 }
 
-                remaining = remaining.substring(m.end());
+                offset = span[1];
             } else {
                 boolean optional = fieldSpec.isOptional();
                 if(!optional) {
-                    throw new RuntimeException("Field '" + fieldId + "' with pattern '" + pattern + "' does not match '" + remaining + "'");
+                    Pattern pattern = fieldSpec.getPattern();
+                    failureSink.accept(new ParseFailure(fieldId, pattern, str, offset, logger.isDebugEnabled()));
+                    return 0;
                 }
             }
 //            } else {
@@ -277,6 +320,11 @@ public class StringMapper
 
     public static Pattern tokenPattern = Pattern.compile("%(\\{([^}]*)\\})?([^% ]*\\w+)"); //, Pattern.MULTILINE | Pattern.DOTALL);
 
+    /**
+     * Create a mapper from a log format pattern such as <code>%h %l %u %t \"%r\"</code>.
+     * Each field's pattern is compiled into a {@link FieldMatcher} so that
+     * the resulting mapper scans a line in a single pass.
+     */
     public static StringMapper create(String str, Function<String, BiConsumer<StringMapper, String>> map) {
 
         StringMapper result = new StringMapper();
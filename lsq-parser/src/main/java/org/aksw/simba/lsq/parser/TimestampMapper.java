@@ -0,0 +1,60 @@
+package org.aksw.simba.lsq.parser;
+
+import java.util.Calendar;
+
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * Mapper for timestamps. Timestamps are parsed by a {@link TimestampParser} into
+ * epoch milliseconds; an xsd:dateTime literal is only created when the
+ * value is written to a resource.
+ *
+ * @author raven
+ *
+ */
+public class TimestampMapper
+    implements Mapper
+{
+    protected Property property;
+    protected TimestampParser timestampParser;
+
+    public TimestampMapper(Property property, TimestampParser timestampParser) {
+        super();
+        this.property = property;
+        this.timestampParser = timestampParser;
+    }
+
+    @Override
+    public int parse(Resource r, String lexicalForm) {
+        long value = timestampParser.parse(lexicalForm);
+        Calendar cal = WebLogRecord.toCalendar(value, null);
+        r.addLiteral(property, cal);
+        return 1;
+    }
+
+    @Override
+    public int parse(WebLogRecord record, String lexicalForm) {
+        long value = timestampParser.parse(lexicalForm);
+        record.set(property, value);
+        return 1;
+    }
+
+    @Override
+    public String unparse(Resource r) {
+        String result;
+        Statement stmt = r.getProperty(property);
+        if(stmt != null) {
+            Object value = stmt.getLiteral().getValue();
+            Calendar cal = value instanceof XSDDateTime
+                    ? ((XSDDateTime)value).asCalendar()
+                    : (Calendar)value;
+            result = timestampParser.format(cal.getTimeInMillis());
+        } else {
+            result = "";
+        }
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+package org.aksw.simba.lsq.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Thread-safe parser for the timestamps of web server logs based on
+ * {@link DateTimeFormatter}.
+ *
+ * Timestamps are parsed into milliseconds since the epoch.
+ * Because consecutive log lines mostly share the same timestamp (at second resolution),
+ * each thread remembers the last parsed string and its value.
+ *
+ * For compatibility with the lenient parsing of {@link SimpleDateFormat} which was
+ * used previously, strings that are rejected by the strict formatter are
+ * attempted again with a per-thread {@link SimpleDateFormat}.
+ *
+ * @author raven
+ *
+ */
+public class TimestampParser {
+
+    /** The pattern of the common log format, e.g. 17/Apr/2011:06:47:47 +0200 */
+    public static final String APACHE_PATTERN = "dd/MMM/yyyy:HH:mm:ss Z";
+
+    /** The pattern of virtuoso logs, e.g. 30/Apr/2010 00:00:00 -0600 */
+    public static final String VIRTUOSO_PATTERN = "dd/MMM/yyyy HH:mm:ss Z";
+
+    protected String pattern;
+    protected DateTimeFormatter formatter;
+
+    protected ThreadLocal<LastParsed> lastParsed = ThreadLocal.withInitial(LastParsed::new);
+    protected ThreadLocal<SimpleDateFormat> fallbackFormat;
+
+    protected static class LastParsed {
+        String lexicalForm;
+        long value;
+    }
+
+    public TimestampParser(String pattern) {
+        super();
+        this.pattern = pattern;
+        this.formatter = compile(pattern);
+        this.fallbackFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat(pattern, Locale.ENGLISH));
+    }
+
+    public static TimestampParser create(String pattern) {
+        return new TimestampParser(pattern);
+    }
+
+    /**
+     * Compile a date pattern into a case insensitive formatter.
+     * Timestamps without zone information are interpreted in the system's default zone.
+     */
+    public static DateTimeFormatter compile(String pattern) {
+        DateTimeFormatter result = new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .appendPattern(pattern)
+                .toFormatter(Locale.ENGLISH)
+                .withZone(ZoneId.systemDefault());
+        return result;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public DateTimeFormatter getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Parse the given string into milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException if the string cannot be parsed
+     */
+    public long parse(String lexicalForm) {
+        LastParsed last = lastParsed.get();
+
+        long result;
+        if (lexicalForm.equals(last.lexicalForm)) {
+            result = last.value;
+        } else {
+            result = parseCore(lexicalForm);
+            last.lexicalForm = lexicalForm;
+            last.value = result;
+        }
+        return result;
+    }
+
+    protected long parseCore(String lexicalForm) {
+        long result;
+        try {
+            result = Instant.from(formatter.parse(lexicalForm)).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                Date date = fallbackFormat.get().parse(lexicalForm);
+                result = date.getTime();
+            } catch (ParseException e2) {
+                e.addSuppressed(e2);
+                throw new IllegalArgumentException("Failed to parse timestamp '" + lexicalForm + "' with pattern '" + pattern + "'", e);
+            }
+        }
+        return result;
+    }
+
+    public String format(long epochMillis) {
+        String result = formatter.format(Instant.ofEpochMilli(epochMillis));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -24,7 +24,6 @@ import org.aksw.commons.io.util.UriUtils;
 import org.aksw.commons.util.string.StringUtils;
 import org.aksw.simba.lsq.vocab.LSQ;
 import org.aksw.simba.lsq.vocab.PROV;
-import org.apache.jena.datatypes.RDFDatatype;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
@@ -99,30 +98,26 @@ public class WebLogParser {
         result.put("l", (m, x) -> m.ignoreField("\\S+", "-"));
         result.put("u", (m, x) -> m.addField(LSQ.user, "\\S+", String.class));
         result.put("t", (m, x) -> {
-            DateFormat dateFormat = x == null
-                    ? apacheDateFormat
-                    : new SimpleDateFormat(x);
-
-            RDFDatatype rdfDatatype = new RDFDatatypeDateFormat(dateFormat);
+            TimestampParser timestampParser = TimestampParser.create(x == null
+                    ? TimestampParser.APACHE_PATTERN
+                    : x);
 
             m.addString("[");
-            m.addField(PROV.atTime, "[^]]*", rdfDatatype);
+            m.addFieldNoNest(PROV.atTime, "[^]]*", new TimestampMapper(PROV.atTime, timestampParser), false);
             m.addString("]");
         });
 
         // custom extension for dates without '[]'
         result.put("C", (m, x) -> {
-            DateFormat dateFormat = x == null
-                    ? apacheDateFormat
-                    : new SimpleDateFormat(x);
-
-            RDFDatatype rdfDatatype = new RDFDatatypeDateFormat(dateFormat);
+            TimestampParser timestampParser = TimestampParser.create(x == null
+                    ? TimestampParser.APACHE_PATTERN
+                    : x);
 
             // Hacky approach to convert datetime pattern to regex - based on
             // https://stackoverflow.com/questions/6928267/converting-simpledateformat-date-format-to-regular-expression
             String regexFormat = x.replaceAll("[mHsSdMy]", "\\\\d");
 
-            m.addField(PROV.atTime, regexFormat, rdfDatatype);
+            m.addFieldNoNest(PROV.atTime, regexFormat, new TimestampMapper(PROV.atTime, timestampParser), false);
         });
 
 
@@ -161,7 +156,7 @@ public class WebLogParser {
         result.put("i", (m, x) -> {
             //FIXME Use a proper vocabulary for the headers
 
-            Property p = ResourceFactory.createProperty("http://lsq.aksw.org/header#" + x);
+            Property p = headerProperty(x);
             Mapper subMapper = PropertyMapper.create(p, String.class);
 
             m.addField(LSQ.headers, "[^\"]*", subMapper, false);
@@ -200,6 +195,11 @@ public class WebLogParser {
         return result;
     }
 
+    public static Property headerProperty(String headerName) {
+        Property result = ResourceFactory.createProperty("http://lsq.aksw.org/header#" + headerName);
+        return result;
+    }
+
     // Pattern: percent followed by any non-white space char sequence that ends on alphanumeric chars
 
 
@@ -279,9 +279,13 @@ public class WebLogParser {
     public static final Pattern requestParser = Pattern.compile(requestParserStr);
 
     // 17/Apr/2011:06:47:47 +0200
+    /** @deprecated Not thread-safe; the log formats use {@link TimestampParser#APACHE_PATTERN} */
+    @Deprecated
     public static final DateFormat apacheDateFormat = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
 
     // 30/Apr/2010 00:00:00 -0600
+    /** @deprecated Not thread-safe; the log formats use {@link TimestampParser#VIRTUOSO_PATTERN} */
+    @Deprecated
     public static final DateFormat virtuosoDateFormat = new SimpleDateFormat("dd/MMM/yyyy HH:mm:ss Z");
 
 /*
@@ -408,40 +412,45 @@ public class WebLogParser {
             .ifPresent(s -> r.addLiteral(LSQ.query, s));
     }
 
-    public static String extractQueryString2(String queryString) {
-        // List<NameValuePair> qsArgs = URLEncodedUtils.parse(uri, StandardCharsets.UTF_8);
-        List<Entry<String, String>> qsArgs = UriUtils.parseQueryStringAsList(queryString);
-        String result = qsArgs.stream()
-            .filter(x -> x.getKey().equals("query"))
-            .findFirst()
-            .map(x -> x.getValue())
-            .orElse(null);
-        return result;
-    }
-
-    // TODO extract the query also from referrer fields
-    public static String extractQueryString(String pathStr) {
+    /**
+     * Counterpart to {@link #extractRawQueryString(Resource)} that operates
+     * on a {@link WebLogRecord}. If a query is found then it is set on the record.
+     *
+     * @return The extracted query string or null if there was none
+     */
+    public static String extractRawQueryString(WebLogRecord r) {
         String result = null;
 
-        if(pathStr != null) {
+        String requestPath = r.getRequestPath();
+        if (requestPath != null) {
+            result = extractQueryString(requestPath);
+        }
 
-            pathStr = encodeUnsafeCharacters(pathStr);
+        if (result == null) {
+            String queryString = r.getQueryString();
+            if (queryString != null) {
+                result = extractQueryString2(queryString);
+            }
+        }
 
+        if (result != null) {
+            r.setQuery(result);
+        }
 
-            // Parse the path and extract sparql query string if present
-            //String mockUri = "http://example.org/" + pathStr;
-            try {
-                //URI uri = new URI(pathStr);
-                int queryStrOffset = pathStr.indexOf("?");
+        return result;
+    }
 
-                result = queryStrOffset >= 0 ? extractQueryString2(pathStr.substring(queryStrOffset + 1)) : null;
-            } catch (Exception e) {
-                //System.out.println(mockUri.substring(244));
-                logger.warn("Could not parse URI: " + pathStr, e);
-                //logger.warn("Could not parse URI: " + mockUri, e);
-            }
-        }
+    /** Extract the value of the 'query' parameter from a query string or form encoded POST body */
+    public static String extractQueryString2(String queryString) {
+        // List<NameValuePair> qsArgs = URLEncodedUtils.parse(uri, StandardCharsets.UTF_8);
+        String result = QueryParamExtractor.extract(queryString, "query");
+        return result;
+    }
 
+    // TODO extract the query also from referrer fields
+    public static String extractQueryString(String pathStr) {
+        // Unsafe characters such as '{' need not be encoded as the path is scanned directly
+        String result = QueryParamExtractor.extractFromPath(pathStr, "query");
         return result;
     }
 
@@ -0,0 +1,402 @@
+package org.aksw.simba.lsq.parser;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import org.aksw.simba.lsq.vocab.LSQ;
+import org.aksw.simba.lsq.vocab.PROV;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * A flat, plain Java representation of a parsed web server log line.
+ *
+ * Parsing a log line into this record does not involve any Jena objects.
+ * The well-known fields of the web log formats are held in dedicated attributes;
+ * values of any other property end up in a generic property map.
+ * Nested values, such as the request headers, are held in nested records.
+ *
+ * Only once it is known that a record is relevant (i.e. it carries a query)
+ * it needs to be converted to RDF using {@link #copyInto(Resource)}.
+ *
+ * @author raven
+ *
+ */
+public class WebLogRecord {
+    protected String logRecord;
+
+    protected String host;
+    protected String user;
+
+    /** The timestamp in milliseconds since the epoch */
+    protected Long timestamp;
+
+    /** The time zone offset of the timestamp as it appeared in the log (if known) */
+    protected TimeZone timeZone;
+
+    protected String verb;
+    protected String requestPath;
+    protected String protocol;
+    protected String queryString;
+    protected Integer statusCode;
+    protected Integer numResponseBytes;
+
+    protected String query;
+
+    protected String processingError;
+
+    /** Set if the log line did not match; the processing error message is derived from it on demand */
+    protected ParseFailure parseFailure;
+
+    /** Values of properties without a dedicated attribute */
+    protected Map<Property, Object> properties = null;
+
+    /**
+     * Further distinct values of properties that were set more than once - e.g. repeated header fields.
+     * The first value is held in the dedicated attribute or the generic property map.
+     */
+    protected Map<Property, List<Object>> additionalValues = null;
+
+    /** Nested records such as the one for {@link LSQ#headers} */
+    protected Map<Property, WebLogRecord> nested = null;
+
+    public String getLogRecord() {
+        return logRecord;
+    }
+
+    public WebLogRecord setLogRecord(String logRecord) {
+        this.logRecord = logRecord;
+        return this;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public WebLogRecord setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public WebLogRecord setUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public WebLogRecord setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public WebLogRecord setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        return this;
+    }
+
+    public String getVerb() {
+        return verb;
+    }
+
+    public WebLogRecord setVerb(String verb) {
+        this.verb = verb;
+        return this;
+    }
+
+    public String getRequestPath() {
+        return requestPath;
+    }
+
+    public WebLogRecord setRequestPath(String requestPath) {
+        this.requestPath = requestPath;
+        return this;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public WebLogRecord setProtocol(String protocol) {
+        this.protocol = protocol;
+        return this;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public WebLogRecord setQueryString(String queryString) {
+        this.queryString = queryString;
+        return this;
+    }
+
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
+    public WebLogRecord setStatusCode(Integer statusCode) {
+        this.statusCode = statusCode;
+        return this;
+    }
+
+    public Integer getNumResponseBytes() {
+        return numResponseBytes;
+    }
+
+    public WebLogRecord setNumResponseBytes(Integer numResponseBytes) {
+        this.numResponseBytes = numResponseBytes;
+        return this;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public WebLogRecord setQuery(String query) {
+        this.query = query;
+        return this;
+    }
+
+    public String getProcessingError() {
+        if (processingError == null && parseFailure != null) {
+            processingError = "Failed to parse log line: " + parseFailure.getMessage();
+        }
+        return processingError;
+    }
+
+    /** Test for a processing error without building its message */
+    public boolean hasProcessingError() {
+        return processingError != null || parseFailure != null;
+    }
+
+    public ParseFailure getParseFailure() {
+        return parseFailure;
+    }
+
+    public WebLogRecord setParseFailure(ParseFailure parseFailure) {
+        this.parseFailure = parseFailure;
+        return this;
+    }
+
+    public WebLogRecord setProcessingError(String processingError) {
+        this.processingError = processingError;
+        return this;
+    }
+
+    public Map<Property, Object> getProperties() {
+        if (properties == null) {
+            properties = new LinkedHashMap<>();
+        }
+        return properties;
+    }
+
+    public WebLogRecord getNested(Property property) {
+        WebLogRecord result = nested == null ? null : nested.get(property);
+        return result;
+    }
+
+    public WebLogRecord getOrCreateNested(Property property) {
+        if (nested == null) {
+            nested = new LinkedHashMap<>();
+        }
+        WebLogRecord result = nested.computeIfAbsent(property, p -> new WebLogRecord());
+        return result;
+    }
+
+    /** The further values of properties that were set more than once; never null */
+    public Map<Property, List<Object>> getAdditionalValues() {
+        if (additionalValues == null) {
+            additionalValues = new LinkedHashMap<>();
+        }
+        return additionalValues;
+    }
+
+    /**
+     * Convenience method to access the value of a header; requires headers to be parsed with {@link LSQ#headers}.
+     * For repeated headers the first value is returned.
+     */
+    public String getHeader(String name) {
+        WebLogRecord headers = getNested(LSQ.headers);
+        Object value = headers == null || headers.properties == null
+                ? null
+                : headers.properties.get(WebLogParser.headerProperty(name));
+        String result = value == null ? null : value.toString();
+        return result;
+    }
+
+    /**
+     * Return the (first) value of the given property. Timestamps are returned as milliseconds since the epoch.
+     */
+    public Object get(Property property) {
+        Object result;
+        if (LSQ.host.equals(property)) {
+            result = host;
+        } else if (LSQ.user.equals(property)) {
+            result = user;
+        } else if (PROV.atTime.equals(property) && timestamp != null) {
+            result = timestamp;
+        } else if (LSQ.verb.equals(property)) {
+            result = verb;
+        } else if (LSQ.requestPath.equals(property)) {
+            result = requestPath;
+        } else if (LSQ.protocol.equals(property)) {
+            result = protocol;
+        } else if (LSQ.queryString.equals(property)) {
+            result = queryString;
+        } else if (LSQ.statusCode.equals(property) && statusCode != null) {
+            result = statusCode;
+        } else if (LSQ.numResponseBytes.equals(property) && numResponseBytes != null) {
+            result = numResponseBytes;
+        } else if (LSQ.query.equals(property)) {
+            result = query;
+        } else if (LSQ.processingError.equals(property)) {
+            result = processingError;
+        } else {
+            result = properties == null ? null : properties.get(property);
+        }
+        return result;
+    }
+
+    /**
+     * Set the value of the given property.
+     * Well-known properties are mapped to their dedicated attributes;
+     * values of any other property are kept in the generic property map.
+     *
+     * As with adding literals to a resource, setting a property more than once keeps all distinct values:
+     * The first one is held as described above, the others are kept as additional values.
+     */
+    public WebLogRecord set(Property property, Object value) {
+        Object current = get(property);
+        Object cmp = value instanceof Calendar && PROV.atTime.equals(property)
+                ? Long.valueOf(((Calendar)value).getTimeInMillis())
+                : value;
+
+        if (current != null) {
+            if (!current.equals(cmp)) {
+                List<Object> values = getAdditionalValues().computeIfAbsent(property, p -> new ArrayList<>());
+                if (!values.contains(value)) {
+                    values.add(value);
+                }
+            }
+        } else if (LSQ.host.equals(property)) {
+            host = (String)value;
+        } else if (LSQ.user.equals(property)) {
+            user = (String)value;
+        } else if (PROV.atTime.equals(property) && (value instanceof Calendar || value instanceof Long)) {
+            if (value instanceof Calendar) {
+                Calendar cal = (Calendar)value;
+                timestamp = cal.getTimeInMillis();
+                timeZone = cal.getTimeZone();
+            } else {
+                timestamp = (Long)value;
+            }
+        } else if (LSQ.verb.equals(property)) {
+            verb = (String)value;
+        } else if (LSQ.requestPath.equals(property)) {
+            requestPath = (String)value;
+        } else if (LSQ.protocol.equals(property)) {
+            protocol = (String)value;
+        } else if (LSQ.queryString.equals(property)) {
+            queryString = (String)value;
+        } else if (LSQ.statusCode.equals(property) && value instanceof Integer) {
+            statusCode = (Integer)value;
+        } else if (LSQ.numResponseBytes.equals(property) && value instanceof Integer) {
+            numResponseBytes = (Integer)value;
+        } else if (LSQ.query.equals(property)) {
+            query = (String)value;
+        } else if (LSQ.processingError.equals(property)) {
+            processingError = (String)value;
+        } else {
+            getProperties().put(property, value);
+        }
+        return this;
+    }
+
+    /**
+     * Write the content of this record as properties of the given resource.
+     * The resulting triples are the same as if the log line had been parsed
+     * directly into the resource.
+     */
+    public Resource copyInto(Resource r) {
+        add(r, LSQ.logRecord, logRecord);
+        add(r, LSQ.host, host);
+        add(r, LSQ.user, user);
+
+        if (timestamp != null) {
+            add(r, PROV.atTime, toCalendar(timestamp, timeZone));
+        }
+
+        add(r, LSQ.verb, verb);
+        add(r, LSQ.requestPath, requestPath);
+        add(r, LSQ.protocol, protocol);
+        add(r, LSQ.queryString, queryString);
+        add(r, LSQ.statusCode, statusCode);
+        add(r, LSQ.numResponseBytes, numResponseBytes);
+        add(r, LSQ.query, query);
+
+        if (properties != null) {
+            for (Entry<Property, Object> e : properties.entrySet()) {
+                add(r, e.getKey(), e.getValue());
+            }
+        }
+
+        if (additionalValues != null) {
+            for (Entry<Property, List<Object>> e : additionalValues.entrySet()) {
+                for (Object value : e.getValue()) {
+                    add(r, e.getKey(), value);
+                }
+            }
+        }
+
+        if (nested != null) {
+            for (Entry<Property, WebLogRecord> e : nested.entrySet()) {
+                Resource subR = r.getModel().createResource();
+                r.addProperty(e.getKey(), subR);
+                e.getValue().copyInto(subR);
+            }
+        }
+
+        add(r, LSQ.processingError, getProcessingError());
+
+        return r;
+    }
+
+    protected static void add(Resource r, Property p, Object value) {
+        if (value != null) {
+            r.addLiteral(p, value);
+        }
+    }
+
+    public static Calendar toCalendar(long timestamp, TimeZone timeZone) {
+        Calendar result = timeZone == null
+                ? new GregorianCalendar()
+                : new GregorianCalendar(timeZone);
+        result.setTime(new Date(timestamp));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WebLogRecord [host=" + host + ", timestamp=" + timestamp + ", verb=" + verb
+                + ", requestPath=" + requestPath + ", statusCode=" + statusCode
+                + ", query=" + query + ", processingError=" + getProcessingError() + "]";
+    }
+}
@@ -0,0 +1,66 @@
+package org.aksw.simba.lsq.parser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFieldMatchers {
+
+    /** Check that the compiled matchers behave like regex matching on the remainder of a string */
+    @Test
+    public void testFieldMatchersAgreeWithRegex() {
+        List<String> patternStrs = Arrays.asList(
+                Pattern.quote(" "),
+                Pattern.quote("\" "),
+                "^[^\\s]+",
+                "\\S+",
+                "^\\S+",
+                "^\\s*",
+                "^[^]]*",
+                "^[^\"]*",
+                "^[^\\s\"]*",
+                "^[^\\s\"?]*",
+                "^-|\\d{3}");
+
+        List<String> inputs = Arrays.asList(
+                "",
+                " ",
+                "  - -",
+                "127.0.0.1 - - [06/Nov/2016:05:12:49 +0100] \"GET /sparql?query=SELECT HTTP/1.1\" 200 3623",
+                "[30/Apr/2010 00:00:00 -0600] \"R\" \"/sparql?query=x\"",
+                "\" 200 -",
+                "\t\u000Bfoo]bar");
+
+        for (String patternStr : patternStrs) {
+            Pattern pattern = Pattern.compile(patternStr);
+            FieldMatcher fieldMatcher = FieldMatchers.compile(pattern);
+            for (String input : inputs) {
+                for (int offset = 0; offset <= input.length(); ++offset) {
+                    Matcher m = pattern.matcher(input.substring(offset));
+                    boolean expected = m.find();
+
+                    int[] span = new int[2];
+                    boolean actual = fieldMatcher.find(input, offset, span);
+
+                    String msg = "Pattern " + patternStr + " on '" + input + "' at offset " + offset;
+                    Assert.assertEquals(msg, expected, actual);
+                    if (expected) {
+                        Assert.assertEquals(msg, offset + m.start(), span[0]);
+                        Assert.assertEquals(msg, offset + m.end(), span[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSimplePatternsAvoidRegex() {
+        Assert.assertTrue(FieldMatchers.compile(Pattern.compile(Pattern.quote("\" "))) instanceof FieldMatchers.LiteralFieldMatcher);
+        Assert.assertTrue(FieldMatchers.compile(Pattern.compile("^[^\\s\"]*")) instanceof FieldMatchers.CharRunFieldMatcher);
+        Assert.assertTrue(FieldMatchers.compile(Pattern.compile("^-|\\d{3}")) instanceof FieldMatchers.RegexFieldMatcher);
+    }
+}
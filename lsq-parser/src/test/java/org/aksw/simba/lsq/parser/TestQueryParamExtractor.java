@@ -0,0 +1,44 @@
+package org.aksw.simba.lsq.parser;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQueryParamExtractor {
+
+    @Test
+    public void testExtractFromPath() {
+        String path = "/sparql?default-graph-uri=http%3A%2F%2Fdbpedia.org&should-sponge=&query=SELECT+DISTINCT+%3Fcity%0D%0AWHERE+%7B+%3Fcity+a+%3Chttp%3A%2F%2Fdbpedia.org%2Fontology%2FCity%3E+%7D&format=text%2Fhtml";
+        String expected = URLDecoder.decode("SELECT+DISTINCT+%3Fcity%0D%0AWHERE+%7B+%3Fcity+a+%3Chttp%3A%2F%2Fdbpedia.org%2Fontology%2FCity%3E+%7D", StandardCharsets.UTF_8);
+
+        Assert.assertEquals(expected, QueryParamExtractor.extractFromPath(path, "query"));
+        Assert.assertEquals("text/html", QueryParamExtractor.extractFromPath(path, "format"));
+        Assert.assertEquals("", QueryParamExtractor.extractFromPath(path, "should-sponge"));
+        Assert.assertNull(QueryParamExtractor.extractFromPath(path, "timeout"));
+        Assert.assertNull(QueryParamExtractor.extractFromPath("/sparql", "query"));
+    }
+
+    @Test
+    public void testUnescapedCharacters() {
+        // Braces and non-ascii characters are frequently not escaped in logs
+        Assert.assertEquals("SELECT * { ?s ?p \"Zürich\" }",
+                QueryParamExtractor.extract("query=SELECT+*+{+?s+?p+\"Zürich\"+}", "query"));
+        Assert.assertEquals("Zürich", QueryParamExtractor.extract("x=Z%C3%BCrich&query=1", "x"));
+    }
+
+    @Test
+    public void testKeyMatching() {
+        Assert.assertEquals("b", QueryParamExtractor.extract("queryx=a&query=b", "query"));
+        Assert.assertEquals("c", QueryParamExtractor.extract("qu%65ry=c", "query"));
+        Assert.assertEquals("first", QueryParamExtractor.extract("query=first&query=second", "query"));
+        Assert.assertNull(QueryParamExtractor.extract("", "query"));
+    }
+
+    @Test
+    public void testMalformed() {
+        Assert.assertNull(QueryParamExtractor.extract("query=SELECT%2", "query"));
+        Assert.assertNull(QueryParamExtractor.extract("query=%zz", "query"));
+    }
+}
@@ -0,0 +1,39 @@
+package org.aksw.simba.lsq.parser;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTimestampParser {
+
+    /** The parser must yield the same values as the SimpleDateFormat based parsing it replaces */
+    @Test
+    public void testTimestampParserAgreesWithSimpleDateFormat() throws Exception {
+        String[][] cases = {
+            { TimestampParser.APACHE_PATTERN, "06/Nov/2016:05:12:49 +0100" },
+            { TimestampParser.APACHE_PATTERN, "17/Apr/2011:06:47:47 +0200" },
+            { TimestampParser.VIRTUOSO_PATTERN, "30/Apr/2010 00:00:00 -0600" },
+            { "yyyy-MM-dd HH:mm:ss", "2017-06-12 13:42:01" },
+            // Single digit days are only accepted by the lenient fallback
+            { TimestampParser.APACHE_PATTERN, "6/Nov/2016:05:12:49 +0100" },
+        };
+
+        for (String[] c : cases) {
+            String pattern = c[0];
+            String str = c[1];
+            long expected = new SimpleDateFormat(pattern, Locale.ENGLISH).parse(str).getTime();
+
+            TimestampParser parser = TimestampParser.create(pattern);
+            Assert.assertEquals(str, expected, parser.parse(str));
+            // Second invocation is served from the cache
+            Assert.assertEquals(str, expected, parser.parse(str));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTimestamp() {
+        TimestampParser.create(TimestampParser.APACHE_PATTERN).parse("not a timestamp");
+    }
+}
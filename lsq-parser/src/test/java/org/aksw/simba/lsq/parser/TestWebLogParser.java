@@ -2,7 +2,9 @@ package org.aksw.simba.lsq.parser;
 
 import java.util.Map;
 
+import org.aksw.simba.lsq.vocab.LSQ;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
@@ -37,4 +39,41 @@ public class TestWebLogParser {
 
         Assert.assertEquals(expected, actual);
     }
+
+    /** A non-matching line must be reported via the return code and a parse failure - not an exception */
+    @Test
+    public void testWebLogParserFailureWithoutException() {
+        Map<String, Mapper> logFmtRegistry = WebLogParser.loadRegistry(RDFDataMgr.loadModel("default-log-formats.ttl"));
+        Mapper mapper = logFmtRegistry.get("combined");
+
+        WebLogRecord record = new WebLogRecord();
+        int result = mapper.parse(record, "140.203.154.206 - - not a timestamp");
+
+        Assert.assertEquals(0, result);
+        Assert.assertTrue(record.hasProcessingError());
+        Assert.assertEquals(20, record.getParseFailure().getOffset());
+        Assert.assertTrue(record.getProcessingError().startsWith("Failed to parse log line: "));
+    }
+
+    /** Like adding literals to a resource, repeated values of a property are all retained */
+    @Test
+    public void testMultiValuedProperties() {
+        Property header = WebLogParser.headerProperty("Accept");
+
+        WebLogRecord record = new WebLogRecord();
+        WebLogRecord headers = record.getOrCreateNested(LSQ.headers);
+        headers.set(header, "text/html");
+        headers.set(header, "application/json");
+        headers.set(header, "text/html");
+        record.set(LSQ.host, "a");
+        record.set(LSQ.host, "b");
+
+        Assert.assertEquals("text/html", record.getHeader("Accept"));
+        Assert.assertEquals("a", record.getHost());
+
+        Resource r = record.copyInto(ModelFactory.createDefaultModel().createResource());
+        Resource h = r.getPropertyResourceValue(LSQ.headers);
+        Assert.assertEquals(2, h.listProperties(header).toList().size());
+        Assert.assertEquals(2, r.listProperties(LSQ.host).toList().size());
+    }
 }
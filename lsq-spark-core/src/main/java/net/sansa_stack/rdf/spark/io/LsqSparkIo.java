@@ -2,6 +2,7 @@ package net.sansa_stack.rdf.spark.io;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -14,12 +15,17 @@ import org.aksw.commons.lambda.serializable.SerializableSupplier;
 import org.aksw.commons.rx.function.RxFunction;
 import org.aksw.jena_sparql_api.rx.script.SparqlScriptProcessor;
 import org.aksw.jenax.arq.dataset.api.DatasetOneNg;
+import org.aksw.jenax.arq.dataset.impl.DatasetGraphOneNgImpl;
+import org.aksw.jenax.arq.dataset.impl.DatasetOneNgImpl;
 import org.aksw.jenax.sparql.rx.op.FlowOfDatasetOps;
 import org.aksw.jenax.sparql.rx.op.FlowOfResourcesOps;
 import org.aksw.jenax.stmt.core.SparqlStmt;
 import org.aksw.jenax.stmt.core.SparqlStmtParser;
+import org.aksw.simba.lsq.core.LsqQueryCache;
 import org.aksw.simba.lsq.core.LsqRdfizeSpec;
 import org.aksw.simba.lsq.core.LsqRdfizer;
+import org.aksw.simba.lsq.core.io.binary.LsqBinaryRdf;
+import org.aksw.simba.lsq.core.io.input.LsqInputStreams;
 import org.aksw.simba.lsq.core.rx.io.input.LsqProbeUtils;
 import org.aksw.simba.lsq.model.RemoteExecution;
 import org.aksw.simba.lsq.vocab.LSQ;
@@ -28,6 +34,7 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.sql.SparkSession;
@@ -35,6 +42,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -73,16 +81,27 @@ public class LsqSparkIo {
             SerializableFunction<String, String> hashFn
             ) throws Exception {
 
-        Lang lang = logFormat == null
+        JavaRDD<DatasetOneNg> result = null;
+
+        // Binary input is recognized by its magic bytes. The files are read as they are;
+        // compressed binary files are not supported
+        boolean isBinary = LsqBinaryRdf.isFormatName(logFormat)
+                || (Strings.isNullOrEmpty(logFormat) && !LsqInputStreams.hasEncodingExtension(logSource)
+                        && LsqBinaryRdf.probe(() -> RDFDataMgr.open(logSource)));
+
+        if(isBinary) {
+            logger.info("LSQ binary RDF detected - assuming RDFized log as input");
+            result = createBinaryReader(sparkSession, logSource);
+        }
+
+        Lang lang = isBinary || logFormat == null
                 ? null
                 : RDFLanguages.nameToLang(logFormat);
 
-        if(lang == null) {
+        if(lang == null && !isBinary) {
             lang = RDFDataMgr.determineLang(logSource, null, null);
         }
 
-        JavaRDD<DatasetOneNg> result = null;
-
         // Check if we are dealing with RDF
         if(lang != null) {
             // If quad based, use streaming
@@ -169,17 +188,21 @@ public class LsqSparkIo {
                 .andThen(upstream -> {
                     SparqlStmtParser sparqlStmtParser = sparqlStmtParserSupp.get();
 
+                    // Repeated queries within the partition are only parsed once
+                    LsqQueryCache queryCache = LsqQueryCache.create(sparqlStmtParser);
+
                     return upstream.flatMapIterable(record -> {
                         Optional<Resource> r;
                         try {
-                            r = LsqRdfizer.rdfizeLogRecord(sparqlStmtParser, baseIri, hostHashSalt, serviceUrl, hashFn, record);
+                            r = LsqRdfizer.rdfizeLogRecord(queryCache, baseIri, hostHashSalt, serviceUrl, hashFn, record);
                         } catch (Exception e) {
                             logger.warn("Internal error; trying to continue", e);
                             r = Optional.empty();
                         }
 
                         return r.map(Collections::singleton).orElse(Collections.emptySet());
-                    });
+                    })
+                    .doOnComplete(() -> queryCache.logStats(logger));
                 })
                 .andThen(FlowOfResourcesOps::mapToDatasets);
 //                .andThenMap(x -> {
@@ -198,6 +221,28 @@ public class LsqSparkIo {
         return result;
     }
 
+    /**
+     * Read files in the {@link LsqBinaryRdf} format. Records are not split across partitions;
+     * each file is read by a single task.
+     */
+    public static JavaRDD<DatasetOneNg> createBinaryReader(SparkSession sparkSession, String logSource) {
+        JavaSparkContext sc = JavaSparkContext.fromSparkContext(sparkSession.sparkContext());
+        JavaRDD<DatasetOneNg> result = sc.binaryFiles(logSource)
+                .flatMap(fileAndStream -> {
+                    Iterator<Dataset> it = LsqBinaryRdf.iterateDatasets(fileAndStream._2().open());
+                    return Iterators.concat(Iterators.transform(it, LsqSparkIo::toNamedGraphs));
+                });
+        return result;
+    }
+
+    /** Split a dataset into one dataset per named graph */
+    public static Iterator<DatasetOneNg> toNamedGraphs(Dataset dataset) {
+        DatasetGraph dsg = dataset.asDatasetGraph();
+        List<DatasetOneNg> result = Lists.newArrayList(Iterators.transform(dsg.listGraphNodes(),
+                g -> new DatasetOneNgImpl(DatasetGraphOneNgImpl.create(g, dsg.getGraph(g)))));
+        return result.iterator();
+    }
+
 //    public static NodesInModel fromRDFNode(RDFNode rdfNode) {
 //        return new NodesInModel(
 //                rdfNode.getModel(),
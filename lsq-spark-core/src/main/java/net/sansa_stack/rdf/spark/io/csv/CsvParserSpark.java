@@ -5,7 +5,7 @@ import java.io.IOException;
 import org.aksw.commons.model.csvw.univocity.UnivocityCsvwConf;
 import org.aksw.simba.lsq.parser.Mapper;
 import org.aksw.simba.lsq.parser.WebLogParser;
-import org.aksw.simba.lsq.vocab.LSQ;
+import org.aksw.simba.lsq.parser.WebLogRecord;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
@@ -71,19 +71,28 @@ public class CsvParserSpark {
     }
 
     public static Resource processLogLine(Mapper mapper, String line) {
+        // The line is parsed into a plain record first; the RDF is created in one go afterwards
+        WebLogRecord record = processLogLineAsRecord(mapper, line);
         Resource r = ModelFactory.createDefaultModel().createResource();
+        record.copyInto(r);
+        return r;
+    }
+
+    public static WebLogRecord processLogLineAsRecord(Mapper mapper, String line) {
+        WebLogRecord r = new WebLogRecord();
 
-        r.addLiteral(LSQ.logRecord, line);
+        r.setLogRecord(line);
 
         boolean parsed;
         try {
             parsed = mapper.parse(r, line) != 0;
-            if(!parsed) {
-                r.addLiteral(LSQ.processingError, "Failed to parse log line (no detailed information available)");
+            // Mappers that report a ParseFailure on the record need no further message
+            if(!parsed && !r.hasProcessingError()) {
+                r.setProcessingError("Failed to parse log line (no detailed information available)");
             }
         } catch(Exception e) {
             parsed = false;
-            r.addLiteral(LSQ.processingError, "Failed to parse log line: " + e);
+            r.setProcessingError("Failed to parse log line: " + e);
             // logger.warn("Parser error", e);
         }
 
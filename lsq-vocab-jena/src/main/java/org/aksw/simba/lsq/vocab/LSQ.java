@@ -100,6 +100,18 @@ public class LSQ {
         public static final String hasQueryExec =  NS + "hasQueryExec";
         public static final String hasRemoteExec = NS + "hasRemoteExec";
 
+        // Aggregates over the remote executions of a query (compact alternative to hasRemoteExec)
+        public static final String hasRemoteExecSummary = NS + "hasRemoteExecSummary";
+        public static final String execCount = NS + "execCount";
+        public static final String distinctHostCount = NS + "distinctHostCount";
+        public static final String firstSeen = NS + "firstSeen";
+        public static final String lastSeen = NS + "lastSeen";
+        public static final String hasHourlyExecCount = NS + "hasHourlyExecCount";
+        public static final String hour = NS + "hour";
+
+        // Position of a continuation block of a query whose remote executions were written in several blocks
+        public static final String chunkIndex = NS + "chunkIndex";
+
         public static final String hasBgpExec = NS + "hasBgpExec";
         public static final String hasTpExec = NS + "hasTpExec";
         public static final String hasJoinVarExec = NS + "hasJoinVarExec";
@@ -284,6 +296,15 @@ public class LSQ {
     public static final Property hasLocalExec = ResourceFactory.createProperty(Terms.hasLocalExec);
     public static final Property hasRemoteExec = ResourceFactory.createProperty(Terms.hasRemoteExec);
 
+    public static final Property hasRemoteExecSummary = ResourceFactory.createProperty(Terms.hasRemoteExecSummary);
+    public static final Property execCount = ResourceFactory.createProperty(Terms.execCount);
+    public static final Property distinctHostCount = ResourceFactory.createProperty(Terms.distinctHostCount);
+    public static final Property firstSeen = ResourceFactory.createProperty(Terms.firstSeen);
+    public static final Property lastSeen = ResourceFactory.createProperty(Terms.lastSeen);
+    public static final Property hasHourlyExecCount = ResourceFactory.createProperty(Terms.hasHourlyExecCount);
+    public static final Property hour = ResourceFactory.createProperty(Terms.hour);
+    public static final Property chunkIndex = ResourceFactory.createProperty(Terms.chunkIndex);
+
     public static final Property hasBgpExec = ResourceFactory.createProperty(Terms.hasBgpExec);
     public static final Property hasTpExec = ResourceFactory.createProperty(Terms.hasTpExec);
     public static final Property hasJoinVarExec = ResourceFactory.createProperty(Terms.hasJoinVarExec);